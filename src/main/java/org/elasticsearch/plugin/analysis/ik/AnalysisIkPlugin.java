@@ -1,22 +1,116 @@
 package org.elasticsearch.plugin.analysis.ik;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
 import org.elasticsearch.index.analysis.IkAnalyzerProvider;
 import org.elasticsearch.index.analysis.IkTokenizerFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.dic.Dictionary;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 
-public class AnalysisIkPlugin extends Plugin implements AnalysisPlugin {
+public class AnalysisIkPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
 
 	public static String PLUGIN_NAME = "analysis-ik";
 
+    /**
+     * 创建索引时等待后台词典加载完成的最长时间
+     */
+    public static final Setting<TimeValue> DICT_LOAD_TIMEOUT = Setting.positiveTimeSetting("ik.dict.load_timeout",
+            TimeValue.timeValueMillis(Dictionary.DEFAULT_INITIAL_WAIT_MILLIS), Setting.Property.NodeScope);
+
+    /*
+     * 本进程中已启动的节点数，词典是进程内的单例，最后一个节点停止时才停止词典维护
+     */
+    private static final AtomicInteger openNodes = new AtomicInteger();
+
+    /*
+     * 集群词典同步，未启用时为null
+     */
+    private volatile ClusterDictSync clusterDictSync;
+
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                               ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+                                               NamedXContentRegistry xContentRegistry, Environment environment,
+                                               NodeEnvironment nodeEnvironment, NamedWriteableRegistry namedWriteableRegistry) {
+        // 节点启动时即在后台加载词典，分词器只在词典尚未加载完成时等待
+        Settings settings = environment.settings();
+        openNodes.incrementAndGet();
+        if (ClusterDictSync.ENABLED.get(settings)) {
+            // 只有主节点轮询各来源，其他节点从系统索引读取修改，须在开始轮询之前设置
+            clusterDictSync = new ClusterDictSync(settings, client, clusterService, threadPool);
+            clusterDictSync.start();
+        }
+        Dictionary.initialAsync(new Configuration(environment, settings, false), DICT_LOAD_TIMEOUT.get(settings).millis());
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void close() {
+        // 节点停止时停止词典维护任务，关闭远程词典与数据库连接
+        if (clusterDictSync != null) {
+            clusterDictSync.close();
+        }
+        if (openNodes.decrementAndGet() == 0) {
+            Dictionary.shutdown();
+        }
+    }
+
+    /**
+     * 本节点的集群词典同步，未启用时为null
+     */
+    ClusterDictSync clusterDictSync() {
+        return clusterDictSync;
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Arrays.asList(DICT_LOAD_TIMEOUT, ClusterDictSync.ENABLED, ClusterDictSync.FLUSH_INTERVAL,
+                ClusterDictSync.GENERATION, ClusterDictSync.CHECKPOINT, ClusterDictSync.CHECKPOINT_INTERVAL);
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController, ClusterSettings clusterSettings,
+                                             IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(new RestDictStatsAction(restController, this::clusterDictSync),
+                new RestDictBulkAction(restController, this::clusterDictSync));
+    }
+
     @Override
     public Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> getTokenizers() {
         Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> extra = new HashMap<>();
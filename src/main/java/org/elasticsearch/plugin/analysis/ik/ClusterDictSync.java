@@ -0,0 +1,715 @@
+package org.elasticsearch.plugin.analysis.ik;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.action.admin.cluster.settings.ClusterUpdateSettingsResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.wltea.analyzer.dic.Dictionary;
+import org.wltea.analyzer.dic.DictUpdateListener;
+import org.wltea.analyzer.help.ESPluginLoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 集群词典同步（ik.dict.cluster_sync.enabled 为 true 时启用）：
+ * 只有主节点轮询远程词典与数据库，把本节点生效的修改按代数写入索引 {@value #INDEX}，
+ * 再以持久化的集群设置 ik.dict.cluster_sync.generation 发布最新的代数；
+ * 其他节点不轮询，收到新的代数后只从索引中读取本节点尚未应用的代数：各来源（词典文件、远程词典）的变化
+ * 应用到本节点同一来源的词条上，数据库与推送的修改作为运行期修改应用。
+ * 主节点切换后新的主节点先补齐已发布的修改，再开始轮询，与各来源的新内容比较时以补齐后的词条为准。
+ * 推送的更新（POST /_ik/dict/_bulk）只由主节点接受，其他节点拒绝，见 {@link RestDictBulkAction}。
+ * 每发布 ik.dict.cluster_sync.checkpoint_interval 个代数，主节点把此前所有代数合并为一个检查点
+ * （每个词只保留最后一次修改），以集群设置 ik.dict.cluster_sync.checkpoint 发布后删除检查点之前的代数；
+ * 新加入或落后于检查点的节点先应用检查点，再读取之后的代数，读取量不随历史代数增长。
+ */
+public class ClusterDictSync implements ClusterStateListener, DictUpdateListener, Closeable {
+
+    private static final Logger logger = ESPluginLoggerFactory.getLogger(ClusterDictSync.class.getName());
+
+    public static final String INDEX = ".ik-dict-changes";
+
+    public static final Setting<Boolean> ENABLED = Setting.boolSetting("ik.dict.cluster_sync.enabled", false,
+            Setting.Property.NodeScope);
+
+    /**
+     * 主节点合并修改后写入索引的延迟
+     */
+    public static final Setting<TimeValue> FLUSH_INTERVAL = Setting.positiveTimeSetting(
+            "ik.dict.cluster_sync.flush_interval", TimeValue.timeValueSeconds(1), Setting.Property.NodeScope);
+
+    /**
+     * 已发布的最新代数，由主节点写入持久化的集群设置
+     */
+    public static final Setting<Long> GENERATION = Setting.longSetting("ik.dict.cluster_sync.generation", 0, 0,
+            Setting.Property.NodeScope, Setting.Property.Dynamic);
+
+    /**
+     * 已发布的检查点代数，此前的代数已合并到检查点中并从索引删除，由主节点写入持久化的集群设置
+     */
+    public static final Setting<Long> CHECKPOINT = Setting.longSetting("ik.dict.cluster_sync.checkpoint", 0, 0,
+            Setting.Property.NodeScope, Setting.Property.Dynamic);
+
+    /**
+     * 主节点每发布多少个代数生成一次检查点
+     */
+    public static final Setting<Integer> CHECKPOINT_INTERVAL = Setting.intSetting(
+            "ik.dict.cluster_sync.checkpoint_interval", 100, 1, Setting.Property.NodeScope, Setting.Property.Dynamic);
+
+    private static final String INDEX_SOURCE = "{\"settings\":{\"number_of_shards\":1,\"auto_expand_replicas\":\"0-all\"},"
+            + "\"mappings\":{\"dynamic\":false,\"properties\":{\"generation\":{\"type\":\"long\"},"
+            + "\"checkpoint\":{\"type\":\"long\"},\"part\":{\"type\":\"integer\"}}}}";
+
+    // 一个代数的文档带 generation，检查点的文档带 checkpoint，两者不同时出现
+    private static final String FIELD_GENERATION = "generation";
+    private static final String FIELD_CHECKPOINT = "checkpoint";
+    private static final String FIELD_PART = "part";
+    private static final String FIELD_MAIN_ADDED = "main_added";
+    private static final String FIELD_MAIN_DISABLED = "main_disabled";
+    private static final String FIELD_STOP_ADDED = "stop_added";
+    private static final String FIELD_STOP_DISABLED = "stop_disabled";
+    // 各来源的变化，每一项为 {source, type, added, removed}，一个来源的变化较多时分在多个文档中
+    private static final String FIELD_SOURCES = "sources";
+    private static final String FIELD_SOURCE = "source";
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_ADDED = "added";
+    private static final String FIELD_REMOVED = "removed";
+    private static final String TYPE_MAIN = "main";
+    private static final String TYPE_STOP = "stop";
+
+    // 每个文档最多包含的词条数，一个代数的修改超过时分为多个文档
+    private static final int WORDS_PER_DOC = 10000;
+    // 读取修改时每页的文档数
+    private static final int PAGE_SIZE = 10;
+    // 删除旧代数时每批的文档数
+    private static final int DELETE_PAGE_SIZE = 1000;
+    // 词典尚未加载完成时再次尝试的间隔
+    private static final TimeValue WAIT_DELAY = TimeValue.timeValueSeconds(1);
+    // 读写索引失败后重试的间隔
+    private static final TimeValue RETRY_DELAY = TimeValue.timeValueSeconds(5);
+
+    private final Client client;
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final TimeValue flushInterval;
+    private volatile int checkpointInterval;
+
+    /*
+     * 主节点等待写入的修改，同一个词以最后一次修改为准；只在持有 pendingLock 时访问
+     * 词典通知时持有词典的锁，pendingLock 内不调用词典
+     */
+    private final Object pendingLock = new Object();
+    private Changes pending = new Changes();
+    private boolean flushScheduled;
+
+    /*
+     * 串行执行读取与写入，以下字段只在持有 syncLock 时修改（generationChecked 由集群状态线程重置）
+     */
+    private final Object syncLock = new Object();
+    // 索引被删除后由集群状态线程重置
+    private volatile boolean indexReady;
+    // 本节点作为主节点后是否已检查过索引中的最大代数
+    private volatile boolean generationChecked;
+    // 本节点尝试写入过的最大代数，写入失败后换用新的代数，不与残留的部分文档混合
+    private long attempted;
+    // 索引中可能有未发布的代数的文档（写入失败或之前的主节点没有发布），写入新的代数前删除
+    private boolean unpublished;
+
+    private volatile boolean leader;
+    private volatile boolean closed;
+    // 集群设置中已发布的代数
+    private volatile long published;
+    // 集群设置中已发布的检查点
+    private volatile long checkpoint;
+    // 本节点已应用的代数
+    private volatile long applied;
+    // 本节点读取过的文档数与最近一次读取的代数范围，见 stats()
+    private volatile long pulledDocs;
+    private volatile long lastPullFrom;
+    private volatile long lastPullTo;
+    private final AtomicBoolean pulling = new AtomicBoolean();
+    private final BooleanSupplier pollingGate = this::isPolling;
+
+    public ClusterDictSync(Settings settings, Client client, ClusterService clusterService, ThreadPool threadPool) {
+        this.client = client;
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.flushInterval = FLUSH_INTERVAL.get(settings);
+        this.checkpointInterval = CHECKPOINT_INTERVAL.get(settings);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(CHECKPOINT_INTERVAL,
+                interval -> checkpointInterval = interval);
+    }
+
+    /**
+     * 开始接收集群状态与本节点词典的修改
+     */
+    public void start() {
+        Dictionary.addPollingGate(pollingGate);
+        Dictionary.addUpdateListener(this);
+        clusterService.addListener(this);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        clusterService.removeListener(this);
+        Dictionary.removeUpdateListener(this);
+        Dictionary.removePollingGate(pollingGate);
+    }
+
+    /**
+     * 只有主节点在补齐已发布的修改之后轮询各来源
+     */
+    boolean isPolling() {
+        return leader && applied >= published;
+    }
+
+    /**
+     * 本节点是否为主节点，只有主节点接受推送的更新
+     */
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * 当前选出的主节点，尚未选出时为null
+     */
+    public DiscoveryNode master() {
+        return clusterService.state().nodes().getMasterNode();
+    }
+
+    /**
+     * 本节点的同步进度，见 GET /_ik/stats
+     * @return 字段名到值的有序映射
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leader", leader);
+        stats.put("published_generation", published);
+        stats.put("applied_generation", applied);
+        stats.put("checkpoint", checkpoint);
+        stats.put("pulled_docs", pulledDocs);
+        stats.put("last_pull_from", lastPullFrom);
+        stats.put("last_pull_to", lastPullTo);
+        return stats;
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (closed) {
+            return;
+        }
+        boolean wasLeader = leader;
+        Settings persistent = event.state().metaData().persistentSettings();
+        published = GENERATION.get(persistent);
+        checkpoint = CHECKPOINT.get(persistent);
+        leader = event.localNodeMaster();
+        if (!event.state().metaData().hasIndex(INDEX)) {
+            // 索引被删除后下次写入时重新创建，不使用自动创建的映射
+            indexReady = false;
+        }
+        if (leader && !wasLeader) {
+            logger.info("[Dict Sync] elected master, publishing dictionary changes from this node");
+            generationChecked = false;
+        } else if (!leader && wasLeader) {
+            logger.info("[Dict Sync] no longer master, pulling dictionary changes from [{}]", INDEX);
+        }
+        if (published > applied) {
+            pullAsync();
+        }
+    }
+
+    @Override
+    public void onUpdate(boolean stopwords, Map<String, Boolean> changes) {
+        // 加载时恢复的修改不是新的变化；其他节点不轮询、不接受推送，只有应用主节点分发的修改，不需要记录
+        if (!leader || closed || !Dictionary.isInitialized()) {
+            return;
+        }
+        synchronized (pendingLock) {
+            (stopwords ? pending.stop : pending.main).putAll(changes);
+            scheduleFlush(flushInterval);
+        }
+    }
+
+    @Override
+    public void onSourceUpdate(String source, boolean stopwords, Map<String, Boolean> changes) {
+        if (!leader || closed || !Dictionary.isInitialized()) {
+            return;
+        }
+        synchronized (pendingLock) {
+            pending.source(stopwords, source).putAll(changes);
+            scheduleFlush(flushInterval);
+        }
+    }
+
+    private void scheduleFlush(TimeValue delay) {
+        synchronized (pendingLock) {
+            if (!flushScheduled && !closed) {
+                flushScheduled = true;
+                threadPool.schedule(this::flush, delay, ThreadPool.Names.GENERIC);
+            }
+        }
+    }
+
+    private void flush() {
+        Changes changes;
+        synchronized (pendingLock) {
+            flushScheduled = false;
+            changes = pending;
+            pending = new Changes();
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!leader || closed) {
+            logger.warn("[Dict Sync] no longer master, dropping {} unpublished dictionary changes", changes.size());
+            return;
+        }
+        try {
+            publish(changes);
+        } catch (Exception e) {
+            logger.warn("[Dict Sync] failed to publish " + changes.size() + " dictionary changes, retrying in "
+                    + RETRY_DELAY, e);
+            synchronized (pendingLock) {
+                // 失败的修改在前，期间新到的修改覆盖它们
+                changes.putAll(pending);
+                pending = changes;
+            }
+            scheduleFlush(RETRY_DELAY);
+        }
+    }
+
+    /**
+     * 把一批修改写入索引，全部写入并刷新后再发布新的代数
+     */
+    private void publish(Changes changes) {
+        synchronized (syncLock) {
+            if (applied < published) {
+                catchUp();
+            }
+            try (ThreadContext.StoredContext ignore = threadPool.getThreadContext().stashContext()) {
+                ensureIndex();
+                if (!generationChecked) {
+                    long indexed = lastIndexedGeneration();
+                    unpublished |= indexed > published;
+                    attempted = Math.max(attempted, indexed);
+                    generationChecked = true;
+                }
+                if (unpublished) {
+                    // 未发布的文档的代数在新的代数之前，不删除时会被其他节点一起读取
+                    int deleted = deleteDocs(QueryBuilders.rangeQuery(FIELD_GENERATION).gt(published));
+                    logger.info("[Dict Sync] deleted {} docs of unpublished generations after {}", deleted, published);
+                    unpublished = false;
+                }
+                long generation = Math.max(published, attempted) + 1;
+                attempted = generation;
+                unpublished = true;
+                List<Map<String, Object>> docs = changes.toDocs(FIELD_GENERATION, generation);
+                BulkRequest bulk = new BulkRequest().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+                for (int part = 0; part < docs.size(); part++) {
+                    bulk.add(new IndexRequest(INDEX).id(generation + "_" + part).source(docs.get(part)));
+                }
+                BulkResponse response = client.bulk(bulk).actionGet();
+                if (response.hasFailures()) {
+                    throw new IllegalStateException(response.buildFailureMessage());
+                }
+                client.admin().cluster().prepareUpdateSettings()
+                        .setPersistentSettings(Settings.builder().put(GENERATION.getKey(), generation)).get();
+                applied = generation;
+                unpublished = false;
+                logger.info("[Dict Sync] published generation {}: {} main words, {} stopwords, {} source words "
+                        + "in {} docs", generation, changes.main.size(), changes.stop.size(), changes.sourceWords(),
+                        docs.size());
+                if (generation - checkpoint >= checkpointInterval) {
+                    try {
+                        writeCheckpoint(generation);
+                    } catch (Exception e) {
+                        // 已发布的代数不受影响，下次发布时再次尝试
+                        logger.warn("[Dict Sync] failed to write checkpoint at generation " + generation, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 把检查点与之后直到 generation 的所有代数合并为新的检查点，发布后删除被合并的文档
+     * 调用方持有 syncLock，已切换到系统上下文
+     */
+    private void writeCheckpoint(long generation) {
+        long previous = checkpoint;
+        Changes merged = new Changes();
+        int read = read(previous, previous > 0, generation, merged);
+        List<Map<String, Object>> docs = merged.toDocs(FIELD_CHECKPOINT, generation);
+        if (!docs.isEmpty()) {
+            BulkRequest bulk = new BulkRequest().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+            for (int part = 0; part < docs.size(); part++) {
+                bulk.add(new IndexRequest(INDEX).id("checkpoint_" + generation + "_" + part).source(docs.get(part)));
+            }
+            BulkResponse response = client.bulk(bulk).actionGet();
+            if (response.hasFailures()) {
+                throw new IllegalStateException(response.buildFailureMessage());
+            }
+        }
+        ClusterUpdateSettingsResponse response = client.admin().cluster().prepareUpdateSettings()
+                .setPersistentSettings(Settings.builder().put(CHECKPOINT.getKey(), generation)).get();
+        checkpoint = generation;
+        logger.info("[Dict Sync] checkpoint at generation {}: {} docs merged into {} docs, {} main words, {} stopwords, "
+                + "{} source words", generation, read, docs.size(), merged.main.size(), merged.stop.size(),
+                merged.sourceWords());
+        if (!response.isAcknowledged()) {
+            // 有节点可能还在按旧的检查点读取，被合并的文档在下一个检查点时删除
+            logger.warn("[Dict Sync] checkpoint {} not acknowledged by all nodes, keeping merged docs", generation);
+            return;
+        }
+        int deleted = deleteDocs(QueryBuilders.boolQuery()
+                .should(QueryBuilders.rangeQuery(FIELD_GENERATION).lte(generation))
+                .should(QueryBuilders.rangeQuery(FIELD_CHECKPOINT).lt(generation)));
+        logger.info("[Dict Sync] deleted {} docs merged into checkpoint {}", deleted, generation);
+    }
+
+    /**
+     * 分批删除匹配的文档
+     * @return 删除的文档数
+     */
+    private int deleteDocs(QueryBuilder query) {
+        int deleted = 0;
+        while (true) {
+            SearchHit[] hits = client.prepareSearch(INDEX).setQuery(query).setFetchSource(false)
+                    .setSize(DELETE_PAGE_SIZE).get().getHits().getHits();
+            if (hits.length == 0) {
+                return deleted;
+            }
+            BulkRequest bulk = new BulkRequest().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+            for (SearchHit hit : hits) {
+                bulk.add(new DeleteRequest(INDEX).id(hit.getId()));
+            }
+            BulkResponse response = client.bulk(bulk).actionGet();
+            if (response.hasFailures()) {
+                throw new IllegalStateException(response.buildFailureMessage());
+            }
+            deleted += hits.length;
+        }
+    }
+
+    private void ensureIndex() {
+        if (indexReady) {
+            return;
+        }
+        try {
+            client.admin().indices().prepareCreate(INDEX).setSource(INDEX_SOURCE, XContentType.JSON).get();
+            logger.info("[Dict Sync] created index [{}]", INDEX);
+        } catch (ResourceAlreadyExistsException e) {
+            // 之前的主节点已经创建
+        }
+        indexReady = true;
+    }
+
+    /**
+     * 索引中的最大代数，之前的主节点可能写入了部分文档而没有发布
+     */
+    private long lastIndexedGeneration() {
+        SearchHit[] hits = client.prepareSearch(INDEX).setQuery(QueryBuilders.existsQuery(FIELD_GENERATION))
+                .addSort(FIELD_GENERATION, SortOrder.DESC).setSize(1).get().getHits().getHits();
+        return hits.length == 0 ? 0 : ((Number) hits[0].getSourceAsMap().get(FIELD_GENERATION)).longValue();
+    }
+
+    private void pullAsync() {
+        if (closed || !pulling.compareAndSet(false, true)) {
+            return;
+        }
+        threadPool.generic().execute(this::pull);
+    }
+
+    private void pull() {
+        TimeValue retry = null;
+        try {
+            if (!Dictionary.isInitialized()) {
+                retry = WAIT_DELAY;
+            } else {
+                catchUp();
+            }
+        } catch (Exception e) {
+            logger.warn("[Dict Sync] failed to pull dictionary changes from [" + INDEX + "], retrying in "
+                    + RETRY_DELAY, e);
+            retry = RETRY_DELAY;
+        } finally {
+            pulling.set(false);
+        }
+        if (retry != null) {
+            threadPool.schedule(this::pullAsync, retry, ThreadPool.Names.GENERIC);
+        } else if (published > applied) {
+            // 读取期间发布了新的代数
+            pullAsync();
+        }
+    }
+
+    /**
+     * 读取并应用本节点尚未应用的代数，所有代数的修改合并后一次应用，同一个词（各来源中同一来源的同一个词）以最后一次修改为准
+     * 落后于检查点时从检查点开始读取，检查点已包含之前所有代数的最终结果，重复应用不改变结果
+     */
+    private void catchUp() {
+        synchronized (syncLock) {
+            long target = published;
+            long from = applied;
+            if (target <= from) {
+                return;
+            }
+            Changes changes = new Changes();
+            int docs;
+            long base;
+            try (ThreadContext.StoredContext ignore = threadPool.getThreadContext().stashContext()) {
+                while (true) {
+                    boolean fromCheckpoint = checkpoint > from;
+                    long start = fromCheckpoint ? checkpoint : from;
+                    docs = read(start, fromCheckpoint, target, changes);
+                    // 读取期间发布了更新的检查点时，被合并的代数可能已删除，从新的检查点重新读取
+                    long latest = CHECKPOINT.get(clusterService.state().metaData().persistentSettings());
+                    if (latest <= start) {
+                        base = start;
+                        break;
+                    }
+                    checkpoint = latest;
+                    changes = new Changes();
+                }
+            }
+            // 检查点可能比本节点已知的代数更新
+            target = Math.max(target, base);
+            long generation = Dictionary.getSingleton().applyReplicated(changes.mainSources, changes.stopSources,
+                    changes.main, changes.stop);
+            applied = target;
+            pulledDocs += docs;
+            lastPullFrom = base;
+            lastPullTo = target;
+            logger.info("[Dict Sync] applied generations ({}, {}]{} from {} docs: {} main words, {} stopwords, "
+                    + "{} source words, snapshot generation {}", base, target,
+                    base > from ? " with checkpoint " + base : "", docs, changes.main.size(), changes.stop.size(),
+                    changes.sourceWords(), generation);
+        }
+    }
+
+    /**
+     * 读取代数 (from, to] 的修改
+     * @param withCheckpoint from 为检查点，先读取检查点
+     * @return 读取的文档数
+     */
+    private int read(long from, boolean withCheckpoint, long to, Changes changes) {
+        int docs = 0;
+        if (withCheckpoint) {
+            docs += read(QueryBuilders.termQuery(FIELD_CHECKPOINT, from), FIELD_CHECKPOINT, changes);
+        }
+        if (to > from) {
+            docs += read(QueryBuilders.rangeQuery(FIELD_GENERATION).gt(from).lte(to), FIELD_GENERATION, changes);
+        }
+        return docs;
+    }
+
+    private int read(QueryBuilder query, String keyField, Changes changes) {
+        int docs = 0;
+        Object[] after = null;
+        while (true) {
+            SearchRequestBuilder search = client.prepareSearch(INDEX)
+                    .setQuery(query)
+                    .addSort(keyField, SortOrder.ASC)
+                    .addSort(FIELD_PART, SortOrder.ASC)
+                    .setSize(PAGE_SIZE);
+            if (after != null) {
+                search.searchAfter(after);
+            }
+            SearchHit[] hits = search.get().getHits().getHits();
+            for (SearchHit hit : hits) {
+                Map<String, Object> source = hit.getSourceAsMap();
+                changes.collect(source);
+                after = new Object[]{source.get(keyField), source.get(FIELD_PART)};
+            }
+            docs += hits.length;
+            if (hits.length < PAGE_SIZE) {
+                return docs;
+            }
+        }
+    }
+
+    /**
+     * 一批修改：运行期修改与各来源的变化，同一个词以最后一次修改为准
+     * 应用时先应用各来源的变化，再应用运行期修改，见 {@link Dictionary#applyReplicated(Map, Map, Map, Map)}
+     */
+    private static final class Changes {
+
+        private final Map<String, Boolean> main = new LinkedHashMap<>();
+        private final Map<String, Boolean> stop = new LinkedHashMap<>();
+        // 来源到该来源词条变化的映射：true 为来源新增，false 为来源删除
+        private final Map<String, Map<String, Boolean>> mainSources = new LinkedHashMap<>();
+        private final Map<String, Map<String, Boolean>> stopSources = new LinkedHashMap<>();
+
+        Map<String, Boolean> source(boolean stopwords, String source) {
+            return (stopwords ? stopSources : mainSources).computeIfAbsent(source, key -> new LinkedHashMap<>());
+        }
+
+        /**
+         * 合并之后的修改，覆盖同一个词之前的修改
+         */
+        void putAll(Changes later) {
+            main.putAll(later.main);
+            stop.putAll(later.stop);
+            for (Map.Entry<String, Map<String, Boolean>> entry : later.mainSources.entrySet()) {
+                source(false, entry.getKey()).putAll(entry.getValue());
+            }
+            for (Map.Entry<String, Map<String, Boolean>> entry : later.stopSources.entrySet()) {
+                source(true, entry.getKey()).putAll(entry.getValue());
+            }
+        }
+
+        int sourceWords() {
+            int words = 0;
+            for (Map<String, Boolean> changes : mainSources.values()) {
+                words += changes.size();
+            }
+            for (Map<String, Boolean> changes : stopSources.values()) {
+                words += changes.size();
+            }
+            return words;
+        }
+
+        int size() {
+            return main.size() + stop.size() + sourceWords();
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * 把修改按词条数分到各文档中，最后一个文档未满时继续填充
+         * @param keyField 代数的字段，一个代数为 generation，检查点为 checkpoint
+         */
+        List<Map<String, Object>> toDocs(String keyField, long generation) {
+            List<Map<String, Object>> docs = new ArrayList<>();
+            for (Map.Entry<String, Boolean> change : main.entrySet()) {
+                words(doc(docs, keyField, generation), change.getValue() ? FIELD_MAIN_ADDED : FIELD_MAIN_DISABLED)
+                        .add(change.getKey());
+            }
+            for (Map.Entry<String, Boolean> change : stop.entrySet()) {
+                words(doc(docs, keyField, generation), change.getValue() ? FIELD_STOP_ADDED : FIELD_STOP_DISABLED)
+                        .add(change.getKey());
+            }
+            addSources(docs, keyField, generation, TYPE_MAIN, mainSources);
+            addSources(docs, keyField, generation, TYPE_STOP, stopSources);
+            return docs;
+        }
+
+        private static void addSources(List<Map<String, Object>> docs, String keyField, long generation, String type,
+                                       Map<String, Map<String, Boolean>> sources) {
+            for (Map.Entry<String, Map<String, Boolean>> source : sources.entrySet()) {
+                Map<String, Object> entryDoc = null;
+                Map<String, Object> entry = null;
+                for (Map.Entry<String, Boolean> change : source.getValue().entrySet()) {
+                    Map<String, Object> doc = doc(docs, keyField, generation);
+                    if (doc != entryDoc) {
+                        entry = new HashMap<>();
+                        entry.put(FIELD_SOURCE, source.getKey());
+                        entry.put(FIELD_TYPE, type);
+                        entry.put(FIELD_ADDED, new ArrayList<String>());
+                        entry.put(FIELD_REMOVED, new ArrayList<String>());
+                        sources(doc).add(entry);
+                        entryDoc = doc;
+                    }
+                    words(entry, change.getValue() ? FIELD_ADDED : FIELD_REMOVED).add(change.getKey());
+                }
+            }
+        }
+
+        /**
+         * 未满的最后一个文档，已满时新建一个
+         */
+        private static Map<String, Object> doc(List<Map<String, Object>> docs, String keyField, long generation) {
+            Map<String, Object> doc = docs.isEmpty() ? null : docs.get(docs.size() - 1);
+            if (doc == null || wordCount(doc) >= WORDS_PER_DOC) {
+                doc = new HashMap<>();
+                doc.put(keyField, generation);
+                doc.put(FIELD_PART, docs.size());
+                for (String field : new String[]{FIELD_MAIN_ADDED, FIELD_MAIN_DISABLED, FIELD_STOP_ADDED,
+                        FIELD_STOP_DISABLED}) {
+                    doc.put(field, new ArrayList<String>());
+                }
+                doc.put(FIELD_SOURCES, new ArrayList<Map<String, Object>>());
+                docs.add(doc);
+            }
+            return doc;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<String> words(Map<String, Object> doc, String field) {
+            return (List<String>) doc.get(field);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Map<String, Object>> sources(Map<String, Object> doc) {
+            return (List<Map<String, Object>>) doc.get(FIELD_SOURCES);
+        }
+
+        private static int wordCount(Map<String, Object> doc) {
+            int count = words(doc, FIELD_MAIN_ADDED).size() + words(doc, FIELD_MAIN_DISABLED).size()
+                    + words(doc, FIELD_STOP_ADDED).size() + words(doc, FIELD_STOP_DISABLED).size();
+            for (Map<String, Object> entry : sources(doc)) {
+                count += words(entry, FIELD_ADDED).size() + words(entry, FIELD_REMOVED).size();
+            }
+            return count;
+        }
+
+        /**
+         * 读取一个文档中的修改，覆盖之前读取的同一个词的修改
+         */
+        void collect(Map<String, Object> doc) {
+            collect(doc.get(FIELD_MAIN_ADDED), true, main);
+            collect(doc.get(FIELD_MAIN_DISABLED), false, main);
+            collect(doc.get(FIELD_STOP_ADDED), true, stop);
+            collect(doc.get(FIELD_STOP_DISABLED), false, stop);
+            Object entries = doc.get(FIELD_SOURCES);
+            if (entries instanceof List) {
+                for (Object value : (List<?>) entries) {
+                    if (value instanceof Map) {
+                        Map<?, ?> entry = (Map<?, ?>) value;
+                        Map<String, Boolean> changes = source(TYPE_STOP.equals(entry.get(FIELD_TYPE)),
+                                String.valueOf(entry.get(FIELD_SOURCE)));
+                        collect(entry.get(FIELD_ADDED), true, changes);
+                        collect(entry.get(FIELD_REMOVED), false, changes);
+                    }
+                }
+            }
+        }
+
+        private static void collect(Object words, boolean enabled, Map<String, Boolean> changes) {
+            if (words instanceof List) {
+                for (Object word : (List<?>) words) {
+                    changes.put(String.valueOf(word), enabled);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.elasticsearch.plugin.analysis.ik;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 批量修改本节点的词典: POST /_ik/dict/_bulk
+ * 请求体为 NDJSON，每行一个操作，例如:
+ * <pre>
+ * {"add": {"word": "魔法少女"}}
+ * {"disable": {"word": "共和国"}}
+ * {"add": {"word": "的", "type": "stopword"}}
+ * </pre>
+ * type 为 main（默认）或 stopword；同一个词以最后一个操作为准。
+ * 整批解析无误后一次应用并立即编译，任何一行有误时整批不应用（400）；词典尚未加载完成时返回503。
+ * 只修改接收请求的节点，修改保存在内存中（与 {@link Dictionary#addWord(String)} 相同），重启后不保留。
+ * 启用集群词典同步时只有主节点接受，修改经 {@link ClusterDictSync} 分发到其他节点；
+ * 其他节点返回421并给出主节点，不在本节点应用，以免与集群不一致。
+ * 返回新快照的代数: {"generation": 12, "took": 3, "main": {"added": 1, "disabled": 1}, "stopwords": {"added": 1, "disabled": 0}}
+ */
+public class RestDictBulkAction extends BaseRestHandler {
+
+    private static final String ADD = "add";
+    private static final String DISABLE = "disable";
+    private static final String WORD = "word";
+    private static final String TYPE = "type";
+    private static final String TYPE_MAIN = "main";
+    private static final String TYPE_STOPWORD = "stopword";
+
+    private final Supplier<ClusterDictSync> clusterDictSync;
+
+    public RestDictBulkAction(RestController controller, Supplier<ClusterDictSync> clusterDictSync) {
+        this.clusterDictSync = clusterDictSync;
+        controller.registerHandler(RestRequest.Method.POST, "/_ik/dict/_bulk", this);
+        controller.registerHandler(RestRequest.Method.PUT, "/_ik/dict/_bulk", this);
+    }
+
+    @Override
+    public String getName() {
+        return "ik_dict_bulk_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        // 先完整解析，格式错误时直接返回400，不修改词典
+        Map<String, Boolean> main = new LinkedHashMap<>();
+        Map<String, Boolean> stopwords = new LinkedHashMap<>();
+        parse(request, main, stopwords);
+        return channel -> {
+            if (!Dictionary.isInitialized()) {
+                channel.sendResponse(new BytesRestResponse(RestStatus.SERVICE_UNAVAILABLE,
+                        "ik dict has not been loaded yet"));
+                return;
+            }
+            ClusterDictSync sync = clusterDictSync.get();
+            if (sync != null && !sync.isLeader()) {
+                DiscoveryNode master = sync.master();
+                channel.sendResponse(new BytesRestResponse(RestStatus.MISDIRECTED_REQUEST,
+                        "ik dict cluster sync is enabled, send dictionary updates to the elected master node"
+                                + (master != null ? " [" + master.getName() + "][" + master.getAddress() + "]"
+                                        : ", no master is elected yet")));
+                return;
+            }
+            // 编译可能需要数十毫秒，不占用网络线程
+            client.threadPool().generic().execute(() -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    long generation = Dictionary.getSingleton().applyUpdates(main, stopwords);
+                    XContentBuilder builder = channel.newBuilder();
+                    builder.startObject();
+                    builder.field("generation", generation);
+                    builder.field("took", System.currentTimeMillis() - start);
+                    counts(builder, "main", main);
+                    counts(builder, "stopwords", stopwords);
+                    builder.endObject();
+                    channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+                } catch (Exception e) {
+                    try {
+                        channel.sendResponse(new BytesRestResponse(channel, e));
+                    } catch (IOException inner) {
+                        e.addSuppressed(inner);
+                        throw new IllegalStateException("failed to send ik dict bulk response", e);
+                    }
+                }
+            });
+        };
+    }
+
+    /**
+     * 逐行解析请求体，同一个词以最后一个操作为准
+     */
+    static void parse(RestRequest request, Map<String, Boolean> main, Map<String, Boolean> stopwords)
+            throws IOException {
+        if (!request.hasContent()) {
+            throw new IllegalArgumentException("request body is required");
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(request.content().streamInput(), StandardCharsets.UTF_8))) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    parseLine(line, main, stopwords);
+                } catch (IOException | RuntimeException e) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static void parseLine(String line, Map<String, Boolean> main, Map<String, Boolean> stopwords)
+            throws IOException {
+        Map<String, Object> operation;
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, line)) {
+            operation = parser.map();
+        }
+        if (operation.size() != 1) {
+            throw new IllegalArgumentException("expected exactly one of [" + ADD + ", " + DISABLE + "]");
+        }
+        Map.Entry<String, Object> entry = operation.entrySet().iterator().next();
+        boolean enabled;
+        if (ADD.equals(entry.getKey())) {
+            enabled = true;
+        } else if (DISABLE.equals(entry.getKey())) {
+            enabled = false;
+        } else {
+            throw new IllegalArgumentException("unknown operation [" + entry.getKey() + "]");
+        }
+        if (!(entry.getValue() instanceof Map)) {
+            throw new IllegalArgumentException("[" + entry.getKey() + "] must be an object");
+        }
+        Map<?, ?> body = (Map<?, ?>) entry.getValue();
+        Object value = body.get(WORD);
+        if (!(value instanceof String) || ((String) value).trim().isEmpty()) {
+            throw new IllegalArgumentException("[" + WORD + "] must be a non-empty string");
+        }
+        String word = ((String) value).trim().toLowerCase();
+        if (word.indexOf('\n') >= 0 || word.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("[" + WORD + "] must not contain line breaks");
+        }
+        Object type = body.get(TYPE);
+        Map<String, Boolean> target;
+        if (type == null || TYPE_MAIN.equals(type)) {
+            target = main;
+        } else if (TYPE_STOPWORD.equals(type)) {
+            target = stopwords;
+        } else {
+            throw new IllegalArgumentException("[" + TYPE + "] must be [" + TYPE_MAIN + "] or [" + TYPE_STOPWORD + "]");
+        }
+        target.remove(word);
+        target.put(word, enabled);
+    }
+
+    private static void counts(XContentBuilder builder, String name, Map<String, Boolean> changes) throws IOException {
+        int added = 0;
+        for (Boolean enabled : changes.values()) {
+            if (enabled) {
+                added++;
+            }
+        }
+        builder.startObject(name);
+        builder.field("added", added);
+        builder.field("disabled", changes.size() - added);
+        builder.endObject();
+    }
+}
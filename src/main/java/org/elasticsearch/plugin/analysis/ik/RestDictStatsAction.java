@@ -0,0 +1,46 @@
+package org.elasticsearch.plugin.analysis.ik;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 本节点词典的加载进度与统计: GET /_ik/stats
+ * 启用集群词典同步时包含本节点的同步进度（cluster_sync）
+ */
+public class RestDictStatsAction extends BaseRestHandler {
+
+    private final Supplier<ClusterDictSync> clusterDictSync;
+
+    public RestDictStatsAction(RestController controller, Supplier<ClusterDictSync> clusterDictSync) {
+        this.clusterDictSync = clusterDictSync;
+        controller.registerHandler(RestRequest.Method.GET, "/_ik/stats", this);
+    }
+
+    @Override
+    public String getName() {
+        return "ik_dict_stats_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        return channel -> {
+            XContentBuilder builder = channel.newBuilder();
+            Map<String, Object> stats = Dictionary.getLoadStats();
+            ClusterDictSync sync = clusterDictSync.get();
+            if (sync != null) {
+                stats.put("cluster_sync", sync.stats());
+            }
+            builder.map(stats);
+            channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+        };
+    }
+}
@@ -9,6 +9,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.plugin.analysis.ik.AnalysisIkPlugin;
 import org.wltea.analyzer.dic.Dictionary;
+import org.wltea.analyzer.dic.DictionaryEngines;
 
 import java.io.File;
 import java.nio.file.Path;
@@ -27,17 +28,33 @@ public class Configuration {
 	//是否启用小写处理
 	private boolean enableLowercase=true;
 
+	//词典引擎，为null时使用节点默认引擎
+	private String dictEngine;
+
 
 	@Inject
 	public Configuration(Environment env,Settings settings) {
+		this(env, settings, true);
+	}
+
+	/**
+	 * @param initialDict 是否初始化词典（词典尚在后台加载时等待其完成）
+	 */
+	public Configuration(Environment env, Settings settings, boolean initialDict) {
 		this.environment = env;
 		this.settings=settings;
 
 		this.useSmart = settings.get("use_smart", "false").equals("true");
 		this.enableLowercase = settings.get("enable_lowercase", "true").equals("true");
 		this.enableRemoteDict = settings.get("enable_remote_dict", "true").equals("true");
+		this.dictEngine = settings.get("dict_engine");
+		if (this.dictEngine != null) {
+			this.dictEngine = DictionaryEngines.get(this.dictEngine.trim().toLowerCase()).name();
+		}
 
-		Dictionary.initial(this);
+		if (initialDict) {
+			Dictionary.initial(this);
+		}
 
 	}
 
@@ -72,4 +89,8 @@ public class Configuration {
 	public boolean isEnableLowercase() {
 		return enableLowercase;
 	}
+
+	public String getDictEngine() {
+		return dictEngine;
+	}
 }
@@ -33,7 +33,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.wltea.analyzer.cfg.Configuration;
-import org.wltea.analyzer.dic.Dictionary;
+import org.wltea.analyzer.dic.DictSnapshot;
 
 /**
  * 
@@ -75,6 +75,10 @@ class AnalyzeContext {
     private LinkedList<Lexeme> results;
 	//分词器配置项
 	private Configuration cfg;
+	//本次分词固定使用的词典快照
+	private DictSnapshot dictionary;
+	//当前字符的词典匹配结果，各子分词器共用
+	private DictMatches dictMatches;
 
     public AnalyzeContext(Configuration configuration){
         this.cfg = configuration;
@@ -84,6 +88,19 @@ class AnalyzeContext {
     	this.orgLexemes = new QuickSortSet();
     	this.pathMap = new HashMap<Integer , LexemePath>();    	
     	this.results = new LinkedList<Lexeme>();
+    	this.dictMatches = new DictMatches();
+    }
+    
+    DictSnapshot getDictionary(){
+    	return this.dictionary;
+    }
+    
+    void setDictionary(DictSnapshot dictionary){
+    	this.dictionary = dictionary;
+    }
+    
+    DictMatches getDictMatches(){
+    	return this.dictMatches;
     }
     
     int getCursor(){
@@ -223,6 +240,17 @@ class AnalyzeContext {
 	 * @param lexeme
 	 */
 	void addLexeme(Lexeme lexeme){
+		this.markStopWord(lexeme);
+		this.orgLexemes.addLexeme(lexeme);
+	}
+	
+	/**
+	 * 向分词结果集添加词典中的词元
+	 * @param lexeme
+	 * @param flags 词元所属的词典类别，由词典扫描得到，无需再次查找停止词
+	 */
+	void addLexeme(Lexeme lexeme , int flags){
+		lexeme.setStopWord((flags & DictSnapshot.STOPWORD) != 0);
 		this.orgLexemes.addLexeme(lexeme);
 	}
 	
@@ -303,9 +331,11 @@ class AnalyzeContext {
 	private void outputSingleCJK(int index){
 		if(CharacterUtil.CHAR_CHINESE == this.charTypes[index]){			
 			Lexeme singleCharLexeme = new Lexeme(this.buffOffset , index , 1 , Lexeme.TYPE_CNCHAR);
+			this.markStopWord(singleCharLexeme);
 			this.results.add(singleCharLexeme);
 		}else if(CharacterUtil.CHAR_OTHER_CJK == this.charTypes[index]){
 			Lexeme singleCharLexeme = new Lexeme(this.buffOffset , index , 1 , Lexeme.TYPE_OTHER_CJK);
+			this.markStopWord(singleCharLexeme);
 			this.results.add(singleCharLexeme);
 		}
 	}
@@ -322,7 +352,7 @@ class AnalyzeContext {
 		while(result != null){
     		//数量词合并
     		this.compound(result);
-    		if(Dictionary.getSingleton().isStopWord(this.segmentBuff ,  result.getBegin() , result.getLength())){
+    		if(result.isStopWord()){
        			//是停止词继续取列表的下一个
     			result = this.results.pollFirst(); 				
     		}else{
@@ -347,6 +377,14 @@ class AnalyzeContext {
     	this.results.clear();
     	this.segmentBuff = new char[BUFF_SIZE];
     	this.pathMap.clear();
+    	this.dictMatches.reset();
+	}
+	
+	/**
+	 * 按词元当前覆盖的字符判断是否停止词，词元合并后长度改变需要重新判断
+	 */
+	private void markStopWord(Lexeme lexeme){
+		lexeme.setStopWord(this.dictionary.isStopWord(this.segmentBuff , lexeme.getBegin() , lexeme.getLength()));
 	}
 	
 	/**
@@ -373,6 +411,7 @@ class AnalyzeContext {
 				if(appendOk){
 					//弹出
 					this.results.pollFirst(); 
+					this.markStopWord(result);
 				}
 			}
 			
@@ -387,6 +426,7 @@ class AnalyzeContext {
 				if(appendOk){
 					//弹出
 					this.results.pollFirst();   				
+					this.markStopWord(result);
 				}
 			}
 
@@ -24,13 +24,11 @@
  */
 package org.wltea.analyzer.core;
 
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
-import org.wltea.analyzer.dic.Dictionary;
-import org.wltea.analyzer.dic.Hit;
+import org.wltea.analyzer.dic.DictSnapshot;
 
 /**
  * 
@@ -63,14 +61,16 @@ class CN_QuantifierSegmenter implements ISegmenter{
 	 */
 	private int nEnd;
 
-	//待处理的量词hit队列
-	private List<Hit> countHits;
+	//尚未结束的量词前缀的起始位置
+	private int[] countBegins;
+	private int countBeginSize;
 	
 	
 	CN_QuantifierSegmenter(){
 		nStart = -1;
 		nEnd = -1;
-		this.countHits  = new LinkedList<Hit>();
+		this.countBegins = new int[4];
+		this.countBeginSize = 0;
 	}
 	
 	/**
@@ -83,7 +83,7 @@ class CN_QuantifierSegmenter implements ISegmenter{
 		this.processCount(context);
 		
 		//判断是否锁定缓冲区
-		if(this.nStart == -1 && this.nEnd == -1	&& countHits.isEmpty()){
+		if(this.nStart == -1 && this.nEnd == -1	&& countBeginSize == 0){
 			//对缓冲区解锁
 			context.unlockBuffer(SEGMENTER_NAME);
 		}else{
@@ -98,7 +98,7 @@ class CN_QuantifierSegmenter implements ISegmenter{
 	public void reset() {
 		nStart = -1;
 		nEnd = -1;
-		countHits.clear();
+		countBeginSize = 0;
 	}
 	
 	/**
@@ -148,58 +148,55 @@ class CN_QuantifierSegmenter implements ISegmenter{
 		
 		if(CharacterUtil.CHAR_CHINESE == context.getCurrentCharType()){
 			
-			//优先处理countHits中的hit
-			if(!this.countHits.isEmpty()){
-				//处理词段队列
-				Hit[] tmpArray = this.countHits.toArray(new Hit[this.countHits.size()]);
-				for(Hit hit : tmpArray){
-					hit = Dictionary.getSingleton().matchWithHit(context.getSegmentBuff(), context.getCursor() , hit);
-					if(hit.isMatch()){
-						//输出当前的词
-						Lexeme newLexeme = new Lexeme(context.getBufferOffset() , hit.getBegin() , context.getCursor() - hit.getBegin() + 1 , Lexeme.TYPE_COUNT);
-						context.addLexeme(newLexeme);
-						
-						if(!hit.isPrefix()){//不是词前缀，hit不需要继续匹配，移除
-							this.countHits.remove(hit);
-						}
-						
-					}else if(hit.isUnmatch()){
-						//hit不是词，移除
-						this.countHits.remove(hit);
-					}					
-				}
-			}				
-
-			//*********************************
-			//对当前指针位置的字符进行单字匹配
-			Hit singleCharHit = Dictionary.getSingleton().matchInQuantifierDict(context.getSegmentBuff(), context.getCursor(), 1);
-			if(singleCharHit.isMatch()){//首字成量词词
-				//输出当前的词
-				Lexeme newLexeme = new Lexeme(context.getBufferOffset() , context.getCursor() , 1 , Lexeme.TYPE_COUNT);
-				context.addLexeme(newLexeme);
-
-				//同时也是词前缀
-				if(singleCharHit.isPrefix()){
-					//前缀匹配则放入hit列表
-					this.countHits.add(singleCharHit);
+			//当前字符也作为量词的起始位置
+			this.addCountBegin(context.getCursor());
+			
+			//以当前字符结尾、起始于量词前缀的量词，取自分词上下文中的词典匹配结果
+			DictMatches matches = context.getDictMatches();
+			for(int i = 0 ; i < matches.size() ; i++){
+				if((matches.getFlags(i) & DictSnapshot.QUANTIFIER) != 0 && this.isCountBegin(matches.getBegin(i))){
+					//输出当前的词
+					Lexeme newLexeme = new Lexeme(context.getBufferOffset() , matches.getBegin(i) , matches.getLength(i) , Lexeme.TYPE_COUNT);
+					context.addLexeme(newLexeme , matches.getFlags(i));
 				}
-			}else if(singleCharHit.isPrefix()){//首字为量词前缀
-				//前缀匹配则放入hit列表
-				this.countHits.add(singleCharHit);
 			}
 			
+			//只保留仍是量词前缀的起始位置
+			int n = 0;
+			for(int i = 0 ; i < countBeginSize ; i++){
+				if(matches.isPrefix(countBegins[i] , DictSnapshot.QUANTIFIER)){
+					countBegins[n++] = countBegins[i];
+				}
+			}
+			countBeginSize = n;
 			
 		}else{
 			//输入的不是中文字符
 			//清空未成形的量词
-			this.countHits.clear();
+			this.countBeginSize = 0;
 		}
 		
 		//缓冲区数据已经读完，还有尚未输出的量词
 		if(context.isBufferConsumed()){
 			//清空未成形的量词
-			this.countHits.clear();
+			this.countBeginSize = 0;
+		}
+	}
+	
+	private void addCountBegin(int begin){
+		if(countBeginSize == countBegins.length){
+			countBegins = Arrays.copyOf(countBegins, countBeginSize << 1);
 		}
+		countBegins[countBeginSize++] = begin;
+	}
+	
+	private boolean isCountBegin(int begin){
+		for(int i = 0 ; i < countBeginSize ; i++){
+			if(countBegins[i] == begin){
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -207,7 +204,7 @@ class CN_QuantifierSegmenter implements ISegmenter{
 	 * @return
 	 */
 	private boolean needCountScan(AnalyzeContext context){
-		if((nStart != -1 && nEnd != -1 ) || !countHits.isEmpty()){
+		if((nStart != -1 && nEnd != -1 ) || countBeginSize > 0){
 			//正在处理中文数词,或者正在处理量词
 			return true;
 		}else{
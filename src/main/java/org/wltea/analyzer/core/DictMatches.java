@@ -0,0 +1,125 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.core;
+
+import java.util.Arrays;
+
+import org.wltea.analyzer.dic.DictScanner;
+import org.wltea.analyzer.dic.DictSnapshot;
+
+/**
+ * 当前字符的词典匹配结果
+ * 每个指针位置只推进一次词典扫描器，取出以当前字符结尾的全部词条及其类别（主词典、量词、停止词），
+ * 供各个子分词器共用，不再各自匹配同一段字符
+ */
+class DictMatches {
+
+	//扫描器所属的词典快照
+	private DictSnapshot dictionary;
+	//词典扫描器，记录尚未结束的前缀
+	private DictScanner scanner;
+
+	//以当前字符结尾的词条
+	private int[] begins = new int[8];
+	private int[] lengths = new int[8];
+	private int[] flags = new int[8];
+	private int size;
+
+	/**
+	 * 读入当前字符，取出以它结尾的全部词条
+	 * @param context
+	 */
+	void scan(AnalyzeContext context) {
+		if(this.dictionary != context.getDictionary()){
+			//分词上下文换用了新的词典快照
+			this.dictionary = context.getDictionary();
+			this.scanner = this.dictionary.newMainDictScanner();
+		}
+		this.size = 0;
+		if(CharacterUtil.CHAR_USELESS != context.getCurrentCharType()){
+			this.scanner.next(context.getSegmentBuff(), context.getCursor());
+			while(this.scanner.nextWord()){
+				if(this.size == this.begins.length){
+					this.begins = Arrays.copyOf(this.begins, this.size << 1);
+					this.lengths = Arrays.copyOf(this.lengths, this.size << 1);
+					this.flags = Arrays.copyOf(this.flags, this.size << 1);
+				}
+				this.begins[this.size] = this.scanner.getWordBegin();
+				this.lengths[this.size] = this.scanner.getWordLength();
+				this.flags[this.size] = this.scanner.getWordFlags();
+				this.size++;
+			}
+		}else{
+			//遇到CHAR_USELESS字符，丢弃未结束的前缀
+			this.scanner.reset();
+		}
+		//缓冲区已经读完，丢弃未结束的前缀
+		if(context.isBufferConsumed()){
+			this.scanner.reset();
+		}
+	}
+
+	/**
+	 * 以当前字符结尾的词条数目
+	 */
+	int size() {
+		return this.size;
+	}
+
+	int getBegin(int i) {
+		return this.begins[i];
+	}
+
+	int getLength(int i) {
+		return this.lengths[i];
+	}
+
+	/**
+	 * 词条所属的类别，见 {@link DictSnapshot#MAIN} 等
+	 */
+	int getFlags(int i) {
+		return this.flags[i];
+	}
+
+	/**
+	 * 是否还有未结束的主词典前缀
+	 */
+	boolean isPrefix() {
+		return this.scanner != null && this.scanner.isPrefix();
+	}
+
+	/**
+	 * 从 begin 到当前字符的字符串是否还能延伸为带 flag 类别标记的词
+	 */
+	boolean isPrefix(int begin, int flag) {
+		return this.scanner != null && this.scanner.isPrefix(begin, flag);
+	}
+
+	/**
+	 * 丢弃未结束的前缀
+	 */
+	void reset() {
+		this.size = 0;
+		if(this.scanner != null){
+			this.scanner.reset();
+		}
+	}
+}
@@ -24,6 +24,7 @@
 package org.wltea.analyzer.core;
 
 import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.dic.Dictionary;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -64,6 +65,8 @@ public final class IKSegmenter {
 	private void init(){
 		//初始化分词上下文
 		this.context = new AnalyzeContext(configuration);
+		//固定本次分词使用的词典快照
+		this.context.setDictionary(Dictionary.getSingleton().getSnapshot(configuration.getDictEngine()));
 		//加载子分词器
 		this.segmenters = this.loadSegmenters();
 		//加载歧义裁决器
@@ -108,6 +111,8 @@ public final class IKSegmenter {
 				//初始化指针
 				context.initCursor();
 				do{
+        			//推进词典扫描，各子分词器共用当前字符的匹配结果
+        			context.getDictMatches().scan(context);
         			//遍历子分词器
         			for(ISegmenter segmenter : segmenters){
         				segmenter.analyze(context);
@@ -122,6 +127,7 @@ public final class IKSegmenter {
 				for(ISegmenter segmenter : segmenters){
 					segmenter.reset();
 				}
+				context.getDictMatches().reset();
 			}
 			//对分词进行歧义处理
 			this.arbitrator.process(context, configuration.isUseSmart());
@@ -140,6 +146,8 @@ public final class IKSegmenter {
 	public synchronized void reset(Reader input) {
 		this.input = input;
 		context.reset();
+		//新的分词过程使用最新的词典快照
+		context.setDictionary(Dictionary.getSingleton().getSnapshot(configuration.getDictEngine()));
 		for(ISegmenter segmenter : segmenters){
 			segmenter.reset();
 		}
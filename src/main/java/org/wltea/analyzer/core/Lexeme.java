@@ -60,6 +60,8 @@ public class Lexeme implements Comparable<Lexeme>{
     private String lexemeText;
     //词元类型
     private int lexemeType;
+    //是否停止词，在词元生成时确定
+    private boolean stopWord;
     
     
 	public Lexeme(int offset , int begin , int length , int lexemeType){
@@ -252,6 +254,18 @@ public class Lexeme implements Comparable<Lexeme>{
 		this.lexemeType = lexemeType;
 	}
 	
+	/**
+	 * 判断词元是否停止词
+	 * @return boolean
+	 */
+	public boolean isStopWord() {
+		return stopWord;
+	}
+
+	public void setStopWord(boolean stopWord) {
+		this.stopWord = stopWord;
+	}
+	
 	/**
 	 * 合并两个相邻的词元
 	 * @param l
@@ -0,0 +1,191 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import static org.wltea.analyzer.dic.DoubleArrayTrie.NONE;
+import static org.wltea.analyzer.dic.DoubleArrayTrie.ROOT;
+
+/**
+ * AC自动机（Aho-Corasick）
+ * 以双数组的状态为自动机状态，附加失败指针与输出指针：
+ * 每读入一个字符做一次状态转移，即可得到以该字符结尾的全部词条，
+ * 不必为每个尚未结束的前缀分别向下匹配
+ */
+final class AhoCorasick {
+
+	private final DoubleArrayTrie trie;
+	//失败指针：状态对应字符串的最长真后缀所在的状态
+	private final int[] fail;
+	//输出指针：沿失败指针找到的第一个成词状态，没有则为 NONE
+	private final int[] output;
+	//状态深度，即从根到该状态的字符数
+	private final int[] depth;
+	//第 s 位为 1 表示状态 s 或其某个后缀状态还有子节点，即仍有未结束的前缀
+	private final long[] open;
+
+	AhoCorasick(DoubleArrayTrie trie) {
+		this.trie = trie;
+		int capacity = trie.capacity();
+		this.fail = new int[capacity];
+		this.output = new int[capacity];
+		this.depth = new int[capacity];
+		this.open = new long[(capacity >>> 6) + 1];
+
+		//由 check 数组反查每个状态的子状态
+		int[] offsets = new int[capacity + 1];
+		for (int t = 1; t < capacity; t++) {
+			int p = trie.parent(t);
+			if (p != NONE) {
+				offsets[p + 1]++;
+			}
+		}
+		for (int i = 0; i < capacity; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] children = new int[offsets[capacity]];
+		int[] next = new int[capacity];
+		System.arraycopy(offsets, 0, next, 0, capacity);
+		for (int t = 1; t < capacity; t++) {
+			int p = trie.parent(t);
+			if (p != NONE) {
+				children[next[p]++] = t;
+			}
+		}
+
+		//按深度由浅到深计算失败指针，计算某状态时其后缀状态均已完成
+		int[] queue = next;
+		int head = 0;
+		int tail = 0;
+		fail[ROOT] = ROOT;
+		output[ROOT] = NONE;
+		queue[tail++] = ROOT;
+		while (head < tail) {
+			int s = queue[head++];
+			for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+				int t = children[i];
+				int f = s == ROOT ? ROOT : transition(fail[s], trie.label(t));
+				fail[t] = f;
+				output[t] = trie.isWord(f) && f != ROOT ? f : output[f];
+				depth[t] = depth[s] + 1;
+				if (trie.hasChildren(t) || isOpen(f)) {
+					open[t >>> 6] |= 1L << t;
+				}
+				queue[tail++] = t;
+			}
+		}
+	}
+
+	/**
+	 * 自动机状态转移，转移失败时沿失败指针回退
+	 * @param state 当前状态
+	 * @param c 输入字符
+	 * @return 转移后的状态，不会返回 NONE
+	 */
+	int transition(int state, char c) {
+		while (true) {
+			int t = trie.transition(state, c);
+			if (t != NONE) {
+				return t;
+			}
+			if (state == ROOT) {
+				return ROOT;
+			}
+			state = fail[state];
+		}
+	}
+
+	/**
+	 * 以 state 对应字符串结尾的最长词条所在的状态，没有则为 NONE
+	 */
+	int firstWord(int state) {
+		return state != ROOT && trie.isWord(state) ? state : output[state];
+	}
+
+	/**
+	 * 以 state 对应字符串结尾、比 state 更短的下一个词条所在的状态，没有则为 NONE
+	 */
+	int nextWord(int state) {
+		return output[state];
+	}
+
+	/**
+	 * 失败指针：state 对应字符串的最长真后缀所在的状态
+	 * 沿失败指针可以依次找到以当前字符结尾、在词典树中的全部后缀
+	 */
+	int fail(int state) {
+		return fail[state];
+	}
+
+	/**
+	 * 状态深度，即词长
+	 */
+	int depth(int state) {
+		return depth[state];
+	}
+
+	/**
+	 * 是否还有未结束的前缀，即后续字符可能组成更长的词
+	 */
+	boolean isOpen(int state) {
+		return (open[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * 创建逐字扫描器
+	 */
+	WordScanner newScanner() {
+		return new Scanner();
+	}
+
+	private final class Scanner implements WordScanner {
+
+		private int state = ROOT;
+		//尚未取出的词条状态
+		private int word = NONE;
+
+		@Override
+		public void next(char c) {
+			state = transition(state, c);
+			word = firstWord(state);
+		}
+
+		@Override
+		public int nextWord() {
+			if (word == NONE) {
+				return 0;
+			}
+			int length = depth[word];
+			word = output[word];
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return AhoCorasick.this.isOpen(state);
+		}
+
+		@Override
+		public void reset() {
+			state = ROOT;
+			word = NONE;
+		}
+	}
+}
@@ -9,59 +9,60 @@ import org.wltea.analyzer.util.JDBCUtils;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
-public class DatabaseMonitor implements Runnable {
+public class DatabaseMonitor implements DictSource {
     private static final Logger logger = ESPluginLoggerFactory.getLogger(DatabaseMonitor.class.getName());
     public static final String PATH_JDBC_PROPERTIES = "jdbc.properties";
-    private static final String JDBC_URL = "jdbc.url";
+    static final String JDBC_URL = "jdbc.url";
     private static final String JDBC_USERNAME = "jdbc.username";
-    private static final String JDBC_PASSWORD = "jdbc.password";
+    static final String JDBC_PASSWORD = "jdbc.password";
     private static final String JDBC_DRIVER = "jdbc.driver";
-    private static final String SQL_UPDATE_MAIN_DIC = "jdbc.update.main.dic.sql";
-    private static final String SQL_UPDATE_STOPWORD = "jdbc.update.stopword.sql";
+    static final String SQL_UPDATE_MAIN_DIC = "jdbc.update.main.dic.sql";
+    static final String SQL_UPDATE_STOPWORD = "jdbc.update.stopword.sql";
     //更新间隔
     public final static String JDBC_UPDATE_INTERVAL = "jdbc.update.interval";
+    private static final long DEFAULT_UPDATE_INTERVAL = 60;
+    //自适应间隔的下限、上限（秒），默认为更新间隔的 1/4 与 10 倍
+    private static final String JDBC_UPDATE_MIN_INTERVAL = "jdbc.update.min.interval";
+    private static final String JDBC_UPDATE_MAX_INTERVAL = "jdbc.update.max.interval";
+    //每页读取的行数
+    private static final String JDBC_UPDATE_PAGE_SIZE = "jdbc.update.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 5000;
+    // 按 (update_time, id) 分页的语句的参数个数
+    private static final int KEYSET_PARAMETERS = 4;
 
-    private static final Timestamp DEFAULT_LAST_UPDATE = Timestamp.valueOf(LocalDateTime.of(LocalDate.of(2020, 1, 1), LocalTime.MIN));
-    private static Timestamp lastUpdateTimeOfMainDic = null;
-    private static Timestamp lastUpdateTimeOfStopword = null;
+    // 已应用的修改的本地日志，读取游标由其检查点恢复
+    private final DbChangeLog changeLog;
+    private final Cursor mainDicCursor;
+    private final Cursor stopwordCursor;
 
-    private static DruidDataSource dataSource;
-    private static final int maxActive = 10;
-    private static final int initialSize = 1;
+    // 只有一个轮询任务顺序地使用连接：最多一个连接，不预先建立，空闲时不保留
+    private final DruidDataSource dataSource;
+    private static final int maxActive = 1;
+    private static final int initialSize = 0;
     private static final int maxWait = 6000;
-    private static final int minIdle = 2;
-
-    static {
-        dataSource= new DruidDataSource();
-        dataSource.setUrl(getUrl());
-        dataSource.setDriverClassName(getDriver());
-        dataSource.setUsername(getUsername());
-        dataSource.setPassword(getPassword());
-        dataSource.setMaxActive(maxActive);
-        dataSource.setInitialSize(initialSize);
-        dataSource.setMaxWait(maxWait);
-        dataSource.setMinIdle(minIdle);
-        dataSource.setConnectionErrorRetryAttempts(5);
-        dataSource.setBreakAfterAcquireFailure(true);
-    }
+    private static final int minIdle = 0;
 
-    public static String getUrl() {
-        return Dictionary.getSingleton().getProperty(JDBC_URL);
-    }
-    public static String getUsername() {
-        return Dictionary.getSingleton().getProperty(JDBC_USERNAME);
-    }
-    public static String getPassword() {
-        return Dictionary.getSingleton().getProperty(JDBC_PASSWORD);
-    }
-    public static String getDriver() {
-        return Dictionary.getSingleton().getProperty(JDBC_DRIVER);
+    private final long interval;
+    private final long minInterval;
+    private final long maxInterval;
+
+    /**
+     * 是否配置了数据库（jdbc.url 不为空），未配置时不创建数据库来源
+     */
+    static boolean isConfigured(Dictionary dict) {
+        String url = dict.getProperty(JDBC_URL);
+        return url != null && !url.trim().isEmpty();
     }
     public String getUpdateMainDicSql() {
         return Dictionary.getSingleton().getProperty(SQL_UPDATE_MAIN_DIC);
@@ -71,14 +72,42 @@ public class DatabaseMonitor implements Runnable {
     }
 
     /**
-     * 加载MySQL驱动
+     * 加载MySQL驱动，创建连接池（首次查询时才建立连接）
+     * @param changeLog 本地日志，游标从其检查点继续
      */
-    public DatabaseMonitor() {
+    DatabaseMonitor(Dictionary dict, DbChangeLog changeLog) {
         logger.info("---------- DatabaseMonitor struct start ---------");
+        this.changeLog = changeLog;
+        this.mainDicCursor = changeLog.mainCursor();
+        this.stopwordCursor = changeLog.stopCursor();
+        long seconds = dict.getLongProperty(JDBC_UPDATE_INTERVAL, DEFAULT_UPDATE_INTERVAL);
+        this.interval = TimeUnit.SECONDS.toMillis(seconds);
+        this.minInterval = TimeUnit.SECONDS.toMillis(
+                dict.getLongProperty(JDBC_UPDATE_MIN_INTERVAL, Math.max(1, seconds / DEFAULT_MIN_INTERVAL_DIVISOR)));
+        this.maxInterval = TimeUnit.SECONDS.toMillis(
+                dict.getLongProperty(JDBC_UPDATE_MAX_INTERVAL, seconds * DEFAULT_MAX_INTERVAL_FACTOR));
+        String driver = dict.getProperty(JDBC_DRIVER);
+        dataSource = new DruidDataSource();
+        dataSource.setUrl(dict.getProperty(JDBC_URL).trim());
+        if (driver != null) {
+            // 未配置时由连接池按地址推断
+            dataSource.setDriverClassName(driver);
+        }
+        dataSource.setUsername(dict.getProperty(JDBC_USERNAME));
+        dataSource.setPassword(dict.getProperty(JDBC_PASSWORD));
+        dataSource.setMaxActive(maxActive);
+        dataSource.setInitialSize(initialSize);
+        dataSource.setMaxWait(maxWait);
+        dataSource.setMinIdle(minIdle);
+        dataSource.setConnectionErrorRetryAttempts(5);
+        dataSource.setBreakAfterAcquireFailure(true);
         SpecialPermission.check();
         AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            if (driver == null) {
+                return null;
+            }
             try {
-                Class.forName(getDriver());
+                Class.forName(driver);
             } catch (ClassNotFoundException e) {
                 logger.error("mysql jdbc driver not found", e);
             }
@@ -87,122 +116,248 @@ public class DatabaseMonitor implements Runnable {
     }
 
     @Override
-    public void run() {
+    public String name() {
+        return "database";
+    }
+
+    @Override
+    public long interval() {
+        return interval;
+    }
+
+    @Override
+    public long minInterval() {
+        return minInterval;
+    }
+
+    @Override
+    public long maxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * 由 {@link MaintenanceScheduler} 周期执行：从 jdbc.update.interval 开始，持续有修改时缩短到 jdbc.update.min.interval，
+     * 没有修改时延长到 jdbc.update.max.interval；失败时抛出异常，调度器按指数退避推迟下一次
+     * @return 主词典或停用词是否有修改
+     */
+    @Override
+    public boolean execute() throws Exception {
         SpecialPermission.check();
-        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
-//            Connection conn = null;
-            try {
-//                conn = DriverManager.getConnection(getUrl(), getUsername(), getPassword());
-                //conn = dataSource.getConnection();
+        try {
+            return AccessController.doPrivileged((PrivilegedExceptionAction<Boolean>) () -> {
                 // 更新主词典
-                updateMainDic();
+                int mainChanges = updateMainDic();
                 // 更新停用词
-                updateStopword();
-            }catch (Exception e ){
-                logger.error("failed to get connection", e);
-            }finally {
-//                if (conn != null) {
-//                    try {
-//                        conn.close();
-//                    } catch (SQLException e) {
-//                        logger.error("failed to close Connection", e);
-//                    }
-//                }
-            }
-            return null;
-        });
+                int stopChanges = updateStopword();
+                return mainChanges + stopChanges > 0;
+            });
+        } catch (PrivilegedActionException e) {
+            throw e.getException();
+        } finally {
+            // 编译本轮已应用的修改，使其对分词生效，与同时变化的其他来源合并编译
+            Dictionary.getSingleton().requestCompile();
+        }
     }
 
+    /**
+     * 关闭连接池，节点关闭时调用
+     */
+    @Override
+    public void close() {
+        dataSource.close();
+    }
 
     /**
      * 主词典
+     * @return 新增与删除的词条数目
      */
-    public synchronized void updateMainDic() {
-        Connection conn = null;
-        logger.info("start update main dic");
-        int numberOfAddWords = 0;
-        int numberOfDisableWords = 0;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-        try {
-            conn = dataSource.getConnection();
-            String sql = getUpdateMainDicSql();
-            Timestamp param = lastUpdateTimeOfMainDic == null ? DEFAULT_LAST_UPDATE : lastUpdateTimeOfMainDic;
-            logger.info("param: " + param);
-            ps = conn.prepareStatement(sql);
-            ps.setTimestamp(1, param);
-            rs = ps.executeQuery();
-            while (rs.next()) {
-                String word = rs.getString("word");
-                word = word.trim();
-                if (word.isEmpty()) {
-                    continue;
-                }
-                lastUpdateTimeOfMainDic = rs.getTimestamp("update_time");
-                if (rs.getBoolean("is_deleted")) {
-//                    logger.info("[main dic] disable word: {}", word);
-                    // 删除
-                    Dictionary.disableWord(word);
-                    numberOfDisableWords++;
-                } else {
-//                    logger.info("[main dic] add word: {}", word);
-                    // 添加
-                    Dictionary.addWord(word);
-                    numberOfAddWords++;
-                }
-            }
-            logger.info("end update main dic -> addWord: {}, disableWord: {}", numberOfAddWords, numberOfDisableWords);
-        } catch (SQLException e) {
-            logger.error("failed to update main_dic", e);
-            // 关闭 ResultSet、PreparedStatement
-        }finally {
-            closeRsAndPs(rs, ps,conn);
+    public synchronized int updateMainDic() throws SQLException {
+        logger.info("start update main dic, after {}", mainDicCursor);
+        try (Connection conn = dataSource.getConnection()) {
+            int[] counts = poll(conn, getUpdateMainDicSql(), mainDicCursor, getPageSize(), false, changeLog);
+            logger.info("end update main dic -> addWord: {}, disableWord: {}", counts[0], counts[1]);
+            return counts[0] + counts[1];
         }
     }
 
     /**
      * 停用词
+     * @return 新增与删除的词条数目
      */
-    public synchronized void updateStopword() {
-        Connection conn = null;
-        logger.info("start update stopword");
-        int numberOfAddWords = 0;
-        int numberOfDisableWords = 0;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-        try {
-            conn = dataSource.getConnection();
-            String sql = getUpdateStopWordSql();
-            Timestamp param = lastUpdateTimeOfStopword == null ? DEFAULT_LAST_UPDATE : lastUpdateTimeOfStopword;
-            logger.info("param: " + param);
-            ps = conn.prepareStatement(sql);
-            ps.setTimestamp(1, param);
-            rs = ps.executeQuery();
-            while (rs.next()) {
-                String word = rs.getString("word");
-                word = word.trim();
-                if (word.isEmpty()) {
-                    continue;
+    public synchronized int updateStopword() throws SQLException {
+        logger.info("start update stopword, after {}", stopwordCursor);
+        try (Connection conn = dataSource.getConnection()) {
+            int[] counts = poll(conn, getUpdateStopWordSql(), stopwordCursor, getPageSize(), true, changeLog);
+            logger.info("end update stopword -> addWord: {}, disableWord: {}", counts[0], counts[1]);
+            return counts[0] + counts[1];
+        }
+    }
+
+    private int getPageSize() {
+        String pageSize = Dictionary.getSingleton().getProperty(JDBC_UPDATE_PAGE_SIZE);
+        if (pageSize != null && !pageSize.trim().isEmpty()) {
+            try {
+                return Math.max(1, Integer.parseInt(pageSize.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("invalid {}: {}, using {}", JDBC_UPDATE_PAGE_SIZE, pageSize, DEFAULT_PAGE_SIZE);
+            }
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * 读取游标之后的全部修改，逐页应用到词典
+     * 语句有4个参数时按 (update_time, id) 分页：参数依次为 update_time、update_time、id、每页行数，
+     * 按 update_time、id 排序，同一时间的多行跨页也不会遗漏；
+     * 只有1个参数（update_time）时为旧的写法，一次查询全部修改，每读到每页行数的行应用一次。
+     * 旧的写法不保证流式读取：MySQL Connector/J 只有在 jdbc.url 中设置 useCursorFetch=true 时才按 fetch size 分批读取，
+     * 否则整个结果集先读入内存；并且与上次读到的最后一行 update_time 相同、之后才写入的行不会再被查到。
+     * 修改较多的表应使用4个参数的写法
+     * 每页应用后追加到本地日志并移动检查点
+     * @return {新增数目, 删除数目}
+     */
+    static int[] poll(Connection conn, String sql, Cursor cursor, int pageSize, boolean stopwords,
+            DbChangeLog changeLog) throws SQLException {
+        int params = countParameters(sql);
+        if (params != 1 && params != KEYSET_PARAMETERS) {
+            throw new SQLException("expect 1 or " + KEYSET_PARAMETERS + " parameters: " + sql);
+        }
+        int[] counts = new int[2];
+        PageApplier applier = new PageApplier(cursor, stopwords, counts, changeLog);
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(pageSize);
+            if (params == 1) {
+                ps.setTimestamp(1, cursor.updateTime);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        applier.add(rs);
+                        if (applier.size() >= pageSize) {
+                            applier.apply();
+                        }
+                    }
                 }
-                lastUpdateTimeOfStopword = rs.getTimestamp("update_time");
-                if (rs.getBoolean("is_deleted")) {
-//                    logger.info("[stopword] disable word: {}", word);
-                    // 删除
-                    Dictionary.disableStopword(word);
-                    numberOfDisableWords++;
-                } else {
-//                    logger.info("[stopword] add word: {}", word);
-                    // 添加
-                    Dictionary.addStopword(word);
-                    numberOfAddWords++;
+                applier.apply();
+                return counts;
+            }
+            int rows;
+            do {
+                ps.setTimestamp(1, cursor.updateTime);
+                ps.setTimestamp(2, cursor.updateTime);
+                ps.setLong(3, cursor.id);
+                ps.setInt(4, pageSize);
+                rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        applier.add(rs);
+                        rows++;
+                    }
                 }
+                applier.apply();
+            } while (rows >= pageSize);
+        }
+        return counts;
+    }
+
+    private static int countParameters(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
             }
-            logger.info("end update stopword -> addWord: {}, disableWord: {}", numberOfAddWords, numberOfDisableWords);
-        } catch (SQLException e) {
-            logger.error("failed to update main_dic", e);
-        } finally {
-            // 关闭 ResultSet、PreparedStatement
-            closeRsAndPs(rs, ps,conn);
+        }
+        return count;
+    }
+
+    /**
+     * 读取位置：最后应用的一行的 update_time 与 id
+     */
+    static final class Cursor {
+
+        // 没有检查点时从这一时间开始读取
+        static final Timestamp START = Timestamp.valueOf(LocalDateTime.of(LocalDate.of(2020, 1, 1), LocalTime.MIN));
+
+        private Timestamp updateTime = START;
+        private long id = Long.MIN_VALUE;
+
+        Timestamp getUpdateTime() {
+            return updateTime;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        void moveTo(Timestamp updateTime, long id) {
+            this.updateTime = updateTime;
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + updateTime + ", " + (id == Long.MIN_VALUE ? "-" : String.valueOf(id)) + ")";
+        }
+    }
+
+    /**
+     * 收集一页的修改，同一个词以最后一行为准，整页一次应用到词典后再移动游标
+     */
+    private static final class PageApplier {
+
+        private final Cursor cursor;
+        private final boolean stopwords;
+        private final int[] counts;
+        private final DbChangeLog changeLog;
+        private final Map<String, Boolean> changes = new LinkedHashMap<>();
+        private Timestamp lastUpdateTime;
+        private long lastId;
+        private int rows;
+
+        PageApplier(Cursor cursor, boolean stopwords, int[] counts, DbChangeLog changeLog) {
+            this.cursor = cursor;
+            this.stopwords = stopwords;
+            this.counts = counts;
+            this.changeLog = changeLog;
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            rows++;
+            lastUpdateTime = rs.getTimestamp("update_time");
+            lastId = rs.getLong("id");
+            String word = rs.getString("word");
+            if (word == null) {
+                return;
+            }
+            word = word.trim().toLowerCase();
+            // 含换行的词不是合法词条，也无法按行写入日志
+            if (word.isEmpty() || word.indexOf('\n') >= 0 || word.indexOf('\r') >= 0) {
+                return;
+            }
+            changes.remove(word);
+            changes.put(word, !rs.getBoolean("is_deleted"));
+        }
+
+        int size() {
+            return rows;
+        }
+
+        void apply() {
+            if (rows == 0) {
+                return;
+            }
+            for (Boolean enabled : changes.values()) {
+                counts[enabled ? 0 : 1]++;
+            }
+            if (stopwords) {
+                Dictionary.getSingleton().updateStopWords(changes);
+            } else {
+                Dictionary.getSingleton().updateMainWords(changes);
+            }
+            cursor.moveTo(lastUpdateTime, lastId);
+            if (changeLog != null) {
+                changeLog.append(stopwords, changes);
+            }
+            changes.clear();
+            rows = 0;
         }
     }
 
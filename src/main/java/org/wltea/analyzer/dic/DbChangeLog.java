@@ -0,0 +1,344 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.Logger;
+import org.wltea.analyzer.help.ESPluginLoggerFactory;
+
+/**
+ * 数据库词条修改的本地日志与检查点
+ * 每页修改应用到词典后追加到日志（主词典、停用词各一个文件，每行为 +词 或 -词）并落盘，
+ * 再原子地写入检查点：两类修改的读取游标与日志的有效长度。
+ * 节点启动时从本地日志恢复数据库来的词条与游标，之后只向数据库查询检查点之后的修改；
+ * 检查点之后的日志内容（写入中途停止）丢弃，对应的修改会重新查询。
+ * 数据库地址或查询语句变化时日志作废，从头查询
+ */
+final class DbChangeLog {
+
+	private static final Logger logger = ESPluginLoggerFactory.getLogger(DbChangeLog.class.getName());
+
+	private static final String MAIN_LOG = "main.log";
+	private static final String STOP_LOG = "stopword.log";
+	private static final String CHECKPOINT = "checkpoint.properties";
+
+	private static final String KEY_SOURCE = "source";
+	private static final String KEY_MAIN = "main";
+	private static final String KEY_STOP = "stopword";
+	private static final String SUFFIX_TIME = ".update_time";
+	private static final String SUFFIX_ID = ".id";
+	private static final String SUFFIX_LENGTH = ".log_length";
+
+	// 日志行数超过最终词条数的倍数时，启动时压缩为每个词一行
+	private static final int COMPACT_RATIO = 2;
+
+	private final Path dir;
+
+	/*
+	 * 数据库地址与查询语句，变化时日志作废
+	 */
+	private final String source;
+
+	private final DatabaseMonitor.Cursor mainCursor;
+	private final DatabaseMonitor.Cursor stopCursor;
+
+	private long mainLength;
+	private long stopLength;
+
+	/*
+	 * 写日志失败后不再写入，游标仍在内存中推进
+	 */
+	private boolean disabled;
+
+	/**
+	 * @param dir 日志目录，为null时不记录日志
+	 */
+	DbChangeLog(Path dir, String source) {
+		this.dir = dir;
+		this.source = source;
+		this.mainCursor = new DatabaseMonitor.Cursor();
+		this.stopCursor = new DatabaseMonitor.Cursor();
+		this.disabled = dir == null;
+	}
+
+	DatabaseMonitor.Cursor mainCursor() {
+		return mainCursor;
+	}
+
+	DatabaseMonitor.Cursor stopCursor() {
+		return stopCursor;
+	}
+
+	/**
+	 * 读取检查点，把检查点之内的日志应用到词典（应用后需要编译），恢复游标
+	 * 日志不可用时从头查询数据库
+	 */
+	synchronized void replay(Dictionary dict) {
+		if (disabled) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			Properties checkpoint = readCheckpoint();
+			if (checkpoint == null) {
+				return;
+			}
+			if (!source.equals(checkpoint.getProperty(KEY_SOURCE))) {
+				logger.info("[DB Log] database or queries changed, discarding {}", dir);
+				reset();
+				return;
+			}
+			long mainLimit = Long.parseLong(checkpoint.getProperty(KEY_MAIN + SUFFIX_LENGTH, "0"));
+			long stopLimit = Long.parseLong(checkpoint.getProperty(KEY_STOP + SUFFIX_LENGTH, "0"));
+			Map<String, Boolean> main = new LinkedHashMap<String, Boolean>();
+			Map<String, Boolean> stop = new LinkedHashMap<String, Boolean>();
+			long mainLines = read(dir.resolve(MAIN_LOG), mainLimit, main);
+			long stopLines = read(dir.resolve(STOP_LOG), stopLimit, stop);
+			dict.updateMainWords(main);
+			dict.updateStopWords(stop);
+			mainCursor.moveTo(Timestamp.valueOf(checkpoint.getProperty(KEY_MAIN + SUFFIX_TIME)),
+					Long.parseLong(checkpoint.getProperty(KEY_MAIN + SUFFIX_ID)));
+			stopCursor.moveTo(Timestamp.valueOf(checkpoint.getProperty(KEY_STOP + SUFFIX_TIME)),
+					Long.parseLong(checkpoint.getProperty(KEY_STOP + SUFFIX_ID)));
+			mainLength = truncate(dir.resolve(MAIN_LOG), mainLimit);
+			stopLength = truncate(dir.resolve(STOP_LOG), stopLimit);
+			if (mainLines > (long) main.size() * COMPACT_RATIO || stopLines > (long) stop.size() * COMPACT_RATIO) {
+				mainLength = rewrite(dir.resolve(MAIN_LOG), main);
+				stopLength = rewrite(dir.resolve(STOP_LOG), stop);
+				writeCheckpoint();
+				logger.info("[DB Log] compacted {} + {} lines into {} + {}", mainLines, stopLines, main.size(), stop.size());
+			}
+			logger.info("[DB Log] replayed {} main words, {} stopwords up to main {}, stopword {}, {} ms", main.size(),
+					stop.size(), mainCursor, stopCursor, System.currentTimeMillis() - start);
+		} catch (IOException | RuntimeException e) {
+			logger.error("[DB Log] failed to replay " + dir + ", querying database from the start", e);
+			mainCursor.moveTo(DatabaseMonitor.Cursor.START, Long.MIN_VALUE);
+			stopCursor.moveTo(DatabaseMonitor.Cursor.START, Long.MIN_VALUE);
+			try {
+				reset();
+			} catch (IOException | RuntimeException ex) {
+				disable(ex);
+			}
+		}
+	}
+
+	/**
+	 * 追加一页已应用的修改，落盘后把检查点移到游标的当前位置
+	 * @param changes 词到修改的映射，true 为新增；可以为空，此时只移动检查点
+	 */
+	synchronized void append(boolean stopwords, Map<String, Boolean> changes) {
+		if (disabled) {
+			return;
+		}
+		try {
+			Files.createDirectories(dir);
+			Path file = dir.resolve(stopwords ? STOP_LOG : MAIN_LOG);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+				out.write(change.getValue() ? '+' : '-');
+				out.write(change.getKey().getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+			}
+			long length = stopwords ? stopLength : mainLength;
+			if (out.size() > 0) {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+					channel.position(length);
+					ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					channel.force(false);
+				}
+				if (stopwords) {
+					stopLength = length + out.size();
+				} else {
+					mainLength = length + out.size();
+				}
+			}
+			writeCheckpoint();
+		} catch (IOException | RuntimeException e) {
+			disable(e);
+		}
+	}
+
+	private void disable(Exception e) {
+		disabled = true;
+		logger.error("[DB Log] failed to write " + dir + ", database changes will be queried again after restart", e);
+	}
+
+	/**
+	 * 读取日志的前 limit 个字节，同一个词以最后一行为准
+	 * @return 行数
+	 */
+	private static long read(Path file, long limit, Map<String, Boolean> words) throws IOException {
+		if (limit <= 0) {
+			return 0;
+		}
+		long lines = 0;
+		try (InputStream in = new LimitedInputStream(Files.newInputStream(file), limit);
+				BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (line.length() < 2) {
+					continue;
+				}
+				String word = line.substring(1);
+				words.remove(word);
+				words.put(word, line.charAt(0) == '+');
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * 丢弃检查点之后未完成的内容
+	 */
+	private static long truncate(Path file, long limit) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (channel.size() > limit) {
+				channel.truncate(limit);
+			}
+			return Math.min(limit, channel.size());
+		}
+	}
+
+	/**
+	 * 以每个词的最终状态重写日志
+	 */
+	private static long rewrite(Path file, Map<String, Boolean> words) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 64 * 1024);
+			for (Map.Entry<String, Boolean> word : words.entrySet()) {
+				writer.write(word.getValue() ? '+' : '-');
+				writer.write(word.getKey());
+				writer.write('\n');
+			}
+			writer.flush();
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return Files.size(file);
+	}
+
+	/**
+	 * 日志作废：清空两个日志并写入新的检查点
+	 */
+	private void reset() throws IOException {
+		Files.createDirectories(dir);
+		Files.deleteIfExists(dir.resolve(MAIN_LOG));
+		Files.deleteIfExists(dir.resolve(STOP_LOG));
+		mainLength = 0;
+		stopLength = 0;
+		writeCheckpoint();
+	}
+
+	private Properties readCheckpoint() throws IOException {
+		Properties checkpoint = new Properties();
+		try (InputStream in = Files.newInputStream(dir.resolve(CHECKPOINT))) {
+			checkpoint.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		return checkpoint;
+	}
+
+	private void writeCheckpoint() throws IOException {
+		Properties checkpoint = new Properties();
+		checkpoint.setProperty(KEY_SOURCE, source);
+		put(checkpoint, KEY_MAIN, mainCursor, mainLength);
+		put(checkpoint, KEY_STOP, stopCursor, stopLength);
+		Path file = dir.resolve(CHECKPOINT);
+		Path tmp = file.resolveSibling(CHECKPOINT + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			OutputStream out = Channels.newOutputStream(channel);
+			checkpoint.store(out, null);
+			out.flush();
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void put(Properties checkpoint, String key, DatabaseMonitor.Cursor cursor, long length) {
+		checkpoint.setProperty(key + SUFFIX_TIME, cursor.getUpdateTime().toString());
+		checkpoint.setProperty(key + SUFFIX_ID, String.valueOf(cursor.getId()));
+		checkpoint.setProperty(key + SUFFIX_LENGTH, String.valueOf(length));
+	}
+
+	/**
+	 * 只读取前 limit 个字节
+	 */
+	private static final class LimitedInputStream extends java.io.FilterInputStream {
+
+		private long remaining;
+
+		LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = super.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int n = super.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 编译词典文件工具
+ * 把文本词典（如 main.dic）预先编译为双数组，保存为同名的 .ikd 文件（如 main.dic.ikd）。
+ * 节点启动时直接将 .ikd 文件映射到内存，不再逐行解析文本词典；
+ * 同一台机器上的多个节点共享操作系统页缓存中的同一份数据。
+ *
+ * 文件格式（小端字节序）：
+ * <pre>
+ * int   MAGIC
+ * int   VERSION
+ * long  源文件长度
+ * long  源文件CRC32，源文件变化后编译文件即失效
+ * int   词条数目
+ * int   状态数
+ * int[] base
+ * int[] check
+ * long[] 成词标记位图
+ * </pre>
+ *
+ * 用法: java -cp elasticsearch-analysis-ik.jar org.wltea.analyzer.dic.DictCompiler main.dic [main.dic.ikd]
+ */
+public final class DictCompiler {
+
+	//编译词典文件扩展名
+	public static final String EXTENSION = ".ikd";
+
+	private static final int MAGIC = 0x494B4431;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	private DictCompiler() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: DictCompiler <source.dic> [target.ikd]");
+			System.exit(1);
+		}
+		Path source = Paths.get(args[0]);
+		Path target = args.length > 1 ? Paths.get(args[1]) : compiledPath(source);
+		long start = System.currentTimeMillis();
+		DoubleArrayTrie trie = compile(source, target);
+		System.out.printf("compiled %s -> %s: %d words, %d states, %d bytes, %d ms%n", source, target,
+				trie.size(), trie.capacity(), Files.size(target), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 文本词典对应的编译词典文件路径
+	 */
+	static Path compiledPath(Path source) {
+		return source.resolveSibling(source.getFileName() + EXTENSION);
+	}
+
+	/**
+	 * 编译文本词典并写入目标文件
+	 * @return 编译生成的双数组
+	 */
+	static DoubleArrayTrie compile(Path source, Path target) throws IOException {
+		List<char[]> words = new ArrayList<char[]>();
+		readWords(source, words::add);
+		DoubleArrayTrie trie = DoubleArrayTrie.build(words.toArray(new char[words.size()][]));
+
+		long size = HEADER_SIZE + trie.byteSize();
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(Files.size(source));
+		buffer.putLong(checksum(source));
+		buffer.putInt(trie.size());
+		buffer.putInt(trie.capacity());
+		trie.writeTo(buffer);
+		buffer.flip();
+
+		//先写临时文件再改名，避免正在启动的节点读到不完整的文件
+		Path parent = target.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return trie;
+	}
+
+	/**
+	 * 映射文本词典对应的编译词典文件
+	 * @param source 文本词典
+	 * @return 映射的双数组；编译文件不存在、格式不符或源文件已经变化时返回null
+	 */
+	static DoubleArrayTrie load(Path source) throws IOException {
+		return load(source, compiledPath(source));
+	}
+
+	static DoubleArrayTrie load(Path source, Path compiled) throws IOException {
+		if (!Files.isRegularFile(compiled) || !Files.isRegularFile(source)) {
+			return null;
+		}
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			return null;
+		}
+		if (buffer.getLong() != Files.size(source) || buffer.getLong() != checksum(source)) {
+			return null;
+		}
+		int size = buffer.getInt();
+		int states = buffer.getInt();
+		if (buffer.capacity() != HEADER_SIZE + 8L * states + 8L * ((states >>> 6) + 1)) {
+			return null;
+		}
+		return DoubleArrayTrie.readFrom(buffer, size, states);
+	}
+
+	/**
+	 * 逐行读取文本词典，去掉BOM、首尾空白和空行
+	 */
+	static void readWords(Path file, Consumer<char[]> consumer) throws IOException {
+		try (InputStream is = Files.newInputStream(file)) {
+			readWords(is, consumer);
+		}
+	}
+
+	static void readWords(InputStream is, Consumer<char[]> consumer) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8), 64 * 1024);
+		String word = br.readLine();
+		if (word != null) {
+			if (word.startsWith("\uFEFF"))
+				word = word.substring(1);
+			for (; word != null; word = br.readLine()) {
+				word = word.trim();
+				if (word.isEmpty()) continue;
+				consumer.accept(word.toCharArray());
+			}
+		}
+	}
+
+	private static long checksum(Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[64 * 1024];
+		try (InputStream is = Files.newInputStream(file)) {
+			for (int n; (n = is.read(buf)) > 0; ) {
+				crc.update(buf, 0, n);
+			}
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.Arrays;
+
+/**
+ * 词典扫描器
+ * 基础词典、扩展词条与屏蔽词条各用一个逐字扫描器（双数组为AC自动机），逐字推进时各读入一次，
+ * 随后用 {@link #nextWord()} 依次取出以当前字符结尾的全部词条（被屏蔽的词条除外）
+ * 类别词典（量词、停止词）同步推进，取出的词条带有所属类别的标记，只属于类别词典的词条排在主词典词条之后
+ * 扫描器非线程安全，绑定创建它的词典快照
+ */
+public final class DictScanner {
+
+	private final WordScanner base;
+	private final WordScanner ext;
+	private final WordScanner disabled;
+	//类别词典扫描器，可以为空
+	private final TagTrie.Scanner tags;
+
+	//是否还有未结束的主词典前缀
+	private boolean open;
+
+	//尚未与基础词条比较的屏蔽词长度，0 表示没有
+	private int disabledLength;
+	private int end;
+
+	//以当前字符结尾的类别词条，长度为0表示已经随主词典词条取出
+	private int[] tagLengths = new int[4];
+	private int[] tagFlags = new int[4];
+	private int tagCount;
+	//下一个待取出的类别词条
+	private int tagNext;
+
+	//最近取出的词条
+	private int wordBegin;
+	private int wordLength;
+	private int wordFlags;
+
+	DictScanner(LayeredTrie trie) {
+		this(trie, null);
+	}
+
+	DictScanner(LayeredTrie trie, TagTrie tagTrie) {
+		this.base = trie.base().newScanner();
+		this.ext = trie.ext() != null ? trie.ext().newScanner() : null;
+		this.disabled = trie.disabled() != null ? trie.disabled().newScanner() : null;
+		this.tags = tagTrie != null ? tagTrie.newScanner() : null;
+	}
+
+	/**
+	 * 读入 charArray[cursor]，推进各层扫描器
+	 * @param charArray
+	 * @param cursor
+	 */
+	public void next(char[] charArray, int cursor) {
+		char c = charArray[cursor];
+		base.next(c);
+		open = base.isOpen();
+		if (ext != null) {
+			ext.next(c);
+			open |= ext.isOpen();
+		}
+		if (disabled != null) {
+			//屏蔽词条只用于过滤基础词典的输出，不影响前缀状态
+			disabled.next(c);
+			disabledLength = disabled.nextWord();
+		}
+		if (tags != null) {
+			tags.next(c);
+			tagCount = 0;
+			tagNext = 0;
+			for (int length; (length = tags.nextWord()) > 0; ) {
+				if (tagCount == tagLengths.length) {
+					tagLengths = Arrays.copyOf(tagLengths, tagCount << 1);
+					tagFlags = Arrays.copyOf(tagFlags, tagCount << 1);
+				}
+				tagLengths[tagCount] = length;
+				tagFlags[tagCount] = tags.wordFlags();
+				tagCount++;
+			}
+		}
+		this.end = cursor;
+	}
+
+	/**
+	 * 取出下一个以当前字符结尾的词条，先取主词典词条，再取只属于类别词典的词条，各自由长到短
+	 * @return 没有更多词条时返回false
+	 */
+	public boolean nextWord() {
+		for (int length; (length = base.nextWord()) > 0; ) {
+			if (!isDisabled(length)) {
+				return setWord(length, DictSnapshot.MAIN | takeTagFlags(length));
+			}
+		}
+		if (ext != null) {
+			int length = ext.nextWord();
+			if (length > 0) {
+				return setWord(length, DictSnapshot.MAIN | takeTagFlags(length));
+			}
+		}
+		for (; tagNext < tagCount; tagNext++) {
+			if (tagLengths[tagNext] > 0) {
+				int length = tagLengths[tagNext];
+				int flags = tagFlags[tagNext++];
+				return setWord(length, flags);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 取出同一长度的类别词条的标记，与主词典词条合并输出
+	 */
+	private int takeTagFlags(int length) {
+		for (int i = tagNext; i < tagCount; i++) {
+			if (tagLengths[i] == length) {
+				tagLengths[i] = 0;
+				return tagFlags[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 以当前字符结尾、长度为 length 的词是否被屏蔽
+	 * 基础词条与屏蔽词条都按由长到短取出，两者同步向后推进即可
+	 */
+	private boolean isDisabled(int length) {
+		while (disabledLength > length) {
+			disabledLength = disabled.nextWord();
+		}
+		if (disabledLength == length) {
+			disabledLength = disabled.nextWord();
+			return true;
+		}
+		return false;
+	}
+
+	private boolean setWord(int length, int flags) {
+		this.wordBegin = end - length + 1;
+		this.wordLength = length;
+		this.wordFlags = flags;
+		return true;
+	}
+
+	/**
+	 * 最近取出的词条在缓冲区中的起始位置
+	 */
+	public int getWordBegin() {
+		return wordBegin;
+	}
+
+	/**
+	 * 最近取出的词条长度
+	 */
+	public int getWordLength() {
+		return wordLength;
+	}
+
+	/**
+	 * 最近取出的词条所属的类别，见 {@link DictSnapshot#MAIN} 等
+	 */
+	public int getWordFlags() {
+		return wordFlags;
+	}
+
+	/**
+	 * 是否还有未结束的主词典前缀，为true时后续字符可能组成更长的词，缓冲区需要保持锁定
+	 */
+	public boolean isPrefix() {
+		return open;
+	}
+
+	/**
+	 * 从 begin 到当前字符的字符串是否还能延伸为带 flag 类别标记的词
+	 * @param begin 缓冲区中的起始位置，不早于上次重置扫描器的位置
+	 * @param flag 类别标记，如 {@link DictSnapshot#QUANTIFIER}
+	 */
+	public boolean isPrefix(int begin, int flag) {
+		return tags != null && tags.isPrefix(end - begin + 1, flag);
+	}
+
+	/**
+	 * 丢弃未结束的前缀，下一个字符从根开始匹配
+	 */
+	public void reset() {
+		open = false;
+		disabledLength = 0;
+		base.reset();
+		if (ext != null) {
+			ext.reset();
+		}
+		if (disabled != null) {
+			disabled.reset();
+		}
+		if (tags != null) {
+			tags.reset();
+			tagCount = 0;
+			tagNext = 0;
+		}
+	}
+}
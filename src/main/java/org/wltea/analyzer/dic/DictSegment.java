@@ -26,43 +26,123 @@
 package org.wltea.analyzer.dic;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * 词典树分段，表示词典树的一个分枝
+ * 根节点同时作为一种词典引擎（dict_segment）
  */
-class DictSegment implements Comparable<DictSegment>{
+class DictSegment implements Comparable<DictSegment> , DictionaryEngine{
 	
-	//公用字典表，存储汉字
-	private static final Map<Character , Character> charMap = new ConcurrentHashMap<Character , Character>(16 , 0.95f);
 	//数组大小上限
 	private static final int ARRAY_LENGTH_LIMIT = 3;
+	//根节点按字符直接索引的子节点数组大小，覆盖全部 char
+	private static final int ROOT_TABLE_SIZE = 1 << 16;
 
 	
-	//Map存储结构
-	private Map<Character , DictSegment> childrenMap;
-	//数组方式存储结构
+	//散列表存储结构
+	private volatile ChildTable childrenTable;
+	//数组方式存储结构；根节点为按字符直接索引的数组，长度为 ROOT_TABLE_SIZE
 	private DictSegment[] childrenArray;
 	
 	
 	//当前节点上存储的字符
-	private Character nodeChar;
+	private final char nodeChar;
 	//当前节点存储的Segment数目
-	//storeSize <=ARRAY_LENGTH_LIMIT ，使用数组存储， storeSize >ARRAY_LENGTH_LIMIT ,则使用Map存储
+	//storeSize <=ARRAY_LENGTH_LIMIT ，使用数组存储， storeSize >ARRAY_LENGTH_LIMIT ,则使用散列表存储
 	private int storeSize = 0;
 	//当前DictSegment状态 ,默认 0 , 1表示从根节点到当前节点的路径表示一个词
 	private int nodeState = 0;	
+	//当前分枝下的词条数目，-1 表示需要重新统计
+	private volatile int cachedSize = -1;
 	
 	
-	DictSegment(Character nodeChar){
-		if(nodeChar == null){
-			throw new IllegalArgumentException("node char cannot be empty");
-		}
+	private DictSegment(char nodeChar){
 		this.nodeChar = nodeChar;
 	}
 
-	Character getNodeChar() {
+	/**
+	 * 创建词典树的根节点
+	 * 根节点的子节点最多、查找最频繁，按字符直接索引，不做比较和散列
+	 * @return 根节点
+	 */
+	static DictSegment root(){
+		DictSegment root = new DictSegment((char) 0);
+		root.childrenArray = new DictSegment[ROOT_TABLE_SIZE];
+		return root;
+	}
+
+	/**
+	 * 由词条批量构建词典树
+	 * 词条排序去重后自底向上逐层构建，每个节点一次分配好子节点容器，耗时与字符总数成正比
+	 * @param words
+	 * @return 根节点
+	 */
+	static DictSegment build(char[][] words){
+		char[][] keys = DoubleArrayTrie.sortUnique(words);
+		DictSegment root = root();
+		root.fillChildren(keys , 0 , keys.length , 0);
+		return root;
+	}
+
+	/**
+	 * 由有序词条构建本节点的子节点
+	 * [lo, hi) 内的词条以本节点为公共前缀，前缀长为 depth；等于前缀的词条排在最前
+	 */
+	private void fillChildren(char[][] keys , int lo , int hi , int depth){
+		if(lo < hi && keys[lo].length == depth){
+			this.nodeState = 1;
+			lo++;
+		}
+		//统计子节点数目，选定存储结构
+		int count = 0;
+		for(int i = lo ; i < hi ; i = nextBranch(keys , i , hi , depth)){
+			count++;
+		}
+		if(count == 0){
+			return;
+		}
+		ChildTable segmentTable = null;
+		DictSegment[] segmentArray = this.childrenArray;
+		if(segmentArray == null){
+			if(count <= ARRAY_LENGTH_LIMIT){
+				segmentArray = new DictSegment[ARRAY_LENGTH_LIMIT];
+			}else{
+				segmentTable = new ChildTable(count);
+			}
+		}
+		int n = 0;
+		for(int i = lo , j ; i < hi ; i = j){
+			j = nextBranch(keys , i , hi , depth);
+			DictSegment ds = new DictSegment(keys[i][depth]);
+			ds.fillChildren(keys , i , j , depth + 1);
+			if(segmentTable != null){
+				segmentTable.put(ds);
+			}else if(segmentArray.length == ROOT_TABLE_SIZE){
+				segmentArray[ds.nodeChar] = ds;
+			}else{
+				segmentArray[n] = ds;
+			}
+			n++;
+		}
+		this.childrenArray = segmentArray;
+		this.childrenTable = segmentTable;
+		this.storeSize = count;
+	}
+
+	/**
+	 * 第 depth 个字符与 keys[i] 相同的词条之后的第一个位置
+	 */
+	private static int nextBranch(char[][] keys , int i , int hi , int depth){
+		char c = keys[i][depth];
+		int j = i + 1;
+		while(j < hi && keys[j][depth] == c){
+			j++;
+		}
+		return j;
+	}
+
+	char getNodeChar() {
 		return nodeChar;
 	}
 	
@@ -89,20 +169,22 @@ class DictSegment implements Comparable<DictSegment>{
 	 * @param length
 	 * @return Hit 
 	 */
-	Hit match(char[] charArray , int begin , int length){
+	@Override
+	public Hit match(char[] charArray , int begin , int length){
 		return this.match(charArray , begin , length , null);
 	}
 	
 	/**
-	 * 匹配词段
+	 * 匹配词段，searchHit不为空时从其记录的分枝继续向下匹配
 	 * @param charArray
 	 * @param begin
 	 * @param length
 	 * @param searchHit
 	 * @return Hit 
 	 */
-	Hit match(char[] charArray , int begin , int length , Hit searchHit){
-		
+	@Override
+	public Hit match(char[] charArray , int begin , int length , Hit searchHit){
+		DictSegment from = this;
 		if(searchHit == null){
 			//如果hit为空，新建
 			searchHit= new Hit();
@@ -111,36 +193,25 @@ class DictSegment implements Comparable<DictSegment>{
 		}else{
 			//否则要将HIT状态重置
 			searchHit.setUnmatch();
+			if(searchHit.getMatchedDictSegment() != null){
+				from = searchHit.getMatchedDictSegment();
+			}
 		}
+		return from.matchSegment(charArray , begin , length , searchHit);
+	}
+
+	private Hit matchSegment(char[] charArray , int begin , int length , Hit searchHit){
 		//设置hit的当前处理位置
 		searchHit.setEnd(begin);
 
-        Character keyChar = Character.valueOf(charArray[begin]);
-		DictSegment ds = null;
-		
-		//引用实例变量为本地变量，避免查询时遇到更新的同步问题
-		DictSegment[] segmentArray = this.childrenArray;
-		Map<Character , DictSegment> segmentMap = this.childrenMap;		
-		
 		//STEP1 在节点中查找keyChar对应的DictSegment
-		if(segmentArray != null){
-			//在数组中查找
-			DictSegment keySegment = new DictSegment(keyChar);
-			int position = Arrays.binarySearch(segmentArray, 0 , this.storeSize , keySegment);
-			if(position >= 0){
-				ds = segmentArray[position];
-			}
-
-		}else if(segmentMap != null){
-			//在map中查找
-			ds = (DictSegment)segmentMap.get(keyChar);
-		}
+		DictSegment ds = this.lookupSegment(charArray[begin]);
 		
 		//STEP2 找到DictSegment，判断词的匹配状态，是否继续递归，还是返回结果
 		if(ds != null){			
 			if(length > 1){
 				//词未匹配完，继续往下搜索
-				return ds.match(charArray, begin + 1 , length - 1 , searchHit);
+				return ds.matchSegment(charArray, begin + 1 , length - 1 , searchHit);
 			}else if (length == 1){
 				
 				//搜索最后一个char
@@ -162,19 +233,160 @@ class DictSegment implements Comparable<DictSegment>{
 		return searchHit;		
 	}
 
+	/**
+	 * 在本节点的子节点中查找字符对应的DictSegment，没有则返回null
+	 */
+	private DictSegment lookupSegment(char c){
+		//引用实例变量为本地变量，避免查询时遇到更新的同步问题
+		DictSegment[] segmentArray = this.childrenArray;
+		if(segmentArray != null){
+			if(segmentArray.length == ROOT_TABLE_SIZE){
+				//根节点直接索引
+				return segmentArray[c];
+			}
+			//在数组中查找
+			for(int i = 0 , size = Math.min(this.storeSize , segmentArray.length) ; i < size ; i++){
+				DictSegment ds = segmentArray[i];
+				if(ds != null && ds.nodeChar == c){
+					return ds;
+				}
+			}
+			return null;
+		}
+		ChildTable segmentTable = this.childrenTable;
+		if(segmentTable != null){
+			//在散列表中查找
+			return segmentTable.get(c);
+		}
+		return null;
+	}
+
+	@Override
+	public boolean contains(char[] charArray , int begin , int length){
+		return (this.walk(charArray , begin , length) & WORD) != 0;
+	}
+
+	@Override
+	public int walk(char[] charArray , int begin , int length){
+		DictSegment ds = this;
+		for(int i = begin , end = begin + length ; i < end ; i++){
+			ds = ds.lookupSegment(charArray[i]);
+			if(ds == null){
+				return 0;
+			}
+		}
+		return (ds != this && ds.nodeState == 1 ? WORD : 0) | (ds.hasNextNode() ? PREFIX : 0);
+	}
+
+	@Override
+	public WordScanner newScanner(){
+		return new Scanner(this);
+	}
+
+	@Override
+	public void prepare(){
+	}
+
+	/**
+	 * 当前分枝下的词条数目
+	 * 统计结果缓存在调用的节点上，经由该节点修改词典后重新统计
+	 */
+	@Override
+	public int size(){
+		int size = this.cachedSize;
+		if(size < 0){
+			size = this.countWords();
+			this.cachedSize = size;
+		}
+		return size;
+	}
+
+	private int countWords(){
+		int size = 0;
+		for(DictSegment ds : this.children()){
+			size += ds.nodeState + ds.countWords();
+		}
+		return size;
+	}
+
+	/**
+	 * 估算当前分枝占用的堆内存字节数
+	 */
+	@Override
+	public long ramBytesUsed(){
+		//对象头与字段
+		long bytes = 40;
+		if(this.childrenArray != null){
+			bytes += 16 + 4 * this.childrenArray.length;
+		}else if(this.childrenTable != null){
+			bytes += this.childrenTable.ramBytesUsed();
+		}
+		for(DictSegment ds : this.children()){
+			bytes += ds.ramBytesUsed();
+		}
+		return bytes;
+	}
+
+	/**
+	 * 统计当前分枝下的节点
+	 * 有效节点是词或者通向词的前缀；无效节点既不成词，也没有成词的后代，只占用内存并制造无效前缀
+	 * @param counts counts[0] 累加有效节点数，counts[1] 累加无效节点数
+	 * @return 当前分枝下是否有词
+	 */
+	boolean countNodes(int[] counts){
+		boolean live = false;
+		for(DictSegment ds : this.children()){
+			boolean childLive = ds.countNodes(counts) | ds.nodeState == 1;
+			counts[childLive ? 0 : 1]++;
+			live |= childLive;
+		}
+		return live;
+	}
+
+	private DictSegment[] children(){
+		synchronized(this){
+			DictSegment[] children;
+			if(this.childrenArray != null && this.childrenArray.length == ROOT_TABLE_SIZE){
+				children = compact(this.childrenArray , this.storeSize);
+			}else if(this.childrenArray != null){
+				children = Arrays.copyOf(this.childrenArray , this.storeSize);
+			}else if(this.childrenTable != null){
+				children = compact(this.childrenTable.values , this.storeSize);
+			}else{
+				return new DictSegment[0];
+			}
+			Arrays.sort(children);
+			return children;
+		}
+	}
+
+	private static DictSegment[] compact(DictSegment[] segments , int size){
+		DictSegment[] children = new DictSegment[size];
+		int n = 0;
+		for(DictSegment ds : segments){
+			if(ds != null){
+				children[n++] = ds;
+			}
+		}
+		return children;
+	}
+
 	/**
 	 * 加载填充词典片段
 	 * @param charArray
 	 */
 	void fillSegment(char[] charArray){
+		this.cachedSize = -1;
 		this.fillSegment(charArray, 0 , charArray.length , 1); 
 	}
 	
 	/**
 	 * 屏蔽词典中的一个词
+	 * 屏蔽后既不成词、也没有成词后代的分枝随即从词典树上摘除，不留下无效前缀
 	 * @param charArray
 	 */
 	void disableSegment(char[] charArray){
+		this.cachedSize = -1;
 		this.fillSegment(charArray, 0 , charArray.length , 0); 
 	}
 	
@@ -186,14 +398,7 @@ class DictSegment implements Comparable<DictSegment>{
 	 * @param enabled
 	 */
 	private synchronized void fillSegment(char[] charArray , int begin , int length , int enabled){
-		//获取字典表中的汉字对象
-		Character beginChar = Character.valueOf(charArray[begin]);
-		Character keyChar = charMap.get(beginChar);
-		//字典中没有该字，则将其添加入字典
-		if(keyChar == null){
-			charMap.put(beginChar, beginChar);
-			keyChar = beginChar;
-		}
+		char keyChar = charArray[begin];
 		
 		//搜索当前节点的存储，查询对应keyChar的keyChar，如果没有则创建
 		DictSegment ds = lookforSegment(keyChar , enabled);
@@ -207,6 +412,10 @@ class DictSegment implements Comparable<DictSegment>{
 				//enabled=1表明一个完整的词，enabled=0表示从词典中屏蔽当前词
 				ds.nodeState = enabled;
 			}
+			if(enabled == 0 && ds.nodeState == 0 && ds.storeSize == 0){
+				//分枝下已经没有词，摘除该分枝
+				this.removeSegment(ds);
+			}
 		}
 
 	}
@@ -217,64 +426,83 @@ class DictSegment implements Comparable<DictSegment>{
 	 * @param create  =1如果没有找到，则创建新的segment ; =0如果没有找到，不创建，返回null
 	 * @return
 	 */
-	private DictSegment lookforSegment(Character keyChar ,  int create){
+	private DictSegment lookforSegment(char keyChar ,  int create){
 		
-		DictSegment ds = null;
-
-		if(this.storeSize <= ARRAY_LENGTH_LIMIT){
-			//获取数组容器，如果数组未创建则创建数组
-			DictSegment[] segmentArray = getChildrenArray();			
-			//搜寻数组
-			DictSegment keySegment = new DictSegment(keyChar);
-			int position = Arrays.binarySearch(segmentArray, 0 , this.storeSize, keySegment);
-			if(position >= 0){
-				ds = segmentArray[position];
-			}
+		DictSegment ds = this.lookupSegment(keyChar);
+		if(ds != null || create != 1){
+			return ds;
+		}
 		
-			//遍历数组后没有找到对应的segment
-			if(ds == null && create == 1){
-				ds = keySegment;
-				if(this.storeSize < ARRAY_LENGTH_LIMIT){
-					//数组容量未满，使用数组存储
-					segmentArray[this.storeSize] = ds;
-					//segment数目+1
-					this.storeSize++;
-					Arrays.sort(segmentArray , 0 , this.storeSize);
-					
-				}else{
-					//数组容量已满，切换Map存储
-					//获取Map容器，如果Map未创建,则创建Map
-					Map<Character , DictSegment> segmentMap = getChildrenMap();
-					//将数组中的segment迁移到Map中
-					migrate(segmentArray ,  segmentMap);
-					//存储新的segment
-					segmentMap.put(keyChar, ds);
-					//segment数目+1 ，  必须在释放数组前执行storeSize++ ， 确保极端情况下，不会取到空的数组
-					this.storeSize++;
-					//释放当前的数组引用
-					this.childrenArray = null;
-				}
-
-			}			
-			
+		ds = new DictSegment(keyChar);
+		DictSegment[] segmentArray = this.childrenArray;
+		if(segmentArray != null && segmentArray.length == ROOT_TABLE_SIZE){
+			//根节点直接索引
+			segmentArray[keyChar] = ds;
+		}else if(this.storeSize < ARRAY_LENGTH_LIMIT){
+			//数组容量未满，使用数组存储
+			getChildrenArray()[this.storeSize] = ds;
 		}else{
-			//获取Map容器，如果Map未创建,则创建Map
-			Map<Character , DictSegment> segmentMap = getChildrenMap();
-			//搜索Map
-			ds = (DictSegment)segmentMap.get(keyChar);
-			if(ds == null && create == 1){
-				//构造新的segment
-				ds = new DictSegment(keyChar);
-				segmentMap.put(keyChar , ds);
-				//当前节点存储segment数目+1
-				this.storeSize ++;
+			//数组容量已满，切换散列表存储，散列表过满时扩容后整体替换
+			ChildTable segmentTable = this.childrenTable;
+			if(segmentTable == null){
+				segmentTable = new ChildTable(ARRAY_LENGTH_LIMIT + 1);
+				//将数组中的segment迁移到散列表中
+				for(DictSegment segment : segmentArray){
+					segmentTable.put(segment);
+				}
+			}else if(segmentTable.isFull(this.storeSize + 1)){
+				segmentTable = segmentTable.resize(this.storeSize + 1);
 			}
+			segmentTable.put(ds);
+			this.childrenTable = segmentTable;
+			//释放当前的数组引用
+			this.childrenArray = null;
 		}
-
+		//segment数目+1
+		this.storeSize++;
 		return ds;
 	}
 	
 	
+	/**
+	 * 移除本节点下的一个子节点
+	 * 查询不加锁，数组与散列表都先构建不含该节点的副本再整体替换，避免查询时漏掉其他子节点
+	 */
+	private void removeSegment(DictSegment ds){
+		DictSegment[] segmentArray = this.childrenArray;
+		if(segmentArray != null && segmentArray.length == ROOT_TABLE_SIZE){
+			//根节点直接索引
+			segmentArray[ds.nodeChar] = null;
+		}else if(segmentArray != null){
+			this.childrenArray = without(segmentArray , ds);
+		}else{
+			ChildTable segmentTable = this.childrenTable;
+			if(this.storeSize - 1 <= ARRAY_LENGTH_LIMIT){
+				//子节点减少到数组容量以内，切回数组存储
+				this.childrenArray = without(segmentTable.values , ds);
+				this.childrenTable = null;
+			}else{
+				this.childrenTable = segmentTable.without(ds , this.storeSize - 1);
+			}
+		}
+		//segment数目-1
+		this.storeSize--;
+	}
+
+	/**
+	 * 复制segment到新的数组中，去掉被移除的segment，没有剩余时返回null
+	 */
+	private static DictSegment[] without(DictSegment[] segments , DictSegment removed){
+		DictSegment[] segmentArray = new DictSegment[ARRAY_LENGTH_LIMIT];
+		int n = 0;
+		for(DictSegment segment : segments){
+			if(segment != null && segment != removed){
+				segmentArray[n++] = segment;
+			}
+		}
+		return n > 0 ? segmentArray : null;
+	}
+	
 	/**
 	 * 获取数组容器
 	 * 线程同步方法
@@ -287,29 +515,102 @@ class DictSegment implements Comparable<DictSegment>{
 		}
 		return this.childrenArray;
 	}
-	
+
 	/**
-	 * 获取Map容器
-	 * 线程同步方法
-	 */	
-	private Map<Character , DictSegment> getChildrenMap(){
-		synchronized(this){
-			if(this.childrenMap == null){
-				this.childrenMap = new ConcurrentHashMap<Character, DictSegment>(ARRAY_LENGTH_LIMIT * 2,0.8f);
+	 * 以字符为键的开放寻址散列表，线性探测
+	 * 键与值分别存放在基本类型数组和引用数组中，查找时不装箱，探测时只比较连续存放的字符
+	 * 只在持有节点锁时写入；容量不足时构建新表，再整体替换节点上的引用
+	 */
+	private static final class ChildTable {
+
+		private final char[] keys;
+		//空槽为null
+		private final DictSegment[] values;
+		private final int mask;
+
+		ChildTable(int expectedSize){
+			//装填因子不超过 1/2
+			int capacity = Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+			this.keys = new char[capacity];
+			this.values = new DictSegment[capacity];
+			this.mask = capacity - 1;
+		}
+
+		private static int hash(char c){
+			int h = c * 0x9E3779B1;
+			return h ^ (h >>> 16);
+		}
+
+		DictSegment get(char c){
+			for(int i = hash(c) & mask ; ; i = (i + 1) & mask){
+				DictSegment ds = values[i];
+				if(ds == null){
+					return null;
+				}
+				if(keys[i] == c){
+					return ds;
+				}
 			}
 		}
-		return this.childrenMap;
+
+		void put(DictSegment ds){
+			int i = hash(ds.nodeChar) & mask;
+			while(values[i] != null){
+				i = (i + 1) & mask;
+			}
+			//先写键再写值，值非空的槽位键已就绪
+			keys[i] = ds.nodeChar;
+			values[i] = ds;
+		}
+
+		boolean isFull(int size){
+			return size * 2 > values.length;
+		}
+
+		ChildTable resize(int size){
+			return this.without(null , size);
+		}
+
+		/**
+		 * 构建去掉一个segment的新表
+		 * @param removed 被移除的segment，为null时只复制
+		 * @param size 新表的segment数目
+		 */
+		ChildTable without(DictSegment removed , int size){
+			ChildTable table = new ChildTable(size);
+			for(DictSegment ds : values){
+				if(ds != null && ds != removed){
+					table.put(ds);
+				}
+			}
+			return table;
+		}
+
+		long ramBytesUsed(){
+			//表对象、char数组与引用数组
+			return 24 + 16 + 2L * keys.length + 16 + 4L * values.length;
+		}
 	}
-	
+
 	/**
-	 * 将数组中的segment迁移到Map中
-	 * @param segmentArray
+	 * 按字典序收集当前分枝下的全部词条
+	 * @param words
 	 */
-	private void migrate(DictSegment[] segmentArray , Map<Character , DictSegment> segmentMap){
-		for(DictSegment segment : segmentArray){
-			if(segment != null){
-				segmentMap.put(segment.nodeChar, segment);
+	@Override
+	public void collectWords(List<char[]> words){
+		this.collectWords(words , new char[16] , 0);
+	}
+
+	private void collectWords(List<char[]> words , char[] prefix , int depth){
+		for(DictSegment ds : this.children()){
+			if(depth == prefix.length){
+				prefix = Arrays.copyOf(prefix , prefix.length * 2);
+			}
+			prefix[depth] = ds.nodeChar;
+			if(ds.nodeState == 1){
+				words.add(Arrays.copyOf(prefix , depth + 1));
 			}
+			ds.collectWords(words , prefix , depth + 1);
 		}
 	}
 
@@ -320,7 +621,90 @@ class DictSegment implements Comparable<DictSegment>{
 	 */
 	public int compareTo(DictSegment o) {
 		//对当前节点存储的char进行比较
-		return this.nodeChar.compareTo(o.nodeChar);
+		return Character.compare(this.nodeChar , o.nodeChar);
 	}
 	
+	/**
+	 * 逐字扫描器，为每个尚未结束的前缀保留所在的分枝
+	 */
+	private static final class Scanner implements WordScanner{
+
+		private final DictSegment root;
+		//尚未结束的前缀所在的分枝，按起始位置排列，即由长到短
+		private DictSegment[] segments = new DictSegment[8];
+		private int[] lengths = new int[8];
+		private DictSegment[] nextSegments = new DictSegment[8];
+		private int[] nextLengths = new int[8];
+		private int count;
+
+		//以当前字符结尾的词长，由长到短
+		private int[] words = new int[8];
+		private int wordCount;
+		private int wordIndex;
+
+		Scanner(DictSegment root){
+			this.root = root;
+		}
+
+		@Override
+		public void next(char c){
+			wordCount = 0;
+			wordIndex = 0;
+			int n = 0;
+			for(int i = 0 ; i < count ; i++){
+				n = step(segments[i] , lengths[i] , c , n);
+			}
+			n = step(root , 0 , c , n);
+			DictSegment[] s = segments;
+			segments = nextSegments;
+			nextSegments = s;
+			int[] l = lengths;
+			lengths = nextLengths;
+			nextLengths = l;
+			count = n;
+		}
+
+		private int step(DictSegment from , int length , char c , int n){
+			DictSegment ds = from.lookupSegment(c);
+			if(ds == null){
+				return n;
+			}
+			if(ds.nodeState == 1){
+				if(wordCount == words.length){
+					words = Arrays.copyOf(words , wordCount * 2);
+				}
+				words[wordCount++] = length + 1;
+			}
+			if(ds.hasNextNode()){
+				if(n == nextSegments.length){
+					nextSegments = Arrays.copyOf(nextSegments , n * 2);
+					nextLengths = Arrays.copyOf(nextLengths , n * 2);
+					segments = Arrays.copyOf(segments , n * 2);
+					lengths = Arrays.copyOf(lengths , n * 2);
+				}
+				nextSegments[n] = ds;
+				nextLengths[n] = length + 1;
+				return n + 1;
+			}
+			return n;
+		}
+
+		@Override
+		public int nextWord(){
+			return wordIndex < wordCount ? words[wordIndex++] : 0;
+		}
+
+		@Override
+		public boolean isOpen(){
+			return count > 0;
+		}
+
+		@Override
+		public void reset(){
+			count = 0;
+			wordCount = 0;
+			wordIndex = 0;
+		}
+	}
+
 }
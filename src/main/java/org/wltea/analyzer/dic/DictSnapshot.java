@@ -0,0 +1,162 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 词典快照
+ * 某一时刻全部查找用词典的只读视图，创建后不再修改。
+ * 词典更新时在旁边构建新的快照，再由 {@link Dictionary} 原子地替换；
+ * 分词器在一次分词过程中固定使用同一个快照，读取无需加锁，也不会看到更新到一半的词典
+ */
+public final class DictSnapshot {
+
+	//词条类别标记位，一个词可以同时属于多个类别
+	//主词典
+	public static final int MAIN = 1;
+	//量词词典
+	public static final int QUANTIFIER = 2;
+	//停止词词典
+	public static final int STOPWORD = 4;
+
+	//版本号，每发布一个新快照加一
+	private final long generation;
+
+	private final LayeredTrie mainTrie;
+
+	//量词、停止词等附属词典合并而成的类别词典
+	private final TagTrie tagTrie;
+
+	//同一版本以其他引擎编译的快照，引擎名称到快照，与本快照一起发布
+	private final Map<String, DictSnapshot> engineViews;
+
+	DictSnapshot(long generation, LayeredTrie mainTrie, TagTrie tagTrie) {
+		this(generation, mainTrie, tagTrie, Collections.<String, DictSnapshot>emptyMap());
+	}
+
+	DictSnapshot(long generation, LayeredTrie mainTrie, TagTrie tagTrie, Map<String, DictSnapshot> engineViews) {
+		this.generation = generation;
+		this.mainTrie = mainTrie;
+		this.tagTrie = tagTrie;
+		this.engineViews = engineViews;
+	}
+
+	/**
+	 * 快照版本号
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * 检索匹配主词典
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInMainDict(char[] charArray) {
+		return mainTrie.match(charArray, 0, charArray.length);
+	}
+
+	/**
+	 * 检索匹配主词典
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInMainDict(char[] charArray, int begin, int length) {
+		return mainTrie.match(charArray, begin, length);
+	}
+
+	/**
+	 * 创建词典扫描器
+	 * 扫描器逐字推进，一次推进即得到以当前字符结尾的全部词条及其类别标记
+	 * 
+	 * @return DictScanner 非线程安全，每个分词器持有一个
+	 */
+	public DictScanner newMainDictScanner() {
+		return new DictScanner(mainTrie, tagTrie);
+	}
+
+	/**
+	 * 检索匹配量词词典
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInQuantifierDict(char[] charArray, int begin, int length) {
+		return tagTrie.match(charArray, begin, length, QUANTIFIER, null);
+	}
+
+	/**
+	 * 从已匹配的Hit中直接取出双数组状态，继续向下匹配
+	 * 
+	 * @return Hit
+	 */
+	public Hit matchWithHit(char[] charArray, int currentIndex, Hit matchedHit) {
+		TagTrie tags = matchedHit.getMatchedTags();
+		if (tags != null) {
+			return tags.match(charArray, currentIndex, 1, matchedHit.getMatchedFlag(), matchedHit);
+		}
+		LayeredTrie trie = matchedHit.getMatchedTrie();
+		return trie.match(charArray, currentIndex, 1, matchedHit);
+	}
+
+	/**
+	 * 判断是否是停止词
+	 * 
+	 * @return boolean
+	 */
+	public boolean isStopWord(char[] charArray, int begin, int length) {
+		return (tagTrie.flags(charArray, begin, length) & STOPWORD) != 0;
+	}
+
+	/**
+	 * 字符区间作为一个词所属的全部类别
+	 * 
+	 * @return int {@link #MAIN}、{@link #QUANTIFIER}、{@link #STOPWORD} 的组合，不是词时为0
+	 */
+	public int getWordFlags(char[] charArray, int begin, int length) {
+		int flags = tagTrie.flags(charArray, begin, length);
+		if (mainTrie.contains(charArray, begin, length)) {
+			flags |= MAIN;
+		}
+		return flags;
+	}
+
+	LayeredTrie getMainTrie() {
+		return mainTrie;
+	}
+
+	TagTrie getTagTrie() {
+		return tagTrie;
+	}
+
+	/**
+	 * 以指定引擎编译的同一版本的快照，尚未编译时返回null
+	 */
+	DictSnapshot getEngineView(String engine) {
+		return engineViews.get(engine);
+	}
+
+	Map<String, DictSnapshot> getEngineViews() {
+		return engineViews;
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.Closeable;
+
+/**
+ * 运行期词条的来源，由 {@link MaintenanceScheduler} 按各自的间隔轮询，把变化应用到词典
+ * 每次执行读取自上次以来的变化（远程词典为条件请求，数据库为检查点之后的修改），返回是否有变化，失败时抛出异常，调度器按指数退避推迟下一次；
+ * 间隔在最小、最大间隔之间自适应：持续有变化时缩短，长时间没有变化时延长
+ * 来源只在配置了对应项时创建，见 {@link Dictionary} 的 remote_ext_dict、remote_ext_stopwords 与 jdbc.properties 的 jdbc.url；
+ * 本地词典文件在重新加载时按修改时间与大小检查，不需要轮询
+ */
+interface DictSource extends MaintenanceScheduler.Task, Closeable {
+
+	// 未配置最小间隔时为初始间隔的 1/4
+	int DEFAULT_MIN_INTERVAL_DIVISOR = 4;
+	// 未配置最大间隔时为初始间隔的 10 倍
+	int DEFAULT_MAX_INTERVAL_FACTOR = 10;
+
+	/**
+	 * 调度与日志中使用的名称
+	 */
+	String name();
+
+	/**
+	 * 初始的轮询间隔，单位毫秒
+	 */
+	long interval();
+
+	/**
+	 * 持续有变化时间隔缩短的下限，单位毫秒
+	 */
+	long minInterval();
+
+	/**
+	 * 没有变化时间隔延长的上限，单位毫秒
+	 */
+	long maxInterval();
+
+	/**
+	 * 释放连接等资源，节点关闭时调用
+	 */
+	@Override
+	void close();
+}
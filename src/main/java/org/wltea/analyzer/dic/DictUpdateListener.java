@@ -0,0 +1,48 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.Map;
+
+/**
+ * 接收本节点词典的修改（来自远程词典、数据库、重新加载与推送的更新），用于把修改分发到集群中的其他节点
+ * 通知时持有词典的锁，实现只应记录修改，不得阻塞或再调用词典；
+ * 由 {@link Dictionary#applyReplicated(Map, Map, Map, Map)} 应用的修改不通知
+ * @see Dictionary#addUpdateListener(DictUpdateListener)
+ */
+public interface DictUpdateListener {
+
+	/**
+	 * 运行期修改（数据库、推送的更新），优先于各来源的词条
+	 * @param stopwords true 为停用词，false 为主词典
+	 * @param changes 词条到修改的映射：true 为新增，false 为删除
+	 */
+	void onUpdate(boolean stopwords, Map<String, Boolean> changes);
+
+	/**
+	 * 一个来源（词典文件、远程词典）的词条变化，包括仍由其他来源提供、或被运行期修改覆盖而没有生效的词，
+	 * 接收方应用到同一来源上，之后与该来源的新内容比较时不会遗漏
+	 * @param source 来源的文件路径或地址
+	 * @param stopwords true 为停用词，false 为主词典
+	 * @param changes 词条到变化的映射：true 为来源新增，false 为来源删除
+	 */
+	void onSourceUpdate(String source, boolean stopwords, Map<String, Boolean> changes);
+}
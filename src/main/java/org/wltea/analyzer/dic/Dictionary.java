@@ -25,33 +25,33 @@
  */
 package org.wltea.analyzer.dic;
 
-import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.Files;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.common.io.PathUtils;
 import org.elasticsearch.plugin.analysis.ik.AnalysisIkPlugin;
 import org.wltea.analyzer.cfg.Configuration;
@@ -67,14 +67,151 @@ public class Dictionary {
 	/*
 	 * 词典单子实例
 	 */
-	private static Dictionary singleton;
+	private static volatile Dictionary singleton;
 
-	private DictSegment _MainDict;
+	/*
+	 * 以下为词典的可修改部分，只由更新线程在持有本对象锁时修改，查找时不直接使用
+	 */
+
+	/*
+	 * 主词典的只读基础部分：主词典文件、扩展词典文件及远程词典编译生成的双数组或FST，
+	 * 使用双数组且没有扩展词条时直接映射自 main.dic.ikd
+	 */
+	private DictionaryEngine _MainBase;
+
+	/*
+	 * 运行期（数据库等）对主词典的修改，尚未并入基础部分：true 为新增，false 为删除（墓碑）
+	 */
+	private final Map<String, Boolean> _MainDelta = new ConcurrentHashMap<String, Boolean>();
+
+	/*
+	 * 已经并入基础部分的运行期修改，来源变化时不覆盖这些词
+	 * 只保留仍需要的：删除的词仍由某个来源提供（需要屏蔽），或新增的词没有来源提供；见 {@link #isCompactedNeeded(String, boolean)}
+	 */
+	private final Map<String, Boolean> _MainCompacted = new ConcurrentHashMap<String, Boolean>();
+
+	/*
+	 * 各来源（词典文件、远程词典）当前贡献的主词典词条与停止词，键为文件路径或地址
+	 * 来源变化时与之比较，只应用该来源增删的词条
+	 */
+	private final Map<String, SourceWords> _MainSources = new ConcurrentHashMap<String, SourceWords>();
+
+	private final Map<String, SourceWords> _StopSources = new ConcurrentHashMap<String, SourceWords>();
+
+	/*
+	 * 各词典文件加载时的修改时间与大小
+	 */
+	private final Map<String, String> _SourceStamps = new ConcurrentHashMap<String, String>();
+
+	/*
+	 * 来源变化对主词典的修改，尚未并入基础部分：true 为新增，false 为删除（墓碑）
+	 * 与运行期修改分开存放，重新加载词典文件后基础部分已经反映各来源的内容，直接丢弃；同一个词以运行期修改为准
+	 */
+	private final Map<String, Boolean> _MainSourceDelta = new ConcurrentHashMap<String, Boolean>();
 
 	private DictSegment _QuantifierDict;
 
 	private DictSegment _StopWords;
 
+	/*
+	 * 姓氏、后缀、介词词典，启动时不加载，首次查询时才解析
+	 */
+	private final LazyDict _SurnameDict = new LazyDict(PATH_DIC_SURNAME, "Surname");
+
+	private final LazyDict _SuffixDict = new LazyDict(PATH_DIC_SUFFIX, "Suffix");
+
+	private final LazyDict _PrepDict = new LazyDict(PATH_DIC_PREP, "Preposition");
+
+	/*
+	 * 运行期对停用词的修改，重新加载词典文件后需要再次应用
+	 */
+	private final Map<String, Boolean> _StopWordsRuntime = new HashMap<String, Boolean>();
+
+	/*
+	 * 由以上词典编译生成的只读快照，查找时使用，更新时整体替换
+	 */
+	private volatile DictSnapshot snapshot;
+
+	/*
+	 * 词典树有尚未编译进快照的修改
+	 */
+	private boolean mainDictDirty;
+
+	private boolean stopWordsDirty;
+
+	/*
+	 * 正在应用其他节点分发的修改，期间不通知监听器；只在持有本对象的锁时访问
+	 */
+	private boolean replicating;
+
+	/*
+	 * 运行期修改超过该数目时，在后台并入基础部分
+	 */
+	private int mainDeltaMaxSize;
+
+	/*
+	 * 来源变化后等待编译的时间（毫秒），期间的其他变化合并为一次编译；0 为立即编译
+	 */
+	private long updateDebounceMillis;
+
+	/*
+	 * 已经安排了合并编译
+	 */
+	private final AtomicBoolean compilePending = new AtomicBoolean();
+
+	/*
+	 * 合并编译的统计：请求次数、被合并的请求次数、编译次数与耗时
+	 */
+	private final AtomicLong compileTriggers = new AtomicLong();
+
+	private final AtomicLong compileCoalesced = new AtomicLong();
+
+	private final AtomicLong compiles = new AtomicLong();
+
+	private final AtomicLong compileTotalMillis = new AtomicLong();
+
+	private volatile long compileLastMillis;
+
+	private volatile long compileMaxMillis;
+
+	/*
+	 * 节点默认的词典引擎，见 {@link DictionaryEngines}
+	 */
+	private String mainEngine = DictionaryEngines.DOUBLE_ARRAY;
+
+	/*
+	 * 分词器通过 dict_engine 选用的其他引擎，引擎名称到以该引擎编译的主词典基础部分（尚未编译时为 {@link EngineBase#PENDING}）
+	 * 首次使用时不加锁登记，编译结果只在持有本对象的锁时写入；每发布一个快照即为其中的引擎生成对应的快照，随快照一起发布
+	 */
+	private final Map<String, EngineBase> engineBases = new ConcurrentHashMap<String, EngineBase>();
+
+	// 是否已经安排在后台编译其他引擎的主词典基础部分
+	private final AtomicBoolean engineBuildPending = new AtomicBoolean();
+
+	private final AtomicBoolean compacting = new AtomicBoolean();
+
+	/*
+	 * 是否为初始化中的实例，只统计该实例的加载进度（重新加载时另建的实例不统计）
+	 */
+	private boolean trackProgress;
+
+	/*
+	 * 远程词典的本地缓存目录与等待下载的最长时间（毫秒）
+	 */
+	private Path remoteDictCacheDir;
+
+	private long remoteDictLoadTimeout;
+
+	/*
+	 * 本次加载的远程词典下载，首次使用时创建
+	 */
+	private RemoteDictFetcher remoteFetcher;
+
+	/*
+	 * 监控远程词典的条件请求，首次使用时创建
+	 */
+	private RemoteDictFetcher remotePoller;
+
 	/**
 	 * 配置对象
 	 */
@@ -82,7 +219,66 @@ public class Dictionary {
 
 	private static final Logger logger = ESPluginLoggerFactory.getLogger(Monitor.class.getName());
 
-	private static ScheduledExecutorService pool = Executors.newScheduledThreadPool(1);
+	// 词典维护任务的工作线程数上限
+	private static final int MAINTENANCE_THREADS = 4;
+
+	/*
+	 * 远程词典监控、数据库监控、合并编译与后台合并的调度器，插件关闭时停止
+	 */
+	private static final MaintenanceScheduler maintenance = new MaintenanceScheduler(MAINTENANCE_THREADS);
+
+	/*
+	 * 当前轮询的词条来源，节点关闭时释放其连接
+	 */
+	private static volatile List<DictSource> dictSources = Collections.emptyList();
+
+	/*
+	 * 接收本节点词典修改的监听器（集群同步），为空时不通知
+	 * 词典是进程内的单例，同一进程中的多个节点（集成测试）各自注册
+	 */
+	private static final List<DictUpdateListener> updateListeners = new CopyOnWriteArrayList<DictUpdateListener>();
+
+	/*
+	 * 本节点是否轮询各来源，为空时总是轮询，否则任一条件成立时轮询；集群同步时只有主节点轮询
+	 */
+	private static final List<BooleanSupplier> pollingGates = new CopyOnWriteArrayList<BooleanSupplier>();
+
+	// 默认等待后台初始化完成的最长时间
+	public static final long DEFAULT_INITIAL_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+	private static final String LOAD_NOT_STARTED = "not_started";
+	private static final String LOAD_LOADING = "loading";
+	private static final String LOAD_COMPILING = "compiling";
+	private static final String LOAD_LOADED = "loaded";
+	private static final String LOAD_FAILED = "failed";
+
+	/*
+	 * 词典初始化任务：节点启动时由插件在后台执行，否则由首个分词器配置在当前线程执行
+	 */
+	private static FutureTask<Void> initialTask;
+
+	/*
+	 * 等待后台初始化完成的最长时间，单位毫秒
+	 */
+	private static volatile long initialWaitMillis = DEFAULT_INITIAL_WAIT_MILLIS;
+
+	/*
+	 * 初始化进度，见 {@link #getLoadStats()}
+	 */
+	private static volatile String loadState = LOAD_NOT_STARTED;
+
+	private static volatile long loadStartTime;
+
+	private static volatile long loadEndTime;
+
+	private static volatile String loadFailure;
+
+	private static final AtomicInteger loadedSources = new AtomicInteger();
+
+	private static final AtomicLong loadedWords = new AtomicLong();
+
+	// 启动时并行加载词典的线程数上限
+	private static final int LOADER_MAX_PARALLELISM = 8;
 
 	private static final String PATH_DIC_MAIN = "main.dic";
 	private static final String PATH_DIC_SURNAME = "surname.dic";
@@ -96,6 +292,29 @@ public class Dictionary {
 	private final static  String REMOTE_EXT_DICT = "remote_ext_dict";
 	private final static  String EXT_STOP = "ext_stopwords";
 	private final static  String REMOTE_EXT_STOP = "remote_ext_stopwords";
+	private final static  String MAIN_DELTA_MAX_SIZE = "main_dict_delta_max_size";
+	private final static  int DEFAULT_MAIN_DELTA_MAX_SIZE = 10000;
+	private final static  String MAIN_DICT_ENGINE = "main_dict_engine";
+	private final static  String MAIN_DICT_FST_OFF_HEAP = "main_dict_fst_off_heap";
+	private final static  String REMOTE_DICT_CACHE_DIR = "remote_dict_cache_dir";
+	private final static  String DEFAULT_REMOTE_DICT_CACHE_DIR = "remote_cache";
+	private final static  String REMOTE_DICT_LOAD_TIMEOUT = "remote_dict_load_timeout";
+	private final static  long DEFAULT_REMOTE_DICT_LOAD_TIMEOUT = 15 * 1000;
+	private final static  String REMOTE_DICT_DELTA = "remote_dict_delta";
+	private final static  String DICT_UPDATE_DEBOUNCE = "dict_update_debounce";
+	private final static  long DEFAULT_DICT_UPDATE_DEBOUNCE = 1000;
+	private final static  String MONITOR_INITIAL_DELAY = "monitor_initial_delay";
+	private final static  long DEFAULT_MONITOR_INITIAL_DELAY = 10;
+	private final static  String REMOTE_DICT_MONITOR_INTERVAL = "remote_dict_monitor_interval";
+	private final static  long DEFAULT_REMOTE_DICT_MONITOR_INTERVAL = 60;
+	private final static  String REMOTE_DICT_MONITOR_MIN_INTERVAL = "remote_dict_monitor_min_interval";
+	private final static  String REMOTE_DICT_MONITOR_MAX_INTERVAL = "remote_dict_monitor_max_interval";
+	private final static  String MONITOR_JITTER = "monitor_jitter";
+	private final static  double DEFAULT_MONITOR_JITTER = 0.1;
+	private final static  String MONITOR_MAX_BACKOFF = "monitor_max_backoff";
+	private final static  long DEFAULT_MONITOR_MAX_BACKOFF = 600;
+	private final static  String DB_CHANGELOG_DIR = "db_changelog_dir";
+	private final static  String DEFAULT_DB_CHANGELOG_DIR = "db_changelog";
 
 	private Path conf_dir;
 	private Properties props;
@@ -132,6 +351,59 @@ public class Dictionary {
 
 		// 加载 jdbc.properties 文件
 		loadJdbcProperties();
+
+		this.mainDeltaMaxSize = DEFAULT_MAIN_DELTA_MAX_SIZE;
+		String deltaMaxSize = getProperty(MAIN_DELTA_MAX_SIZE);
+		if (deltaMaxSize != null && !deltaMaxSize.trim().isEmpty()) {
+			try {
+				this.mainDeltaMaxSize = Integer.parseInt(deltaMaxSize.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("invalid {}: {}, using {}", MAIN_DELTA_MAX_SIZE, deltaMaxSize, DEFAULT_MAIN_DELTA_MAX_SIZE);
+			}
+		}
+
+		this.updateDebounceMillis = DEFAULT_DICT_UPDATE_DEBOUNCE;
+		String debounce = getProperty(DICT_UPDATE_DEBOUNCE);
+		if (debounce != null && !debounce.trim().isEmpty()) {
+			try {
+				this.updateDebounceMillis = Long.parseLong(debounce.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("invalid {}: {}, using {}", DICT_UPDATE_DEBOUNCE, debounce, DEFAULT_DICT_UPDATE_DEBOUNCE);
+			}
+		}
+
+		this.remoteDictCacheDir = resolveConfSubdir(REMOTE_DICT_CACHE_DIR, DEFAULT_REMOTE_DICT_CACHE_DIR);
+		this.remoteDictLoadTimeout = DEFAULT_REMOTE_DICT_LOAD_TIMEOUT;
+		String loadTimeout = getProperty(REMOTE_DICT_LOAD_TIMEOUT);
+		if (loadTimeout != null && !loadTimeout.trim().isEmpty()) {
+			try {
+				this.remoteDictLoadTimeout = Long.parseLong(loadTimeout.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("invalid {}: {}, using {}", REMOTE_DICT_LOAD_TIMEOUT, loadTimeout,
+						DEFAULT_REMOTE_DICT_LOAD_TIMEOUT);
+			}
+		}
+
+		String engine = getProperty(MAIN_DICT_ENGINE);
+		if (engine != null && !engine.trim().isEmpty()) {
+			try {
+				this.mainEngine = resolveEngine(engine);
+			} catch (IllegalArgumentException e) {
+				logger.warn("invalid {}: {}, using {}", MAIN_DICT_ENGINE, e.getMessage(), mainEngine);
+			}
+		}
+	}
+
+	/**
+	 * 校验引擎名称，配置了 main_dict_fst_off_heap 时 fst 改用堆外存储
+	 * @throws IllegalArgumentException 没有该名称的引擎
+	 */
+	private String resolveEngine(String engine) {
+		engine = engine.trim().toLowerCase();
+		if (DictionaryEngines.FST.equals(engine) && Boolean.parseBoolean(getProperty(MAIN_DICT_FST_OFF_HEAP))) {
+			engine = DictionaryEngines.FST_OFF_HEAP;
+		}
+		return DictionaryEngines.get(engine).name();
 	}
 
 	/**
@@ -139,87 +411,941 @@ public class Dictionary {
 	 */
 	public void loadJdbcProperties() {
 		Path file = PathUtils.get(getDictRoot(), DatabaseMonitor.PATH_JDBC_PROPERTIES);
-		try {
-			props.load(new FileInputStream(file.toFile()));
+		if (!Files.exists(file)) {
+			// 没有数据库配置，不创建数据库来源
+			logger.debug("{} not found, database dictionary source disabled", file);
+			return;
+		}
+		try (InputStream in = new FileInputStream(file.toFile())) {
+			props.load(in);
 			logger.info("====================================properties====================================");
 			for (Map.Entry<Object, Object> entry : props.entrySet()) {
-				logger.info("{}: {}", entry.getKey(), entry.getValue());
+				logger.info("{}: {}", entry.getKey(),
+						DatabaseMonitor.JDBC_PASSWORD.equals(entry.getKey()) ? "******" : entry.getValue());
+			}
+			logger.info("====================================properties====================================");
+		} catch (IOException e) {
+			logger.error("failed to read file: " + DatabaseMonitor.PATH_JDBC_PROPERTIES, e);
+		}
+	}
+
+	/**
+	 * 加载新词条
+	 * 修改在调用 {@link #compileDicts()} 之后对分词生效
+	 */
+	public static void addWord(String word) {
+		singleton.enableMainWord(word.trim().toLowerCase());
+	}
+
+	/**
+	 * 移除（屏蔽）词条
+	 * 修改在调用 {@link #compileDicts()} 之后对分词生效
+	 */
+	public static void disableWord(String word) {
+		singleton.disableMainWord(word.trim().toLowerCase());
+	}
+
+	/**
+	 * 加载新停用词
+	 * 修改在调用 {@link #compileDicts()} 之后对分词生效
+	 */
+	public static void addStopword(String word) {
+		singleton.enableStopWord(word.trim().toLowerCase());
+	}
+
+	/**
+	 * 移除（屏蔽）停用词
+	 * 修改在调用 {@link #compileDicts()} 之后对分词生效
+	 */
+	public static void disableStopword(String word) {
+		singleton.disableStopWord(word.trim().toLowerCase());
+	}
+
+	/**
+	 * 批量应用运行期（数据库）对主词典的修改，整批只加一次锁：true 为新增，false 为删除
+	 * 词条须已去掉首尾空白并转为小写；修改在编译之后对分词生效
+	 */
+	synchronized void updateMainWords(Map<String, Boolean> changes) {
+		applyMainWords(changes);
+		notifyUpdate(false, changes);
+	}
+
+	/**
+	 * 批量应用运行期（数据库）对停用词的修改，见 {@link #updateMainWords(Map)}
+	 */
+	synchronized void updateStopWords(Map<String, Boolean> changes) {
+		applyStopWords(changes);
+		notifyUpdate(true, changes);
+	}
+
+	private synchronized void applyMainWords(Map<String, Boolean> changes) {
+		for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+			if (change.getValue()) {
+				enableMainWord(change.getKey());
+			} else {
+				disableMainWord(change.getKey());
+			}
+		}
+	}
+
+	private synchronized void applyStopWords(Map<String, Boolean> changes) {
+		for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+			if (change.getValue()) {
+				enableStopWord(change.getKey());
+			} else {
+				disableStopWord(change.getKey());
+			}
+		}
+	}
+
+	/**
+	 * 把运行期修改通知监听器，调用方持有本对象的锁
+	 */
+	private void notifyUpdate(boolean stopwords, Map<String, Boolean> changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		for (DictUpdateListener listener : updateListeners) {
+			try {
+				listener.onUpdate(stopwords, changes);
+			} catch (RuntimeException e) {
+				logger.error("[Dict Update] update listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * 把一个来源的词条变化通知监听器，调用方持有本对象的锁
+	 */
+	private void notifySourceUpdate(String source, boolean stopwords, Map<String, Boolean> changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		for (DictUpdateListener listener : updateListeners) {
+			try {
+				listener.onSourceUpdate(source, stopwords, changes);
+			} catch (RuntimeException e) {
+				logger.error("[Dict Update] update listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * 是否需要记录来源的变化以通知监听器，调用方持有本对象的锁
+	 */
+	private boolean notifying() {
+		return !replicating && !updateListeners.isEmpty();
+	}
+
+	private synchronized void enableMainWord(String word) {
+		if (word.isEmpty()) return;
+		_MainDelta.put(word, Boolean.TRUE);
+		mainDictDirty = true;
+	}
+
+	private synchronized void disableMainWord(String word) {
+		if (word.isEmpty()) return;
+		if (compacting.get() || containsMainBase(word) || _MainSourceDelta.containsKey(word)
+				|| providedByOthers(_MainSources, null, word.toCharArray())) {
+			_MainDelta.put(word, Boolean.FALSE);
+		} else {
+			// 基础部分、来源都没有该词，删除只需撤销新增，不留墓碑
+			// 后台合并期间不撤销：合并中的基础部分可能已经收入该词，仍需墓碑屏蔽
+			_MainDelta.remove(word);
+		}
+		mainDictDirty = true;
+	}
+
+	private boolean containsMainBase(String word) {
+		char[] chars = word.toCharArray();
+		return _MainBase.contains(chars, 0, chars.length);
+	}
+
+	private synchronized void enableStopWord(String word) {
+		if (word.isEmpty()) return;
+		_StopWords.fillSegment(word.toCharArray());
+		_StopWordsRuntime.put(word, Boolean.TRUE);
+		stopWordsDirty = true;
+	}
+
+	private synchronized void disableStopWord(String word) {
+		if (word.isEmpty()) return;
+		_StopWords.disableSegment(word.toCharArray());
+		_StopWordsRuntime.put(word, Boolean.FALSE);
+		stopWordsDirty = true;
+	}
+
+	/**
+	 * 将词典树上尚未生效的修改编译为新的快照并发布
+	 * 批量修改词条后调用一次，避免每个词条都重新编译
+	 */
+	public synchronized void compileDicts() {
+		if (!mainDictDirty && !stopWordsDirty) {
+			return;
+		}
+		DictSnapshot current = snapshot;
+		LayeredTrie mainTrie = mainDictDirty ? compileMain() : current.getMainTrie();
+		TagTrie tagTrie = stopWordsDirty ? compileTags() : current.getTagTrie();
+		publish(mainTrie, tagTrie);
+		if (_MainDelta.size() + _MainSourceDelta.size() > mainDeltaMaxSize) {
+			scheduleCompaction();
+		}
+	}
+
+	/**
+	 * 请求编译尚未生效的修改：等待 dict_update_debounce 后统一编译一次，
+	 * 期间各来源（远程词典、数据库）的其他变化合并到同一次编译中
+	 */
+	void requestCompile() {
+		compileTriggers.incrementAndGet();
+		if (updateDebounceMillis <= 0) {
+			runCompile();
+			return;
+		}
+		if (!compilePending.compareAndSet(false, true)) {
+			compileCoalesced.incrementAndGet();
+			return;
+		}
+		try {
+			maintenance.schedule(this::runCompile, updateDebounceMillis);
+		} catch (RejectedExecutionException e) {
+			compilePending.set(false);
+			runCompile();
+		}
+	}
+
+	private void runCompile() {
+		compilePending.set(false);
+		synchronized (this) {
+			if (!mainDictDirty && !stopWordsDirty) {
+				// 已经由其他编译（如重新加载）一并生效
+				return;
+			}
+			compileAndRecord();
+		}
+	}
+
+	/**
+	 * 编译并记录耗时，见 {@link #getLoadStats()} 的 updates
+	 */
+	private synchronized void compileAndRecord() {
+		long start = System.currentTimeMillis();
+		compileDicts();
+		long elapsed = System.currentTimeMillis() - start;
+		compiles.incrementAndGet();
+		compileTotalMillis.addAndGet(elapsed);
+		compileLastMillis = elapsed;
+		compileMaxMillis = Math.max(compileMaxMillis, elapsed);
+	}
+
+	/**
+	 * 一次应用一批主词典与停用词的修改并立即编译，不等待 dict_update_debounce（用于推送的更新）
+	 * 词条须已去掉首尾空白并转为小写，true 为新增，false 为删除
+	 * @return 修改生效后的快照代数，批次为空时为当前代数
+	 */
+	public synchronized long applyUpdates(Map<String, Boolean> mainChanges, Map<String, Boolean> stopChanges) {
+		updateMainWords(mainChanges);
+		updateStopWords(stopChanges);
+		if (mainDictDirty || stopWordsDirty) {
+			compileAndRecord();
+		}
+		return snapshot.getGeneration();
+	}
+
+	/**
+	 * 应用集群中其他节点（主节点）分发的一批修改并立即编译，不通知监听器，见 {@link #addUpdateListener(DictUpdateListener)}
+	 * 各来源的变化与来源自身的增量更新一样应用到本节点同一来源的词条上，之后本节点比较该来源时以此为准；
+	 * 本节点没有的来源的变化作为运行期修改应用。运行期修改最后应用，优先于各来源的词条
+	 * 词条须已去掉首尾空白并转为小写，true 为新增，false 为删除
+	 * @param mainSources 来源到该来源主词典词条变化的映射
+	 * @param stopSources 来源到该来源停用词变化的映射
+	 * @return 修改生效后的快照代数
+	 */
+	public synchronized long applyReplicated(Map<String, Map<String, Boolean>> mainSources,
+			Map<String, Map<String, Boolean>> stopSources, Map<String, Boolean> mainChanges,
+			Map<String, Boolean> stopChanges) {
+		replicating = true;
+		try {
+			Map<String, Boolean> main = new LinkedHashMap<String, Boolean>();
+			Map<String, Boolean> stop = new LinkedHashMap<String, Boolean>();
+			applyReplicatedSources(_MainSources, true, mainSources, main);
+			applyReplicatedSources(_StopSources, false, stopSources, stop);
+			main.putAll(mainChanges);
+			stop.putAll(stopChanges);
+			applyMainWords(main);
+			applyStopWords(stop);
+		} finally {
+			replicating = false;
+		}
+		if (mainDictDirty || stopWordsDirty) {
+			compileAndRecord();
+		}
+		return snapshot.getGeneration();
+	}
+
+	/**
+	 * 把分发的各来源变化应用到本节点同一来源的词条上，调用方持有本对象的锁
+	 * @param overrides 收集本节点没有的来源的变化，作为运行期修改应用
+	 */
+	private void applyReplicatedSources(Map<String, SourceWords> sources, boolean main,
+			Map<String, Map<String, Boolean>> changes, Map<String, Boolean> overrides) {
+		for (Map.Entry<String, Map<String, Boolean>> entry : changes.entrySet()) {
+			if (!sources.containsKey(entry.getKey())) {
+				logger.warn("[Dict Update] {} is not a dictionary source on this node, applying {} replicated changes "
+						+ "as runtime changes", entry.getKey(), entry.getValue().size());
+				overrides.putAll(entry.getValue());
+				continue;
+			}
+			List<char[]> added = new ArrayList<char[]>();
+			List<char[]> removed = new ArrayList<char[]>();
+			for (Map.Entry<String, Boolean> change : entry.getValue().entrySet()) {
+				(change.getValue() ? added : removed).add(change.getKey().toCharArray());
+			}
+			applyDelta(sources, main, entry.getKey(), added, removed);
+		}
+	}
+
+	/**
+	 * 发布新的快照，此后开始的分词使用新快照，进行中的分词不受影响
+	 * 其他引擎的快照随之生成并一起发布；主词典基础部分变化（重新加载、合并）后，其他引擎在后台重新编译
+	 */
+	private synchronized void publish(LayeredTrie mainTrie, TagTrie tagTrie) {
+		long generation = snapshot == null ? 1 : snapshot.getGeneration() + 1;
+		snapshot = withEngineViews(new DictSnapshot(generation, mainTrie, tagTrie));
+		mainDictDirty = false;
+		stopWordsDirty = false;
+		logger.info("[Dict Snapshot] generation {} published: {} main words, {} stopwords", generation,
+				mainTrie.size(), tagTrie.size(DictSnapshot.STOPWORD));
+	}
+
+	/**
+	 * 当前的词典快照
+	 * 一次分词过程应固定使用同一个快照
+	 */
+	public DictSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * 以指定引擎编译的当前词典快照，只读取已发布的快照，不加锁
+	 * 某个引擎首次使用时在后台编译，编译完成前返回默认引擎的快照（词条相同，只是存储方式不同）
+	 * @param engine 引擎名称，为null时使用节点默认引擎
+	 * @throws IllegalArgumentException 没有该名称的引擎
+	 */
+	public DictSnapshot getSnapshot(String engine) {
+		DictSnapshot current = snapshot;
+		if (engine == null || engine.equals(mainEngine)) {
+			return current;
+		}
+		DictSnapshot view = current.getEngineView(engine);
+		if (view != null) {
+			return view;
+		}
+		DictionaryEngines.get(engine);
+		if (engineBases.putIfAbsent(engine, EngineBase.PENDING) == null) {
+			scheduleEngineBuild();
+		}
+		return current;
+	}
+
+	/**
+	 * 为已经编译了主词典基础部分的各引擎生成与 current 同一版本的快照，运行期修改层与类别词典原样沿用
+	 * 基础部分与 current 不同的引擎不生成，安排在后台重新编译；调用方持有本对象的锁
+	 */
+	private DictSnapshot withEngineViews(DictSnapshot current) {
+		if (engineBases.isEmpty()) {
+			return current;
+		}
+		LayeredTrie main = current.getMainTrie();
+		Map<String, DictSnapshot> views = new HashMap<String, DictSnapshot>();
+		boolean stale = false;
+		for (Map.Entry<String, EngineBase> entry : engineBases.entrySet()) {
+			EngineBase base = entry.getValue();
+			if (base.source != main.base()) {
+				stale = true;
+				continue;
+			}
+			LayeredTrie mainTrie = new LayeredTrie(base.mainBase, main.ext(), main.disabled());
+			mainTrie.buildAutomata();
+			views.put(entry.getKey(), new DictSnapshot(current.getGeneration(), mainTrie, current.getTagTrie()));
+		}
+		if (stale) {
+			scheduleEngineBuild();
+		}
+		return new DictSnapshot(current.getGeneration(), main, current.getTagTrie(), Collections.unmodifiableMap(views));
+	}
+
+	private void scheduleEngineBuild() {
+		if (engineBuildPending.compareAndSet(false, true)) {
+			try {
+				maintenance.execute(this::buildEngines);
+			} catch (RejectedExecutionException e) {
+				engineBuildPending.set(false);
+				logger.warn("[Dict Engine] rejected", e);
+			}
+		}
+	}
+
+	/**
+	 * 在维护线程上以各引擎重新编译当前快照的主词典基础部分，编译不持有锁，完成后重新发布当前版本的快照
+	 * 编译期间基础部分再次变化时，由下一次发布重新安排
+	 */
+	private void buildEngines() {
+		engineBuildPending.set(false);
+		for (String engine : new ArrayList<String>(engineBases.keySet())) {
+			DictionaryEngine source = snapshot.getMainTrie().base();
+			if (engineBases.get(engine).source == source) {
+				continue;
+			}
+			DictionaryEngine mainBase;
+			try {
+				mainBase = rebuild(DictionaryEngines.get(engine), source, "Main Dict");
+			} catch (RuntimeException e) {
+				// 下次发布时重试，期间使用默认引擎
+				logger.error("[Dict Engine] failed to build " + engine, e);
+				continue;
+			}
+			synchronized (this) {
+				engineBases.put(engine, new EngineBase(source, mainBase));
+				if (snapshot.getMainTrie().base() == source) {
+					snapshot = withEngineViews(snapshot);
+				}
+			}
+		}
+	}
+
+	private static DictionaryEngine rebuild(DictionaryEngine.Factory factory, DictionaryEngine source, String name) {
+		long start = System.currentTimeMillis();
+		List<char[]> words = new ArrayList<char[]>(source.size());
+		source.collectWords(words);
+		DictionaryEngine engine = factory.build(words.toArray(new char[words.size()][]));
+		engine.prepare();
+		logger.info("[Dict Engine] {} {}: {} words, {} bytes, {} ms", factory.name(), name, engine.size(),
+				engine.ramBytesUsed(), System.currentTimeMillis() - start);
+		return engine;
+	}
+
+	/**
+	 * 以其他引擎编译的主词典基础部分，以及编译它所用的默认引擎的基础部分
+	 */
+	private static final class EngineBase {
+
+		// 尚未编译
+		static final EngineBase PENDING = new EngineBase(null, null);
+
+		private final DictionaryEngine source;
+		private final DictionaryEngine mainBase;
+
+		EngineBase(DictionaryEngine source, DictionaryEngine mainBase) {
+			this.source = source;
+			this.mainBase = mainBase;
+		}
+	}
+
+	/**
+	 * 主词典：基础双数组叠加运行期新增的词条、减去运行期删除的词条
+	 * 只编译运行期修改，耗时与修改数目成正比，与基础部分的大小无关
+	 */
+	private LayeredTrie compileMain() {
+		long start = System.currentTimeMillis();
+		List<char[]> added = new ArrayList<char[]>();
+		List<char[]> removed = new ArrayList<char[]>();
+		for (Map.Entry<String, Boolean> entry : mainDelta().entrySet()) {
+			(entry.getValue() ? added : removed).add(entry.getKey().toCharArray());
+		}
+		LayeredTrie trie = new LayeredTrie(_MainBase, DoubleArrayTrie.build(added.toArray(new char[added.size()][])),
+				DoubleArrayTrie.build(removed.toArray(new char[removed.size()][])));
+		trie.buildAutomata();
+		logger.info("[Dict Compile] Main Dict: {} base words, {} added, {} removed, {} ms", _MainBase.size(),
+				added.size(), removed.size(), System.currentTimeMillis() - start);
+		return trie;
+	}
+
+	/**
+	 * 来源变化与运行期修改合并后的全部修改，同一个词以运行期修改为准
+	 */
+	private Map<String, Boolean> mainDelta() {
+		if (_MainSourceDelta.isEmpty()) {
+			return _MainDelta;
+		}
+		Map<String, Boolean> delta = new HashMap<String, Boolean>(_MainSourceDelta);
+		delta.putAll(_MainDelta);
+		return delta;
+	}
+
+	/**
+	 * 在后台把运行期修改并入基础部分
+	 */
+	private void scheduleCompaction() {
+		if (compacting.compareAndSet(false, true)) {
+			try {
+				maintenance.execute(this::compactMain);
+			} catch (RejectedExecutionException e) {
+				compacting.set(false);
+				logger.warn("[Dict Compact] rejected", e);
+			}
+		}
+	}
+
+	/**
+	 * 以基础部分加上运行期新增、减去运行期删除的词条重新编译基础部分
+	 * 编译期间词典照常查找和修改；完成后只移除已并入的修改，期间新到的修改继续保留
+	 */
+	private void compactMain() {
+		try {
+			long start = System.currentTimeMillis();
+			DictionaryEngine base;
+			Map<String, Boolean> runtimeDelta;
+			Map<String, Boolean> sourceDelta;
+			Map<String, Boolean> delta;
+			synchronized (this) {
+				base = _MainBase;
+				runtimeDelta = new HashMap<String, Boolean>(_MainDelta);
+				sourceDelta = new HashMap<String, Boolean>(_MainSourceDelta);
+				delta = new HashMap<String, Boolean>(sourceDelta);
+				delta.putAll(runtimeDelta);
+			}
+			List<char[]> words = new ArrayList<char[]>(base.size() + delta.size());
+			base.collectWords(words);
+			if (delta.containsValue(Boolean.FALSE)) {
+				words.removeIf(word -> Boolean.FALSE.equals(delta.get(new String(word))));
+			}
+			for (Map.Entry<String, Boolean> entry : delta.entrySet()) {
+				if (entry.getValue()) {
+					words.add(entry.getKey().toCharArray());
+				}
+			}
+			DictionaryEngine compacted = buildEngine(words);
+			compacted.prepare();
+
+			synchronized (this) {
+				if (_MainBase != base) {
+					// 期间词典文件被重新加载，本次结果作废
+					logger.info("[Dict Compact] main dict reloaded during compaction, discarded");
+					return;
+				}
+				_MainBase = compacted;
+				// 已并入的记录只反映同一个词最后一次并入的修改，不需要时移除之前的记录
+				for (Map.Entry<String, Boolean> entry : runtimeDelta.entrySet()) {
+					if (!_MainDelta.remove(entry.getKey(), entry.getValue())) {
+						continue;
+					}
+					if (isCompactedNeeded(entry.getKey(), entry.getValue())) {
+						_MainCompacted.put(entry.getKey(), entry.getValue());
+					} else {
+						_MainCompacted.remove(entry.getKey());
+					}
+				}
+				// 来源变化并入后不需要保留，各来源的内容仍记录在 _MainSources 中
+				for (Map.Entry<String, Boolean> entry : sourceDelta.entrySet()) {
+					_MainSourceDelta.remove(entry.getKey(), entry.getValue());
+				}
+				DictSnapshot current = snapshot;
+				publish(compileMain(), current.getTagTrie());
+			}
+			logger.info("[Dict Compact] folded {} changes into main dict: {} words, {} ms", delta.size(),
+					compacted.size(), System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			logger.error("[Dict Compact] failed", e);
+			return;
+		} finally {
+			compacting.set(false);
+		}
+		// 合并期间到达的修改超过上限时接着合并，不等下一次编译
+		if (_MainDelta.size() + _MainSourceDelta.size() > mainDeltaMaxSize) {
+			scheduleCompaction();
+		}
+	}
+
+
+	/**
+	 * 量词、停止词合并编译为一个带类别标记的双数组，分词时与主词典同步扫描
+	 */
+	private TagTrie compileTags() {
+		long start = System.currentTimeMillis();
+		TagTrie tags = new TagTrie.Builder()
+				.add(_QuantifierDict, DictSnapshot.QUANTIFIER)
+				.add(_StopWords, DictSnapshot.STOPWORD)
+				.build();
+		logger.info("[Dict Compile] Tags: {} quantifiers, {} stopwords, {} ms", tags.size(DictSnapshot.QUANTIFIER),
+				tags.size(DictSnapshot.STOPWORD), System.currentTimeMillis() - start);
+		return tags;
+	}
+
+	public String getProperty(String key){
+		if(props!=null){
+			return props.getProperty(key);
+		}
+		return null;
+	}
+
+	long getLongProperty(String key, long defaultValue) {
+		String value = getProperty(key);
+		if (value != null && !value.trim().isEmpty()) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("invalid {}: {}, using {}", key, value, defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+
+	private double getDoubleProperty(String key, double defaultValue) {
+		String value = getProperty(key);
+		if (value != null && !value.trim().isEmpty()) {
+			try {
+				return Double.parseDouble(value.trim());
+			} catch (NumberFormatException e) {
+				logger.warn("invalid {}: {}, using {}", key, value, defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+	/**
+	 * 词典初始化 由于IK Analyzer的词典采用Dictionary类的静态方法进行词典初始化
+	 * 只有当Dictionary类被实际调用时，才会开始载入词典， 这将延长首次分词操作的时间 该方法提供了一个在应用加载阶段就初始化字典的手段
+	 * 插件已在节点启动时开始后台初始化的，只等待其完成，最长等待 {@link #initialAsync} 指定的时间
+	 * 
+	 * @throws IllegalStateException 等待超时或者初始化失败，失败后下一次调用重新初始化
+	 */
+	public static void initial(Configuration cfg) {
+		if (singleton != null) {
+			return;
+		}
+		FutureTask<Void> task;
+		boolean owner = false;
+		synchronized (Dictionary.class) {
+			if (singleton != null) {
+				return;
+			}
+			task = initialTask;
+			if (task == null) {
+				task = initialTask = newInitialTask(cfg);
+				owner = true;
+			}
+		}
+		if (owner) {
+			task.run();
+		}
+		awaitInitial(task);
+	}
+
+	/**
+	 * 在后台线程初始化词典，节点启动时由插件调用，不等待加载完成
+	 * @param waitMillis 分词器配置等待初始化完成的最长时间
+	 */
+	public static void initialAsync(Configuration cfg, long waitMillis) {
+		FutureTask<Void> task;
+		synchronized (Dictionary.class) {
+			initialWaitMillis = waitMillis;
+			if (singleton != null || initialTask != null) {
+				return;
+			}
+			task = initialTask = newInitialTask(cfg);
+		}
+		Thread thread = new Thread(task, "ik-dict-initial");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static FutureTask<Void> newInitialTask(Configuration cfg) {
+		return new FutureTask<Void>(() -> {
+			load(cfg);
+			return null;
+		});
+	}
+
+	private static void awaitInitial(FutureTask<Void> task) {
+		try {
+			if (task.isDone()) {
+				task.get();
+				return;
+			}
+			long waitMillis = initialWaitMillis;
+			long start = System.currentTimeMillis();
+			logger.info("[Dict Loading] dictionary is still loading, waiting up to {} ms", waitMillis);
+			task.get(waitMillis, TimeUnit.MILLISECONDS);
+			logger.info("[Dict Loading] waited {} ms for dictionary loading", System.currentTimeMillis() - start);
+		} catch (TimeoutException e) {
+			logger.warn("[Dict Loading] dictionary is still loading after {} ms: {} sources, {} words loaded",
+					initialWaitMillis, loadedSources.get(), loadedWords.get());
+			throw new IllegalStateException("ik dict is still loading after " + initialWaitMillis + " ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for ik dict loading", e);
+		} catch (ExecutionException e) {
+			synchronized (Dictionary.class) {
+				// 下一次调用重新初始化
+				if (initialTask == task) {
+					initialTask = null;
+				}
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("ik dict loading failed", e.getCause());
+		}
+	}
+
+	/**
+	 * 加载并编译全部词典，完成后才发布单例、启动监控线程
+	 */
+	private static void load(Configuration cfg) {
+		logger.info("---------- Dictionary initial start ---------");
+		loadStartTime = System.currentTimeMillis();
+		loadEndTime = 0;
+		loadFailure = null;
+		loadedSources.set(0);
+		loadedWords.set(0);
+		loadState = LOAD_LOADING;
+		Dictionary dict;
+		DbChangeLog changeLog = null;
+		try {
+			dict = new Dictionary(cfg);
+			dict.trackProgress = true;
+			dict.loadAll();
+			if (DatabaseMonitor.isConfigured(dict)) {
+				// 从本地日志恢复数据库来的词条，数据库只需查询检查点之后的修改
+				changeLog = dict.openChangeLog();
+				changeLog.replay(dict);
+			}
+			loadState = LOAD_COMPILING;
+			dict.compileAll();
+		} catch (RuntimeException | Error e) {
+			loadFailure = e.toString();
+			loadState = LOAD_FAILED;
+			loadEndTime = System.currentTimeMillis();
+			logger.error("[Dict Loading] dictionary initial failed", e);
+			throw e;
+		}
+		singleton = dict;
+		loadState = LOAD_LOADED;
+		loadEndTime = System.currentTimeMillis();
+		logger.info("---------- Dictionary initial finished in {} ms ---------", loadEndTime - loadStartTime);
+
+		// 各来源独立调度：初始延迟、间隔（秒）可以配置，间隔加随机抖动，失败后指数退避
+		long initialDelay = TimeUnit.SECONDS.toMillis(dict.getLongProperty(MONITOR_INITIAL_DELAY, DEFAULT_MONITOR_INITIAL_DELAY));
+		long maxBackoff = TimeUnit.SECONDS.toMillis(dict.getLongProperty(MONITOR_MAX_BACKOFF, DEFAULT_MONITOR_MAX_BACKOFF));
+		double jitter = dict.getDoubleProperty(MONITOR_JITTER, DEFAULT_MONITOR_JITTER);
+		List<DictSource> sources = dict.createSources(changeLog);
+		dictSources = sources;
+		for (DictSource source : sources) {
+			// 不轮询时视为没有变化，间隔逐渐延长到最大间隔
+			MaintenanceScheduler.Task task = () -> isPolling() && source.execute();
+			maintenance.schedule(source.name(), task, initialDelay, source.interval(), source.minInterval(),
+					source.maxInterval(), jitter, maxBackoff);
+		}
+		logger.info("[Dict Sources] polling {} sources", sources.size());
+	}
+
+	/**
+	 * 创建需要轮询的词条来源，只创建已配置的来源：
+	 * 启用远程词典时每个远程词典一个（共用缓存的 Last-Modified、ETag），配置了 jdbc.url 时一个数据库来源
+	 * @param changeLog 数据库修改的本地日志，未配置数据库时为null
+	 */
+	private List<DictSource> createSources(DbChangeLog changeLog) {
+		List<DictSource> sources = new ArrayList<DictSource>();
+		if (configuration.isEnableRemoteDict()) {
+			// 间隔（秒）在最小、最大间隔之间自适应，默认为间隔的 1/4 与 10 倍
+			long seconds = getLongProperty(REMOTE_DICT_MONITOR_INTERVAL, DEFAULT_REMOTE_DICT_MONITOR_INTERVAL);
+			long interval = TimeUnit.SECONDS.toMillis(seconds);
+			long minInterval = TimeUnit.SECONDS.toMillis(getLongProperty(REMOTE_DICT_MONITOR_MIN_INTERVAL,
+					Math.max(1, seconds / DictSource.DEFAULT_MIN_INTERVAL_DIVISOR)));
+			long maxInterval = TimeUnit.SECONDS.toMillis(getLongProperty(REMOTE_DICT_MONITOR_MAX_INTERVAL,
+					seconds * DictSource.DEFAULT_MAX_INTERVAL_FACTOR));
+			Set<String> locations = new LinkedHashSet<String>(getRemoteExtDictionarys());
+			locations.addAll(getRemoteExtStopWordDictionarys());
+			if (!locations.isEmpty()) {
+				RemoteDictFetcher poller = remotePoller();
+				for (String location : locations) {
+					sources.add(new Monitor(location, poller, interval, minInterval, maxInterval));
+				}
+			}
+		}
+		if (changeLog != null) {
+			sources.add(new DatabaseMonitor(this, changeLog));
+		}
+		return sources;
+	}
+
+	/**
+	 * 注册接收本节点词典修改的监听器
+	 */
+	public static void addUpdateListener(DictUpdateListener listener) {
+		updateListeners.add(listener);
+	}
+
+	public static void removeUpdateListener(DictUpdateListener listener) {
+		updateListeners.remove(listener);
+	}
+
+	/**
+	 * 注册本节点是否轮询远程词典与数据库的条件，没有条件时总是轮询
+	 * 集群同步时其他节点不轮询，只应用主节点分发的修改
+	 */
+	public static void addPollingGate(BooleanSupplier gate) {
+		pollingGates.add(gate);
+	}
+
+	public static void removePollingGate(BooleanSupplier gate) {
+		pollingGates.remove(gate);
+	}
+
+	private static boolean isPolling() {
+		if (pollingGates.isEmpty()) {
+			return true;
+		}
+		for (BooleanSupplier gate : pollingGates) {
+			if (gate.getAsBoolean()) {
+				return true;
 			}
-			logger.info("====================================properties====================================");
-		} catch (IOException e) {
-			logger.error("failed to read file: " + DatabaseMonitor.PATH_JDBC_PROPERTIES, e);
 		}
+		return false;
 	}
 
 	/**
-	 * 加载新词条
+	 * 停止全部词典维护任务，关闭远程词典与数据库的连接，插件关闭（节点停止）时调用
 	 */
-	public static void addWord(String word) {
-		singleton._MainDict.fillSegment(word.trim().toLowerCase().toCharArray());
+	public static void shutdown() {
+		logger.info("---------- Dictionary maintenance shutdown ---------");
+		maintenance.close();
+		RemoteDictFetcher.shutdown();
+		for (DictSource source : dictSources) {
+			source.close();
+		}
 	}
 
 	/**
-	 * 移除（屏蔽）词条
+	 * 本节点词典的初始化进度与当前快照的统计
+	 * @return 字段名到值的有序映射
 	 */
-	public static void disableWord(String word) {
-		singleton._MainDict.disableSegment(word.trim().toLowerCase().toCharArray());
+	public static Map<String, Object> getLoadStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		String state = loadState;
+		stats.put("state", state);
+		if (!LOAD_NOT_STARTED.equals(state)) {
+			long end = loadEndTime;
+			stats.put("elapsed_millis", (end != 0 ? end : System.currentTimeMillis()) - loadStartTime);
+			stats.put("loaded_sources", loadedSources.get());
+			stats.put("loaded_words", loadedWords.get());
+		}
+		if (loadFailure != null) {
+			stats.put("failure", loadFailure);
+		}
+		Dictionary dict = singleton;
+		if (dict != null) {
+			DictSnapshot current = dict.getSnapshot();
+			stats.put("generation", current.getGeneration());
+			stats.put("main_words", current.getMainTrie().size());
+			stats.put("stopwords", current.getTagTrie().size(DictSnapshot.STOPWORD));
+			stats.put("main_compacted_changes", dict._MainCompacted.size());
+			Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+			nodes.put("stopwords", nodeStats(dict._StopWords));
+			nodes.put("quantifiers", nodeStats(dict._QuantifierDict));
+			stats.put("nodes", nodes);
+			Map<String, Object> updates = new LinkedHashMap<String, Object>();
+			updates.put("debounce_millis", dict.updateDebounceMillis);
+			updates.put("triggers", dict.compileTriggers.get());
+			updates.put("coalesced", dict.compileCoalesced.get());
+			updates.put("compiles", dict.compiles.get());
+			updates.put("total_compile_millis", dict.compileTotalMillis.get());
+			updates.put("last_compile_millis", dict.compileLastMillis);
+			updates.put("max_compile_millis", dict.compileMaxMillis);
+			stats.put("updates", updates);
+		}
+		stats.put("maintenance", maintenance.stats());
+		return stats;
 	}
 
 	/**
-	 * 加载新停用词
+	 * 词典树的有效节点与无效节点数，见 {@link DictSegment#countNodes(int[])}
 	 */
-	public static void addStopword(String word) {
-		singleton._StopWords.fillSegment(word.trim().toLowerCase().toCharArray());
+	private static Map<String, Object> nodeStats(DictSegment segment) {
+		int[] counts = new int[2];
+		segment.countNodes(counts);
+		Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+		nodes.put("live", counts[0]);
+		nodes.put("dead", counts[1]);
+		return nodes;
 	}
 
 	/**
-	 * 移除（屏蔽）停用词
+	 * 记录初始化时读入的一个词典来源
 	 */
-	public static void disableStopword(String word) {
-		singleton._StopWords.disableSegment(word.trim().toLowerCase().toCharArray());
+	private void loaded(int words) {
+		if (trackProgress) {
+			loadedSources.incrementAndGet();
+			loadedWords.addAndGet(words);
+		}
 	}
 
-	public String getProperty(String key){
-		if(props!=null){
-			return props.getProperty(key);
+	/**
+	 * 并行加载全部词典
+	 * 各词典在专用的 ForkJoinPool 上同时加载，同一词典的多个文件也并行解析
+	 */
+	private void loadAll() {
+		long start = System.currentTimeMillis();
+		int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), LOADER_MAX_PARALLELISM));
+		ForkJoinPool loader = new ForkJoinPool(parallelism, LoaderThread::new, null, false);
+		try {
+			loader.invoke(ForkJoinTask.adapt(() -> invokeAll(Arrays.<Supplier<Void>>asList(
+					() -> { loadMainDict(); return null; },
+					() -> { loadQuantifierDict(); return null; },
+					() -> { loadStopWordDict(); return null; }))));
+		} finally {
+			loader.shutdown();
 		}
-		return null;
+		logger.info("[Dict Loading] all dictionaries loaded on {} threads, {} ms", parallelism,
+				System.currentTimeMillis() - start);
 	}
+
 	/**
-	 * 词典初始化 由于IK Analyzer的词典采用Dictionary类的静态方法进行词典初始化
-	 * 只有当Dictionary类被实际调用时，才会开始载入词典， 这将延长首次分词操作的时间 该方法提供了一个在应用加载阶段就初始化字典的手段
-	 * 
-	 * @return Dictionary
+	 * 在词典加载线程池内并行执行各任务，不在线程池内（如重新加载词典）时依次执行
+	 * @return 各任务的结果，与任务顺序一致
 	 */
-	public static synchronized void initial(Configuration cfg) {
-		if (singleton == null) {
-			synchronized (Dictionary.class) {
-				if (singleton == null) {
-					logger.info("---------- Dictionary initial start ---------");
-
-					singleton = new Dictionary(cfg);
-					singleton.loadMainDict();
-					singleton.loadSurnameDict();
-					singleton.loadQuantifierDict();
-					singleton.loadSuffixDict();
-					singleton.loadPrepDict();
-					singleton.loadStopWordDict();
-
-					if(cfg.isEnableRemoteDict()){
-						// 建立监控线程
-						for (String location : singleton.getRemoteExtDictionarys()) {
-							// 10 秒是初始延迟可以修改的 60是间隔时间 单位秒
-							pool.scheduleAtFixedRate(new Monitor(location), 10, 60, TimeUnit.SECONDS);
-						}
-						for (String location : singleton.getRemoteExtStopWordDictionarys()) {
-							pool.scheduleAtFixedRate(new Monitor(location), 10, 60, TimeUnit.SECONDS);
-						}
-					}
-					// 建立mysql数据库监控线程
-					pool.scheduleAtFixedRate(new DatabaseMonitor(), 10, Long.parseLong(getSingleton().getProperty(DatabaseMonitor.JDBC_UPDATE_INTERVAL)), TimeUnit.SECONDS);
-				}
+	private static <T> List<T> invokeAll(List<Supplier<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (Thread.currentThread() instanceof LoaderThread) {
+			List<ForkJoinTask<T>> forked = new ArrayList<ForkJoinTask<T>>(tasks.size());
+			for (Supplier<T> task : tasks) {
+				forked.add(ForkJoinTask.adapt(task::get));
+			}
+			ForkJoinTask.invokeAll(forked);
+			for (ForkJoinTask<T> task : forked) {
+				results.add(task.join());
+			}
+		} else {
+			for (Supplier<T> task : tasks) {
+				results.add(task.get());
 			}
 		}
+		return results;
+	}
+
+	/**
+	 * 词典加载线程
+	 * 由节点启动线程（或其创建的加载线程）创建，沿用其访问控制上下文；
+	 * 公共线程池的默认线程没有任何权限，无法读取词典文件
+	 */
+	private static final class LoaderThread extends ForkJoinWorkerThread {
+
+		LoaderThread(ForkJoinPool pool) {
+			super(pool);
+			setName("ik-dict-loader-" + getPoolIndex());
+		}
+	}
+
+	private static char[][] concat(List<List<char[]>> lists) {
+		int size = 0;
+		for (List<char[]> list : lists) {
+			size += list.size();
+		}
+		List<char[]> words = new ArrayList<char[]>(size);
+		for (List<char[]> list : lists) {
+			words.addAll(list);
+		}
+		return words.toArray(new char[size][]);
 	}
 
 	private void walkFileTree(List<String> files, Path path) {
@@ -229,7 +1355,10 @@ public class Dictionary {
 			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
 				@Override
 				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-					files.add(file.toString());
+					// 跳过编译生成的词典文件
+					if (!file.getFileName().toString().endsWith(DictCompiler.EXTENSION)) {
+						files.add(file.toString());
+					}
 					return FileVisitResult.CONTINUE;
 				}
 				@Override
@@ -245,20 +1374,16 @@ public class Dictionary {
 		}
 	}
 
-	private void loadDictFile(DictSegment dict, Path file, boolean critical, String name) {
+	private List<char[]> readDictFile(Path file, boolean critical, String name) {
+		List<char[]> words = new ArrayList<char[]>();
+		loadDictFile(words::add, file, critical, name);
+		loaded(words.size());
+		return words;
+	}
+
+	private void loadDictFile(Consumer<char[]> consumer, Path file, boolean critical, String name) {
 		try (InputStream is = new FileInputStream(file.toFile())) {
-			BufferedReader br = new BufferedReader(
-					new InputStreamReader(is, "UTF-8"), 512);
-			String word = br.readLine();
-			if (word != null) {
-				if (word.startsWith("\uFEFF"))
-					word = word.substring(1);
-				for (; word != null; word = br.readLine()) {
-					word = word.trim();
-					if (word.isEmpty()) continue;
-					dict.fillSegment(word.toCharArray());
-				}
-			}
+			DictCompiler.readWords(is, consumer);
 		} catch (FileNotFoundException e) {
 			logger.error("ik-analyzer: " + name + " not found", e);
 			if (critical) throw new RuntimeException("ik-analyzer: " + name + " not found!!!", e);
@@ -338,6 +1463,13 @@ public class Dictionary {
 	}
 
 
+	/**
+	 * 词典是否已经加载完成，未完成时 {@link #getSingleton()} 抛出异常
+	 */
+	public static boolean isInitialized() {
+		return singleton != null;
+	}
+
 	/**
 	 * 获取词典单子实例
 	 * 
@@ -362,9 +1494,10 @@ public class Dictionary {
 			for (String word : words) {
 				if (word != null) {
 					// 批量加载词条到主内存词典中
-					singleton._MainDict.fillSegment(word.trim().toCharArray());
+					singleton.enableMainWord(word.trim());
 				}
 			}
+			singleton.compileDicts();
 		}
 	}
 
@@ -376,9 +1509,10 @@ public class Dictionary {
 			for (String word : words) {
 				if (word != null) {
 					// 批量屏蔽词条
-					singleton._MainDict.disableSegment(word.trim().toCharArray());
+					singleton.disableMainWord(word.trim());
 				}
 			}
+			singleton.compileDicts();
 		}
 	}
 
@@ -388,7 +1522,7 @@ public class Dictionary {
 	 * @return Hit 匹配结果描述
 	 */
 	public Hit matchInMainDict(char[] charArray) {
-		return singleton._MainDict.match(charArray);
+		return snapshot.matchInMainDict(charArray);
 	}
 
 	/**
@@ -397,7 +1531,7 @@ public class Dictionary {
 	 * @return Hit 匹配结果描述
 	 */
 	public Hit matchInMainDict(char[] charArray, int begin, int length) {
-		return singleton._MainDict.match(charArray, begin, length);
+		return snapshot.matchInMainDict(charArray, begin, length);
 	}
 
 	/**
@@ -406,17 +1540,16 @@ public class Dictionary {
 	 * @return Hit 匹配结果描述
 	 */
 	public Hit matchInQuantifierDict(char[] charArray, int begin, int length) {
-		return singleton._QuantifierDict.match(charArray, begin, length);
+		return snapshot.matchInQuantifierDict(charArray, begin, length);
 	}
 
 	/**
-	 * 从已匹配的Hit中直接取出DictSegment，继续向下匹配
+	 * 从已匹配的Hit中直接取出双数组状态，继续向下匹配
 	 * 
 	 * @return Hit
 	 */
 	public Hit matchWithHit(char[] charArray, int currentIndex, Hit matchedHit) {
-		DictSegment ds = matchedHit.getMatchedDictSegment();
-		return ds.match(charArray, currentIndex, 1, matchedHit);
+		return snapshot.matchWithHit(charArray, currentIndex, matchedHit);
 	}
 
 	/**
@@ -425,203 +1558,661 @@ public class Dictionary {
 	 * @return boolean
 	 */
 	public boolean isStopWord(char[] charArray, int begin, int length) {
-		return singleton._StopWords.match(charArray, begin, length).isMatch();
+		return snapshot.isStopWord(charArray, begin, length);
+	}
+
+	/**
+	 * 检索匹配姓氏词典，首次调用时加载
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInSurnameDict(char[] charArray, int begin, int length) {
+		return _SurnameDict.get().match(charArray, begin, length);
+	}
+
+	/**
+	 * 检索匹配后缀词典，首次调用时加载
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInSuffixDict(char[] charArray, int begin, int length) {
+		return _SuffixDict.get().match(charArray, begin, length);
+	}
+
+	/**
+	 * 检索匹配介词词典，首次调用时加载
+	 * 
+	 * @return Hit 匹配结果描述
+	 */
+	public Hit matchInPrepDict(char[] charArray, int begin, int length) {
+		return _PrepDict.get().match(charArray, begin, length);
 	}
 
 	/**
 	 * 加载主词典及扩展词典
+	 * 主词典文件（没有可用的编译文件时）、各扩展词典文件与远程扩展词典并行读取，再一次编译为基础部分
 	 */
 	private void loadMainDict() {
-		// 建立一个主词典实例
-		_MainDict = new DictSegment((char) 0);
-
-		// 读取主词典文件
+		// 读取主词典文件，优先映射编译好的词典文件
 		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_MAIN);
-		loadDictFile(_MainDict, file, false, "Main Dict");
+		long start = System.currentTimeMillis();
+		DoubleArrayTrie mapped = mapMainBase(file);
+
+		List<Supplier<List<char[]>>> tasks = new ArrayList<Supplier<List<char[]>>>();
+		if (mapped == null) {
+			tasks.add(() -> trackFile(_MainSources, file, "Main Dict"));
+		} else {
+			_MainSources.put(file.toString(), SourceWords.of(mapped));
+			String stamp = stamp(file);
+			if (stamp != null) {
+				_SourceStamps.put(file.toString(), stamp);
+			}
+		}
 		// 加载扩展词典
-		this.loadExtDict();
+		for (String extDictName : getExtDictionarys()) {
+			tasks.add(() -> {
+				logger.info("[Dict Loading] " + extDictName);
+				return trackFile(_MainSources, PathUtils.get(extDictName), "Extra Dict");
+			});
+		}
 		// 加载远程自定义词库
-		this.loadRemoteExtDict();
+		tasks.add(this::loadRemoteExtDict);
+		List<List<char[]>> parsed = invokeAll(tasks);
+		int extSize = 0;
+		for (int i = mapped == null ? 1 : 0; i < parsed.size(); i++) {
+			extSize += parsed.get(i).size();
+		}
+
+		DictionaryEngine base;
+		if (mapped != null && extSize == 0) {
+			base = mapped;
+			if (!DictionaryEngines.DOUBLE_ARRAY.equals(mainEngine)) {
+				// 编译词典文件是双数组，转换为配置的引擎
+				List<char[]> words = new ArrayList<char[]>(mapped.size());
+				mapped.collectWords(words);
+				base = buildEngine(words);
+				logger.info("[Dict Loading] main dict {}: {} words, {} bytes on heap, {} ms", mainEngine, base.size(),
+						base.ramBytesUsed(), System.currentTimeMillis() - start);
+			}
+		} else {
+			// 主词典与扩展词条合并，一次编译为基础部分
+			List<char[]> words = new ArrayList<char[]>();
+			if (mapped != null) {
+				mapped.collectWords(words);
+			}
+			for (List<char[]> list : parsed) {
+				words.addAll(list);
+			}
+			base = buildEngine(words);
+			logger.info("[Dict Loading] main dict with {} ext words: {} words, {} ms", extSize, base.size(),
+					System.currentTimeMillis() - start);
+		}
+		// 在加载线程上预先构建查找结构（如AC自动机）
+		base.prepare();
+		_MainBase = base;
 	}
 
 	/**
-	 * 加载用户配置的扩展词典到主词库表
+	 * 以节点默认的引擎编译词条
 	 */
-	private void loadExtDict() {
-		// 加载扩展词典配置
-		List<String> extDictFiles = getExtDictionarys();
-		if (extDictFiles != null) {
-			for (String extDictName : extDictFiles) {
-				// 读取扩展词典文件
-				logger.info("[Dict Loading] " + extDictName);
-				Path file = PathUtils.get(extDictName);
-				loadDictFile(_MainDict, file, false, "Extra Dict");
+	private DictionaryEngine buildEngine(List<char[]> words) {
+		return DictionaryEngines.get(mainEngine).build(words.toArray(new char[words.size()][]));
+	}
+
+	/**
+	 * 映射主词典文件对应的编译词典文件（main.dic.ikd）
+	 * @return 编译文件不存在、已经过期或者映射失败时返回null，需要解析文本词典
+	 */
+	private DoubleArrayTrie mapMainBase(Path file) {
+		long start = System.currentTimeMillis();
+		try {
+			DoubleArrayTrie trie = DictCompiler.load(file);
+			if (trie != null) {
+				logger.info("[Dict Loading] mapped {}: {} words, {} ms", DictCompiler.compiledPath(file), trie.size(),
+						System.currentTimeMillis() - start);
+				loaded(trie.size());
+				return trie;
 			}
+			logger.info("[Dict Loading] {} is missing or stale, parsing {}", DictCompiler.compiledPath(file), file);
+		} catch (IOException e) {
+			logger.warn("[Dict Loading] failed to map " + DictCompiler.compiledPath(file) + ", parsing " + file, e);
 		}
+		return null;
 	}
 
 	/**
 	 * 加载远程扩展词典到主词库表
 	 */
-	private void loadRemoteExtDict() {
-		List<String> remoteExtDictFiles = getRemoteExtDictionarys();
-		for (String location : remoteExtDictFiles) {
-			logger.info("[Dict Loading] " + location);
-			List<String> lists = getRemoteWords(location);
-			// 如果找不到扩展的字典，则忽略
-			if (lists == null) {
-				logger.error("[Dict Loading] " + location + " load failed");
-				continue;
+	private List<char[]> loadRemoteExtDict() {
+		return loadRemoteWords(getRemoteExtDictionarys(), _MainSources, "Remote Dict");
+	}
+
+	/**
+	 * 取得各远程词典的词条，只记录汇总信息
+	 */
+	private List<char[]> loadRemoteWords(List<String> locations, Map<String, SourceWords> sources, String name) {
+		if (locations.isEmpty()) {
+			return new ArrayList<char[]>();
+		}
+		long start = System.currentTimeMillis();
+		List<char[]> words = new ArrayList<char[]>();
+		for (String location : locations) {
+			List<char[]> fetched = track(sources, location, remoteFetcher().get(location));
+			words.addAll(fetched);
+			loaded(fetched.size());
+		}
+		logger.info("[Dict Loading] {}: {} sources, {} words, {} ms", name, locations.size(), words.size(),
+				System.currentTimeMillis() - start);
+		return words;
+	}
+
+	/**
+	 * 记录一个来源的词条
+	 * @return words
+	 */
+	private static List<char[]> track(Map<String, SourceWords> sources, String source, List<char[]> words) {
+		sources.put(source, SourceWords.of(words));
+		return words;
+	}
+
+	/**
+	 * 记录词典文件的修改时间与大小，重新加载时跳过没有变化的文件
+	 */
+	private List<char[]> trackFile(Map<String, SourceWords> sources, Path file, String name) {
+		String source = file.toString();
+		String stamp = stamp(file);
+		List<char[]> words = track(sources, source, readDictFile(file, false, name));
+		if (stamp != null) {
+			_SourceStamps.put(source, stamp);
+		}
+		return words;
+	}
+
+	private static String stamp(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+		} catch (IOException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 以一个来源（远程词典）的新内容替换其原有的词条，只应用增删的部分
+	 * 修改在合并编译后生效，见 {@link #requestCompile()}
+	 */
+	void updateSource(String source, List<char[]> words) {
+		long start = System.currentTimeMillis();
+		SourceWords after = SourceWords.of(words);
+		int[] main;
+		int[] stop;
+		synchronized (this) {
+			main = _MainSources.containsKey(source) ? applySource(_MainSources, true, source, after) : null;
+			stop = _StopSources.containsKey(source) ? applySource(_StopSources, false, source, after) : null;
+			if (main == null && stop == null) {
+				logger.warn("[Dict Update] {} is not a dictionary source", source);
+				return;
 			}
-			for (String theWord : lists) {
-				if (theWord != null && !"".equals(theWord.trim())) {
-					// 加载扩展词典数据到主内存词典中
-					logger.info(theWord);
-					_MainDict.fillSegment(theWord.trim().toLowerCase().toCharArray());
-				}
+		}
+		requestCompile();
+		logger.info("[Dict Update] {}: main dict +{} -{}, stopwords +{} -{}, {} ms", source,
+				main != null ? main[0] : 0, main != null ? main[1] : 0, stop != null ? stop[0] : 0,
+				stop != null ? stop[1] : 0, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 比较来源的新旧词条，把增删的部分应用到词典上，删除的词仍由其他来源提供时保留
+	 * 监听器收到该来源全部增删的词，包括仍由其他来源提供的
+	 * 调用方持有本对象的锁，之后需要编译词典
+	 * @param after 来源的新内容，为null时该来源已被移除
+	 * @return {新增数目, 删除数目}
+	 */
+	private int[] applySource(Map<String, SourceWords> sources, boolean main, String source, SourceWords after) {
+		SourceWords before = sources.get(source);
+		List<char[]> added = new ArrayList<char[]>();
+		List<char[]> removed = new ArrayList<char[]>();
+		Map<String, Boolean> changes = notifying() ? new LinkedHashMap<String, Boolean>() : null;
+		SourceWords.diff(before != null ? before : SourceWords.EMPTY, after != null ? after : SourceWords.EMPTY,
+				word -> {
+					added.add(word);
+					if (changes != null) {
+						changes.put(new String(word), Boolean.TRUE);
+					}
+				}, word -> {
+					if (changes != null) {
+						changes.put(new String(word), Boolean.FALSE);
+					}
+					if (!providedByOthers(sources, source, word)) {
+						removed.add(word);
+					}
+				});
+		applyChanges(main, added, removed);
+		if (changes != null) {
+			notifySourceUpdate(source, !main, changes);
+		}
+		if (after != null) {
+			sources.put(source, after);
+		} else {
+			sources.remove(source);
+		}
+		return new int[]{added.size(), removed.size()};
+	}
+
+	/**
+	 * 以一个来源的增量更新词典，不比较该来源的全部词条
+	 * 新增的词中去掉该来源已有的，删除的词中去掉该来源没有的
+	 */
+	void updateSource(String source, List<char[]> added, List<char[]> removed) {
+		long start = System.currentTimeMillis();
+		int[] main;
+		int[] stop;
+		synchronized (this) {
+			main = _MainSources.containsKey(source) ? applyDelta(_MainSources, true, source, added, removed) : null;
+			stop = _StopSources.containsKey(source) ? applyDelta(_StopSources, false, source, added, removed) : null;
+			if (main == null && stop == null) {
+				logger.warn("[Dict Update] {} is not a dictionary source", source);
+				return;
 			}
 		}
+		requestCompile();
+		logger.info("[Dict Update] {} delta: main dict +{} -{}, stopwords +{} -{}, {} ms", source,
+				main != null ? main[0] : 0, main != null ? main[1] : 0, stop != null ? stop[0] : 0,
+				stop != null ? stop[1] : 0, System.currentTimeMillis() - start);
+	}
 
+	private int[] applyDelta(Map<String, SourceWords> sources, boolean main, String source, List<char[]> added,
+			List<char[]> removed) {
+		SourceWords before = sources.get(source);
+		Map<String, Boolean> changes = notifying() ? new LinkedHashMap<String, Boolean>() : null;
+		List<char[]> newWords = new ArrayList<char[]>();
+		for (char[] word : added) {
+			if (!before.contains(word)) {
+				newWords.add(word);
+				if (changes != null) {
+					changes.put(new String(word), Boolean.TRUE);
+				}
+			}
+		}
+		List<char[]> goneWords = new ArrayList<char[]>();
+		for (char[] word : removed) {
+			if (!before.contains(word)) {
+				continue;
+			}
+			if (changes != null) {
+				changes.put(new String(word), Boolean.FALSE);
+			}
+			if (!providedByOthers(sources, source, word)) {
+				goneWords.add(word);
+			}
+		}
+		applyChanges(main, newWords, goneWords);
+		if (changes != null) {
+			notifySourceUpdate(source, !main, changes);
+		}
+		sources.put(source, before.apply(added, removed));
+		return new int[]{newWords.size(), goneWords.size()};
 	}
 
-	private static List<String> getRemoteWords(String location) {
-		SpecialPermission.check();
-		return AccessController.doPrivileged((PrivilegedAction<List<String>>) () -> {
-			return getRemoteWordsUnprivileged(location);
-		});
+	/**
+	 * 并入基础部分的运行期修改是否仍需记录，调用方持有本对象的锁
+	 * 删除的词仍在基础部分或由某个来源提供时需要屏蔽；新增的词已由来源提供时不需要
+	 */
+	private boolean isCompactedNeeded(String word, boolean added) {
+		char[] chars = word.toCharArray();
+		boolean provided = providedByOthers(_MainSources, null, chars);
+		return added ? !provided : provided || containsMainBase(word);
 	}
 
 	/**
-	 * 从远程服务器上下载自定义词条
+	 * 移除不再需要的已并入修改，调用方持有本对象的锁
+	 * @return {移除的墓碑数目, 移除的新增数目}
 	 */
-	private static List<String> getRemoteWordsUnprivileged(String location) {
+	private int[] pruneCompacted() {
+		int[] pruned = new int[2];
+		Iterator<Map.Entry<String, Boolean>> it = _MainCompacted.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Boolean> entry = it.next();
+			if (!isCompactedNeeded(entry.getKey(), entry.getValue())) {
+				it.remove();
+				pruned[entry.getValue() ? 1 : 0]++;
+			}
+		}
+		return pruned;
+	}
 
-		List<String> buffer = new ArrayList<String>();
-		RequestConfig rc = RequestConfig.custom().setConnectionRequestTimeout(10 * 1000).setConnectTimeout(10 * 1000)
-				.setSocketTimeout(60 * 1000).build();
-		CloseableHttpClient httpclient = HttpClients.createDefault();
-		CloseableHttpResponse response;
-		BufferedReader in;
-		HttpGet get = new HttpGet(location);
-		get.setConfig(rc);
-		try {
-			response = httpclient.execute(get);
-			if (response.getStatusLine().getStatusCode() == 200) {
-
-				String charset = "UTF-8";
-				// 获取编码，默认为utf-8
-				HttpEntity entity = response.getEntity();
-				if(entity!=null){
-					Header contentType = entity.getContentType();
-					if(contentType!=null&&contentType.getValue()!=null){
-						String typeValue = contentType.getValue();
-						if(typeValue!=null&&typeValue.contains("charset=")){
-							charset = typeValue.substring(typeValue.lastIndexOf("=") + 1);
-						}
-					}
+	private static boolean providedByOthers(Map<String, SourceWords> sources, String source, char[] word) {
+		for (Map.Entry<String, SourceWords> other : sources.entrySet()) {
+			if (!other.getKey().equals(source) && other.getValue().contains(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-					if (entity.getContentLength() > 0) {
-						in = new BufferedReader(new InputStreamReader(entity.getContent(), charset));
-						String line;
-						while ((line = in.readLine()) != null) {
-							buffer.add(line);
-						}
-						in.close();
-						response.close();
-						return buffer;
+	/**
+	 * 把来源增删的词条应用到主词典的来源修改或停止词词典上，运行期修改过的词以运行期修改为准
+	 */
+	private void applyChanges(boolean main, List<char[]> added, List<char[]> removed) {
+		if (main) {
+			for (char[] word : added) {
+				String key = new String(word);
+				if (_MainDelta.containsKey(key)) {
+					continue;
+				}
+				Boolean compacted = _MainCompacted.get(key);
+				if (compacted != null) {
+					// 运行期新增并已并入的词现在由来源提供，不再需要记录；运行期删除的词继续屏蔽
+					if (compacted) {
+						_MainCompacted.remove(key);
+					}
+					continue;
+				}
+				if (!compacting.get() && containsMainBase(key)) {
+					_MainSourceDelta.remove(key);
+				} else {
+					_MainSourceDelta.put(key, Boolean.TRUE);
+				}
+			}
+			for (char[] word : removed) {
+				String key = new String(word);
+				if (_MainDelta.containsKey(key)) {
+					continue;
+				}
+				Boolean compacted = _MainCompacted.get(key);
+				if (compacted != null) {
+					// 已经没有来源提供运行期删除的词，墓碑不再需要；运行期新增的词继续保留
+					if (!compacted) {
+						_MainCompacted.remove(key);
 					}
+					continue;
+				}
+				if (compacting.get() || containsMainBase(key)) {
+					_MainSourceDelta.put(key, Boolean.FALSE);
+				} else {
+					_MainSourceDelta.remove(key);
+				}
 			}
+			mainDictDirty |= !added.isEmpty() || !removed.isEmpty();
+		} else {
+			for (char[] word : added) {
+				String key = new String(word);
+				if (!_StopWordsRuntime.containsKey(key)) {
+					_StopWords.fillSegment(word);
+				}
+			}
+			for (char[] word : removed) {
+				String key = new String(word);
+				if (!_StopWordsRuntime.containsKey(key)) {
+					_StopWords.disableSegment(word);
+				}
+			}
+			stopWordsDirty |= !added.isEmpty() || !removed.isEmpty();
+		}
+	}
+
+	/**
+	 * 本次加载用到的全部远程词典（扩展词典与停止词词典）在首次使用时同时开始下载
+	 */
+	private synchronized RemoteDictFetcher remoteFetcher() {
+		if (remoteFetcher == null) {
+			List<String> locations = new ArrayList<String>(getRemoteExtDictionarys());
+			locations.addAll(getRemoteExtStopWordDictionarys());
+			remoteFetcher = new RemoteDictFetcher(locations, remoteDictCacheDir, remoteDictLoadTimeout,
+					Dictionary::remoteDictChanged);
+		}
+		return remoteFetcher;
+	}
+
+	/**
+	 * 监控远程词典与重新加载时共用的条件请求
+	 */
+	private synchronized RemoteDictFetcher remotePoller() {
+		if (remotePoller == null) {
+			remotePoller = new RemoteDictFetcher(remoteDictCacheDir, Boolean.parseBoolean(getProperty(REMOTE_DICT_DELTA)));
+		}
+		return remotePoller;
+	}
+
+	/**
+	 * 超时的远程词典在后台下载完成且内容有变化，只更新该词典增删的词条
+	 */
+	private static void remoteDictChanged(String location, List<char[]> words) {
+		logger.info("[Remote Dict] {} refreshed, scheduling update", location);
+		try {
+			maintenance.execute(() -> updateRemoteChanged(location, words));
+		} catch (RejectedExecutionException e) {
+			logger.debug("[Remote Dict] maintenance closed, {} not updated", location);
+		}
+	}
+
+	private static void updateRemoteChanged(String location, List<char[]> words) {
+		Dictionary dict = singleton;
+		if (dict != null) {
+			dict.updateSource(location, words);
+		} else if (!LOAD_FAILED.equals(loadState)) {
+			// 仍在初始化，稍后再更新
+			try {
+				maintenance.schedule(() -> updateRemoteChanged(location, words), 1000);
+			} catch (RejectedExecutionException e) {
+				logger.debug("[Remote Dict] maintenance closed, {} not updated", location);
 			}
-			response.close();
-		} catch (IllegalStateException | IOException e) {
-			logger.error("getRemoteWords {} error", e, location);
 		}
-		return buffer;
 	}
 
 	/**
 	 * 加载用户扩展的停止词词典
 	 */
 	private void loadStopWordDict() {
-		// 建立主词典实例
-		_StopWords = new DictSegment((char) 0);
-
+		List<Supplier<List<char[]>>> tasks = new ArrayList<Supplier<List<char[]>>>();
 		// 读取主词典文件
 		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_STOP);
-		loadDictFile(_StopWords, file, false, "Main Stopwords");
+		tasks.add(() -> trackFile(_StopSources, file, "Main Stopwords"));
 
 		// 加载扩展停止词典
-		List<String> extStopWordDictFiles = getExtStopWordDictionarys();
-		if (extStopWordDictFiles != null) {
-			for (String extStopWordDictName : extStopWordDictFiles) {
+		for (String extStopWordDictName : getExtStopWordDictionarys()) {
+			tasks.add(() -> {
 				logger.info("[Dict Loading] " + extStopWordDictName);
-
-				// 读取扩展词典文件
-				file = PathUtils.get(extStopWordDictName);
-				loadDictFile(_StopWords, file, false, "Extra Stopwords");
-			}
+				return trackFile(_StopSources, PathUtils.get(extStopWordDictName), "Extra Stopwords");
+			});
 		}
 
 		// 加载远程停用词典
-		List<String> remoteExtStopWordDictFiles = getRemoteExtStopWordDictionarys();
-		for (String location : remoteExtStopWordDictFiles) {
-			logger.info("[Dict Loading] " + location);
-			List<String> lists = getRemoteWords(location);
-			// 如果找不到扩展的字典，则忽略
-			if (lists == null) {
-				logger.error("[Dict Loading] " + location + " load failed");
-				continue;
-			}
-			for (String theWord : lists) {
-				if (theWord != null && !"".equals(theWord.trim())) {
-					// 加载远程词典数据到主内存中
-					logger.info(theWord);
-					_StopWords.fillSegment(theWord.trim().toLowerCase().toCharArray());
-				}
-			}
-		}
+		tasks.add(this::loadRemoteExtStopWordDict);
+
+		// 建立主词典实例
+		_StopWords = DictSegment.build(concat(invokeAll(tasks)));
+	}
 
+	private List<char[]> loadRemoteExtStopWordDict() {
+		return loadRemoteWords(getRemoteExtStopWordDictionarys(), _StopSources, "Remote Stopwords");
 	}
 
 	/**
 	 * 加载量词词典
 	 */
 	private void loadQuantifierDict() {
-		// 建立一个量词典实例
-		_QuantifierDict = new DictSegment((char) 0);
 		// 读取量词词典文件
 		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_QUANTIFIER);
-		loadDictFile(_QuantifierDict, file, false, "Quantifier");
+		// 建立一个量词典实例
+		_QuantifierDict = DictSegment.build(readDictFile(file, false, "Quantifier").toArray(new char[0][]));
 	}
 
-	private void loadSurnameDict() {
-		DictSegment _SurnameDict = new DictSegment((char) 0);
-		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_SURNAME);
-		loadDictFile(_SurnameDict, file, true, "Surname");
+	/**
+	 * 首次查询时才加载的附属词典
+	 * 没有子分词器查询时不占用启动时间和内存；词典文件缺失时记录错误并视为空词典，不影响启动
+	 */
+	private final class LazyDict {
+
+		private final String path;
+		private final String name;
+		private volatile DictSegment dict;
+
+		LazyDict(String path, String name) {
+			this.path = path;
+			this.name = name;
+		}
+
+		DictSegment get() {
+			DictSegment result = dict;
+			if (result == null) {
+				synchronized (this) {
+					result = dict;
+					if (result == null) {
+						long start = System.currentTimeMillis();
+						Path file = PathUtils.get(getDictRoot(), path);
+						result = DictSegment.build(readDictFile(file, false, name).toArray(new char[0][]));
+						logger.info("[Dict Loading] {} loaded on first use: {} words, {} ms", name, result.size(),
+								System.currentTimeMillis() - start);
+						dict = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * 编译全部词典
+	 */
+	private void compileAll() {
+		publish(compileMain(), compileTags());
+		if (_MainDelta.size() + _MainSourceDelta.size() > mainDeltaMaxSize) {
+			scheduleCompaction();
+		}
 	}
 
-	private void loadSuffixDict() {
-		DictSegment _SuffixDict = new DictSegment((char) 0);
-		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_SUFFIX);
-		loadDictFile(_SuffixDict, file, true, "Suffix");
+	/**
+	 * 插件配置目录下供插件写入的目录（远程词典缓存、数据库修改日志），配置值为相对于插件配置目录的子目录
+	 * 安全策略只允许写入插件配置目录之下（见 plugin-security.policy），绝对路径或指向其外的值在加载时拒绝，
+	 * 不会在启用安全管理器的节点上因无权写入而失效
+	 * @throws IllegalArgumentException 配置值不是插件配置目录下的子目录
+	 */
+	private Path resolveConfSubdir(String key, String defaultDir) {
+		String value = getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return conf_dir.resolve(defaultDir);
+		}
+		Path root = conf_dir.toAbsolutePath().normalize();
+		Path dir = root.resolve(value.trim()).normalize();
+		if (!dir.startsWith(root) || dir.equals(root)) {
+			throw new IllegalArgumentException("[" + key + "] must be a subdirectory of the plugin config directory "
+					+ root + ", got [" + value.trim() + "]");
+		}
+		return dir;
 	}
 
-	private void loadPrepDict() {
-		DictSegment _PrepDict = new DictSegment((char) 0);
-		Path file = PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_PREP);
-		loadDictFile(_PrepDict, file, true, "Preposition");
+	/**
+	 * 数据库修改的本地日志，目录由 db_changelog_dir 指定（插件配置目录下的子目录），默认为 db_changelog
+	 * 日志以数据库地址与查询语句标识来源，两者变化时作废
+	 * @throws IllegalArgumentException db_changelog_dir 不在插件配置目录之下，加载失败而不是每次重启都重新查询数据库的全部修改
+	 */
+	private DbChangeLog openChangeLog() {
+		Path path = resolveConfSubdir(DB_CHANGELOG_DIR, DEFAULT_DB_CHANGELOG_DIR);
+		String source = getProperty(DatabaseMonitor.JDBC_URL) + "\n" + getProperty(DatabaseMonitor.SQL_UPDATE_MAIN_DIC)
+				+ "\n" + getProperty(DatabaseMonitor.SQL_UPDATE_STOPWORD);
+		return new DbChangeLog(path, source);
 	}
 
+	/**
+	 * 重新加载词典：重新读取配置，逐个检查各来源，只应用有变化的来源增删的词条
+	 * 没有变化的词典文件（修改时间与大小相同）不读取，远程词典发送条件请求，新增的来源整体加入，已移除的来源整体删除
+	 * 耗时与内存只与变化的来源有关，与整个词典的大小无关
+	 */
 	void reLoadMainDict() {
 		logger.info("start to reload ik dict.");
-		// 新开一个实例加载词典，减少加载过程对当前词典使用的影响
-		Dictionary tmpDict = new Dictionary(configuration);
-		tmpDict.configuration = getSingleton().configuration;
-		tmpDict.loadMainDict();
-		tmpDict.loadStopWordDict();
-		_MainDict = tmpDict._MainDict;
-		_StopWords = tmpDict._StopWords;
-		logger.info("reload ik dict finished.");
+		long start = System.currentTimeMillis();
+		// 重新读取配置文件，取得当前的各词典来源
+		Dictionary current = new Dictionary(configuration);
+		Map<String, SourceWords> main = changedSources(_MainSources,
+				PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_MAIN), current.getExtDictionarys(),
+				current.getRemoteExtDictionarys(), "Main Dict");
+		Map<String, SourceWords> stop = changedSources(_StopSources,
+				PathUtils.get(getDictRoot(), Dictionary.PATH_DIC_STOP), current.getExtStopWordDictionarys(),
+				current.getRemoteExtStopWordDictionarys(), "Stopwords");
+		int[] counts = new int[4];
+		synchronized (this) {
+			for (Map.Entry<String, SourceWords> entry : main.entrySet()) {
+				int[] diff = applySource(_MainSources, true, entry.getKey(), entry.getValue());
+				counts[0] += diff[0];
+				counts[1] += diff[1];
+			}
+			for (Map.Entry<String, SourceWords> entry : stop.entrySet()) {
+				int[] diff = applySource(_StopSources, false, entry.getKey(), entry.getValue());
+				counts[2] += diff[0];
+				counts[3] += diff[1];
+			}
+			int[] pruned = pruneCompacted();
+			if (pruned[0] + pruned[1] > 0) {
+				logger.info("[Dict Stats] Main Dict: {} tombstones, {} compacted additions pruned after reload",
+						pruned[0], pruned[1]);
+			}
+			compileDicts();
+		}
+		logger.info("reload ik dict finished: {} sources changed, main dict +{} -{}, stopwords +{} -{}, {} ms",
+				main.size() + stop.size(), counts[0], counts[1], counts[2], counts[3],
+				System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 读取有变化的来源的新内容
+	 * @return 来源到新内容的映射，已移除的来源对应null
+	 */
+	private Map<String, SourceWords> changedSources(Map<String, SourceWords> sources, Path mainFile,
+			List<String> extFiles, List<String> remotes, String name) {
+		Map<String, SourceWords> changed = new LinkedHashMap<String, SourceWords>();
+		Set<String> present = new HashSet<String>();
+		List<Path> files = new ArrayList<Path>();
+		files.add(mainFile);
+		for (String extFile : extFiles) {
+			files.add(PathUtils.get(extFile));
+		}
+		for (Path file : files) {
+			String source = file.toString();
+			present.add(source);
+			String stamp = stamp(file);
+			if (stamp != null && sources.containsKey(source) && stamp.equals(_SourceStamps.get(source))) {
+				continue;
+			}
+			logger.info("[Dict Reloading] {}", source);
+			changed.put(source, SourceWords.of(readDictFile(file, false, name)));
+			if (stamp != null) {
+				_SourceStamps.put(source, stamp);
+			} else {
+				_SourceStamps.remove(source);
+			}
+		}
+		List<String> added = new ArrayList<String>();
+		for (String location : remotes) {
+			present.add(location);
+			if (!sources.containsKey(location)) {
+				added.add(location);
+				continue;
+			}
+			RemoteDictFetcher.Download update;
+			try {
+				update = remotePoller().poll(location);
+			} catch (IOException e) {
+				logger.warn("[Dict Reloading] {} not reachable, keeping current words", location);
+				continue;
+			}
+			if (update != null) {
+				changed.put(location, update.isDelta() ? sources.get(location).apply(update.added(), update.removed())
+						: SourceWords.of(update.words()));
+			}
+		}
+		if (!added.isEmpty()) {
+			RemoteDictFetcher fetcher = new RemoteDictFetcher(added, remoteDictCacheDir, remoteDictLoadTimeout,
+					Dictionary::remoteDictChanged);
+			for (String location : added) {
+				changed.put(location, SourceWords.of(fetcher.get(location)));
+			}
+		}
+		for (String source : sources.keySet()) {
+			if (!present.contains(source)) {
+				changed.put(source, null);
+				_SourceStamps.remove(source);
+			}
+		}
+		return changed;
 	}
 
 }
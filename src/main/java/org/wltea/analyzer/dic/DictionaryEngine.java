@@ -0,0 +1,133 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.List;
+
+/**
+ * 词典存储引擎
+ * 只读的词条集合，编译完成后不可修改，可被多个线程无锁并发读取；
+ * 运行期新增、屏蔽的词条由 {@link LayeredTrie} 叠加在其上
+ *
+ * 内置引擎见 {@link DictionaryEngines}；其他引擎实现 {@link Factory}，
+ * 在 META-INF/services/org.wltea.analyzer.dic.DictionaryEngine$Factory 中声明后放入插件目录即可，
+ * 分词器通过 dict_engine 参数选择引擎
+ */
+public interface DictionaryEngine {
+
+	//walk 结果：区间是一个词
+	int WORD = 1;
+	//walk 结果：区间是更长词的前缀
+	int PREFIX = 2;
+
+	/**
+	 * 判断字符区间是否为词典中的词
+	 */
+	boolean contains(char[] charArray, int begin, int length);
+
+	/**
+	 * 从根开始匹配字符区间
+	 * @return {@link #WORD} 与 {@link #PREFIX} 的组合，区间不在词典中时返回0
+	 */
+	int walk(char[] charArray, int begin, int length);
+
+	/**
+	 * 匹配词段
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @return Hit
+	 */
+	default Hit match(char[] charArray, int begin, int length) {
+		return this.match(charArray, begin, length, null);
+	}
+
+	/**
+	 * 匹配词段，searchHit不为空时从其记录的位置继续向下匹配
+	 * 默认实现从 searchHit 的起始位置重新匹配，charArray 须为同一缓冲区；
+	 * 能够记录中间状态的引擎应覆盖此方法
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @param searchHit
+	 * @return Hit
+	 */
+	default Hit match(char[] charArray, int begin, int length, Hit searchHit) {
+		if (searchHit == null) {
+			searchHit = new Hit();
+			searchHit.setBegin(begin);
+		} else {
+			searchHit.setUnmatch();
+		}
+		searchHit.setEnd(begin + length - 1);
+		int wordBegin = searchHit.getBegin();
+		int flags = walk(charArray, wordBegin, begin + length - wordBegin);
+		if ((flags & WORD) != 0) {
+			searchHit.setMatch();
+		}
+		if ((flags & PREFIX) != 0) {
+			searchHit.setPrefix();
+		}
+		return searchHit;
+	}
+
+	/**
+	 * 创建逐字扫描器，扫描器非线程安全
+	 */
+	WordScanner newScanner();
+
+	/**
+	 * 预先构建扫描所需的结构，避免首次分词时等待
+	 */
+	void prepare();
+
+	/**
+	 * 收集全部词条，顺序不定
+	 */
+	void collectWords(List<char[]> words);
+
+	/**
+	 * 词条数目
+	 */
+	int size();
+
+	/**
+	 * 估算占用的堆内存字节数
+	 */
+	long ramBytesUsed();
+
+	/**
+	 * 引擎工厂
+	 */
+	interface Factory {
+
+		/**
+		 * 引擎名称，即 dict_engine 参数的取值
+		 */
+		String name();
+
+		/**
+		 * 由词条编译引擎
+		 * @param words 词条，可以无序、重复
+		 */
+		DictionaryEngine build(char[][] words);
+	}
+}
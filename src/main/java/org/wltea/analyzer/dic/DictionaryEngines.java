@@ -0,0 +1,111 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.Logger;
+import org.wltea.analyzer.help.ESPluginLoggerFactory;
+
+/**
+ * 词典引擎注册表
+ * 内置 double_array（默认）、fst、fst_off_heap 与 dict_segment，
+ * 另外加载插件类路径中以 ServiceLoader 方式声明的 {@link DictionaryEngine.Factory}
+ */
+public final class DictionaryEngines {
+
+	public static final String DOUBLE_ARRAY = "double_array";
+	public static final String FST = "fst";
+	public static final String FST_OFF_HEAP = "fst_off_heap";
+	public static final String DICT_SEGMENT = "dict_segment";
+
+	private static final Logger logger = ESPluginLoggerFactory.getLogger(DictionaryEngines.class.getName());
+
+	private static final Map<String, DictionaryEngine.Factory> factories = loadFactories();
+
+	private DictionaryEngines() {
+	}
+
+	private static Map<String, DictionaryEngine.Factory> loadFactories() {
+		Map<String, DictionaryEngine.Factory> map = new LinkedHashMap<String, DictionaryEngine.Factory>();
+		register(map, new Builtin(DOUBLE_ARRAY, DoubleArrayTrie::build));
+		register(map, new Builtin(FST, words -> FstTrie.build(words, false)));
+		register(map, new Builtin(FST_OFF_HEAP, words -> FstTrie.build(words, true)));
+		register(map, new Builtin(DICT_SEGMENT, DictSegment::build));
+		for (DictionaryEngine.Factory factory : ServiceLoader.load(DictionaryEngine.Factory.class,
+				DictionaryEngines.class.getClassLoader())) {
+			register(map, factory);
+			logger.info("[Dict Engine] loaded {} from {}", factory.name(), factory.getClass().getName());
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	private static void register(Map<String, DictionaryEngine.Factory> map, DictionaryEngine.Factory factory) {
+		if (map.putIfAbsent(factory.name(), factory) != null) {
+			logger.warn("[Dict Engine] duplicate engine {} from {} ignored", factory.name(), factory.getClass().getName());
+		}
+	}
+
+	/**
+	 * 按名称取得引擎工厂
+	 * @throws IllegalArgumentException 没有该名称的引擎
+	 */
+	public static DictionaryEngine.Factory get(String name) {
+		DictionaryEngine.Factory factory = factories.get(name);
+		if (factory == null) {
+			throw new IllegalArgumentException("unknown dict_engine [" + name + "], available: " + factories.keySet());
+		}
+		return factory;
+	}
+
+	/**
+	 * 全部可用的引擎名称
+	 */
+	public static Set<String> names() {
+		return factories.keySet();
+	}
+
+	private static final class Builtin implements DictionaryEngine.Factory {
+
+		private final String name;
+		private final Function<char[][], DictionaryEngine> builder;
+
+		Builtin(String name, Function<char[][], DictionaryEngine> builder) {
+			this.name = name;
+			this.builder = builder;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public DictionaryEngine build(char[][] words) {
+			return builder.apply(words);
+		}
+	}
+}
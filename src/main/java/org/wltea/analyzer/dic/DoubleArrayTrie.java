@@ -0,0 +1,583 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 双数组Trie树（base/check），只读的词典查找结构
+ * 由已加载的词条一次性编译生成，编译完成后不可修改，
+ * 查找过程不创建对象、不对字符装箱，可被多个线程无锁并发读取
+ * 数组既可以位于堆内，也可以是映射自编译词典文件的只读缓冲区，见 {@link DictCompiler}
+ */
+final class DoubleArrayTrie implements DictionaryEngine {
+
+	//根节点状态
+	static final int ROOT = 0;
+	//转移失败
+	static final int NONE = -1;
+
+	//字符取值个数
+	private static final int CHAR_COUNT = 1 << 16;
+	//词条数超过该值时分桶排序，单个排序任务的词条数也以此为限
+	private static final int BUCKET_SORT_THRESHOLD = 1 << 13;
+
+	//状态转移基址，base[s] == 0 表示该状态没有子节点
+	private final IntBuffer base;
+	//父状态校验，check[t] == s 表示 t 是 s 的子状态，未使用的位置为 NONE
+	private final IntBuffer check;
+	//成词标记位图，第 s 位为 1 表示从根到状态 s 的路径是一个词
+	private final LongBuffer words;
+	//词条数目
+	private final int size;
+	//状态数
+	private final int capacity;
+	//由双数组派生的AC自动机，首次使用时构建
+	private volatile AhoCorasick automaton;
+
+	private DoubleArrayTrie(IntBuffer base, IntBuffer check, LongBuffer words, int size) {
+		this.base = base;
+		this.check = check;
+		this.words = words;
+		this.size = size;
+		this.capacity = check.limit();
+	}
+
+	/**
+	 * 由词条列表编译双数组
+	 * @param keys 词条，可以无序、重复
+	 * @return DoubleArrayTrie
+	 */
+	static DoubleArrayTrie build(char[][] keys) {
+		keys = sortUnique(keys);
+		Builder builder = new Builder(keys);
+		builder.build();
+		int states = builder.maxState + 1;
+		return new DoubleArrayTrie(IntBuffer.wrap(Arrays.copyOf(builder.base, states)),
+				IntBuffer.wrap(Arrays.copyOf(builder.check, states)),
+				LongBuffer.wrap(Arrays.copyOf(builder.words, wordsLength(states))), keys.length);
+	}
+
+	/**
+	 * 从缓冲区中读取双数组，数组以视图方式引用缓冲区，不做拷贝
+	 * @param buffer 小端字节序，position处为序列化后的双数组
+	 * @param size 词条数目
+	 * @param states 状态数
+	 * @return DoubleArrayTrie
+	 */
+	static DoubleArrayTrie readFrom(ByteBuffer buffer, int size, int states) {
+		int offset = buffer.position();
+		IntBuffer base = slice(buffer, offset, 4 * states).asIntBuffer();
+		offset += 4 * states;
+		IntBuffer check = slice(buffer, offset, 4 * states).asIntBuffer();
+		offset += 4 * states;
+		LongBuffer words = slice(buffer, offset, 8 * wordsLength(states)).asLongBuffer();
+		return new DoubleArrayTrie(base, check, words, size);
+	}
+
+	/**
+	 * 以小端字节序写出双数组
+	 */
+	void writeTo(ByteBuffer buffer) {
+		for (int i = 0; i < capacity; i++) {
+			buffer.putInt(base.get(i));
+		}
+		for (int i = 0; i < capacity; i++) {
+			buffer.putInt(check.get(i));
+		}
+		for (int i = 0, n = words.limit(); i < n; i++) {
+			buffer.putLong(words.get(i));
+		}
+	}
+
+	/**
+	 * 序列化后的字节数
+	 */
+	long byteSize() {
+		return 8L * capacity + 8L * words.limit();
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.limit(offset + length);
+		dup.position(offset);
+		return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int wordsLength(int states) {
+		return (states >>> 6) + 1;
+	}
+
+	/**
+	 * 状态转移
+	 * @param state 当前状态
+	 * @param c 输入字符
+	 * @return 转移后的状态，失败返回 NONE
+	 */
+	int transition(int state, char c) {
+		int t = base.get(state) + c + 1;
+		if (t < capacity && check.get(t) == state) {
+			return t;
+		}
+		return NONE;
+	}
+
+	/**
+	 * 从根到 state 的路径是否为一个词
+	 */
+	boolean isWord(int state) {
+		return (words.get(state >>> 6) & (1L << state)) != 0;
+	}
+
+	/**
+	 * state 是否还有子节点，即是否为更长词的前缀
+	 */
+	boolean hasChildren(int state) {
+		return base.get(state) != 0;
+	}
+
+	/**
+	 * state 的父状态，根节点及未使用的位置返回 NONE
+	 */
+	int parent(int state) {
+		return state == ROOT ? NONE : check.get(state);
+	}
+
+	/**
+	 * 由父状态转移到 state 的输入字符
+	 */
+	char label(int state) {
+		return (char) (state - base.get(check.get(state)) - 1);
+	}
+
+	/**
+	 * 收集全部词条，顺序不定
+	 * 由每个成词状态沿 check 逐级找到根，还原出词条
+	 * @param words
+	 */
+	@Override
+	public void collectWords(List<char[]> words) {
+		for (int s = 1; s < capacity; s++) {
+			if (check.get(s) == NONE || !isWord(s)) {
+				continue;
+			}
+			int length = 0;
+			for (int t = s; t != ROOT; t = check.get(t)) {
+				length++;
+			}
+			char[] word = new char[length];
+			for (int t = s; t != ROOT; t = check.get(t)) {
+				word[--length] = label(t);
+			}
+			words.add(word);
+		}
+	}
+
+	/**
+	 * 双数组对应的AC自动机
+	 */
+	AhoCorasick automaton() {
+		AhoCorasick ac = automaton;
+		if (ac == null) {
+			synchronized (this) {
+				ac = automaton;
+				if (ac == null) {
+					ac = automaton = new AhoCorasick(this);
+				}
+			}
+		}
+		return ac;
+	}
+
+	@Override
+	public WordScanner newScanner() {
+		return automaton().newScanner();
+	}
+
+	@Override
+	public void prepare() {
+		automaton();
+	}
+
+	/**
+	 * 判断字符区间是否为词典中的词，不创建Hit对象
+	 */
+	@Override
+	public boolean contains(char[] charArray, int begin, int length) {
+		int state = ROOT;
+		for (int i = begin, end = begin + length; i < end; i++) {
+			state = transition(state, charArray[i]);
+			if (state == NONE) {
+				return false;
+			}
+		}
+		return length > 0 && isWord(state);
+	}
+
+	@Override
+	public int walk(char[] charArray, int begin, int length) {
+		int state = ROOT;
+		for (int i = begin, end = begin + length; i < end; i++) {
+			state = transition(state, charArray[i]);
+			if (state == NONE) {
+				return 0;
+			}
+		}
+		return (isWord(state) ? WORD : 0) | (hasChildren(state) ? PREFIX : 0);
+	}
+
+	/**
+	 * 匹配词段
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @return Hit
+	 */
+	@Override
+	public Hit match(char[] charArray, int begin, int length) {
+		return this.match(charArray, begin, length, null);
+	}
+
+	/**
+	 * 匹配词段，searchHit不为空时从其记录的状态继续向下匹配
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @param searchHit
+	 * @return Hit
+	 */
+	@Override
+	public Hit match(char[] charArray, int begin, int length, Hit searchHit) {
+		int state;
+		if (searchHit == null) {
+			searchHit = new Hit();
+			searchHit.setBegin(begin);
+			state = ROOT;
+		} else {
+			searchHit.setUnmatch();
+			state = searchHit.getMatchedState();
+		}
+		searchHit.setEnd(begin);
+
+		for (int i = begin, end = begin + length; i < end; i++) {
+			searchHit.setEnd(i);
+			state = transition(state, charArray[i]);
+			if (state == NONE) {
+				return searchHit;
+			}
+		}
+		if (isWord(state)) {
+			searchHit.setMatch();
+		}
+		if (hasChildren(state)) {
+			searchHit.setPrefix();
+			searchHit.setMatchedState(state);
+		}
+		return searchHit;
+	}
+
+	/**
+	 * 词条数目
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 双数组长度（状态数上限）
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * 估算占用的堆内存字节数，映射自文件的双数组不占用堆内存
+	 */
+	@Override
+	public long ramBytesUsed() {
+		return check.isDirect() ? 0L : byteSize();
+	}
+
+	/**
+	 * 排序并去重
+	 * 词条较多时先按首字符计数排序分桶，各桶再并行比较排序：桶内词条少，比较次数少，且首字符相同
+	 */
+	static char[][] sortUnique(char[][] keys) {
+		if (keys.length < BUCKET_SORT_THRESHOLD) {
+			keys = keys.clone();
+			Arrays.sort(keys, DoubleArrayTrie::compareChars);
+		} else {
+			keys = bucketSort(keys);
+		}
+		int n = 0;
+		for (char[] key : keys) {
+			if (key.length == 0) {
+				continue;
+			}
+			if (n > 0 && Arrays.equals(keys[n - 1], key)) {
+				continue;
+			}
+			keys[n++] = key;
+		}
+		return Arrays.copyOf(keys, n);
+	}
+
+	private static char[][] bucketSort(char[][] keys) {
+		int[] offsets = new int[CHAR_COUNT + 1];
+		for (char[] key : keys) {
+			if (key.length > 0) {
+				offsets[key[0] + 1]++;
+			}
+		}
+		for (int c = 0; c < CHAR_COUNT; c++) {
+			offsets[c + 1] += offsets[c];
+		}
+		char[][] sorted = new char[offsets[CHAR_COUNT]][];
+		int[] next = Arrays.copyOf(offsets, CHAR_COUNT);
+		for (char[] key : keys) {
+			if (key.length > 0) {
+				sorted[next[key[0]]++] = key;
+			}
+		}
+		new BucketSort(sorted, offsets, 0, CHAR_COUNT).invoke();
+		return sorted;
+	}
+
+	/**
+	 * 按词条数对半切分首字符区间，并行排序各桶
+	 */
+	private static final class BucketSort extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final char[][] keys;
+		private final int[] offsets;
+		private final int from;
+		private final int to;
+
+		BucketSort(char[][] keys, int[] offsets, int from, int to) {
+			this.keys = keys;
+			this.offsets = offsets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1 && offsets[to] - offsets[from] > BUCKET_SORT_THRESHOLD) {
+				int half = (offsets[from] + offsets[to]) >>> 1;
+				int mid = from + 1;
+				while (mid < to - 1 && offsets[mid] < half) {
+					mid++;
+				}
+				invokeAll(new BucketSort(keys, offsets, from, mid), new BucketSort(keys, offsets, mid, to));
+				return;
+			}
+			for (int c = from; c < to; c++) {
+				if (offsets[c + 1] - offsets[c] > 1) {
+					Arrays.sort(keys, offsets[c], offsets[c + 1], DoubleArrayTrie::compareChars);
+				}
+			}
+		}
+	}
+
+	static int compareChars(char[] a, char[] b) {
+		int len = Math.min(a.length, b.length);
+		for (int i = 0; i < len; i++) {
+			if (a[i] != b[i]) {
+				return a[i] - b[i];
+			}
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * 双数组构造器
+	 * 按字典序深度优先插入，为每个节点寻找能容纳全部子节点的base，
+	 * 空闲位置用并查集串联，查找时直接跳过已占用的连续区间
+	 */
+	private static final class Builder {
+
+		//子节点数达到该值时按档位记录查找起点
+		private static final int WIDE_NODE = 4;
+
+		private final char[][] keys;
+
+		private int[] base;
+		private int[] check;
+		private long[] words;
+		//free[i] 指向不小于 i 的空闲位置，free[i] == i 表示 i 空闲
+		private int[] free;
+		//各档位下一次查找的起点
+		private final int[] checkPos = new int[32];
+		//已使用的最大状态
+		private int maxState;
+
+		Builder(char[][] keys) {
+			this.keys = keys;
+			int capacity = Math.max(keys.length * 3, 65536 + 2);
+			this.base = new int[capacity];
+			this.check = new int[capacity];
+			this.words = new long[(capacity >>> 6) + 1];
+			this.free = new int[capacity];
+			Arrays.fill(this.check, NONE);
+			for (int i = 0; i < capacity; i++) {
+				free[i] = i;
+			}
+			//根节点占用0号位置
+			occupy(ROOT, ROOT);
+		}
+
+		/**
+		 * 按层（广度优先）插入：子节点多的浅层节点先在稀疏的数组中定位，
+		 * 深层的小节点随后填充剩余的空位
+		 */
+		void build() {
+			//待处理节点队列：状态、词条区间起止、深度
+			int[] queue = new int[4 * 1024];
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = ROOT;
+			queue[tail++] = 0;
+			queue[tail++] = keys.length;
+			queue[tail++] = 0;
+
+			int[] codes = new int[65536];
+			int[] starts = new int[65536 + 1];
+			while (head < tail) {
+				int state = queue[head++];
+				int lo = queue[head++];
+				int hi = queue[head++];
+				int depth = queue[head++];
+
+				if (lo < hi && keys[lo].length == depth) {
+					//有序排列下，恰好等于前缀的词条排在最前
+					words[state >>> 6] |= 1L << state;
+					lo++;
+				}
+				if (lo >= hi) {
+					continue;
+				}
+
+				//收集子节点的字符以及对应的词条区间
+				int n = 0;
+				for (int i = lo; i < hi; i++) {
+					int code = keys[i][depth] + 1;
+					if (n == 0 || codes[n - 1] != code) {
+						codes[n] = code;
+						starts[n] = i;
+						n++;
+					}
+				}
+				starts[n] = hi;
+
+				int begin = findBase(codes, n);
+				base[state] = begin;
+				if (tail + 4 * n > queue.length) {
+					//压缩已处理的部分
+					System.arraycopy(queue, head, queue, 0, tail - head);
+					tail -= head;
+					head = 0;
+					if (tail + 4 * n > queue.length) {
+						queue = Arrays.copyOf(queue, Math.max(queue.length * 2, tail + 4 * n));
+					}
+				}
+				for (int i = 0; i < n; i++) {
+					int t = begin + codes[i];
+					occupy(t, state);
+					queue[tail++] = t;
+					queue[tail++] = starts[i];
+					queue[tail++] = starts[i + 1];
+					queue[tail++] = depth + 1;
+				}
+			}
+		}
+
+		/**
+		 * 寻找使全部子节点位置都空闲的base，base至少为1
+		 * 子节点较多的节点很难在已经稠密的区间里找到位置，按子节点数分档，
+		 * 每档从上一次成功的位置继续向后查找，避免反复扫描稠密区间
+		 */
+		private int findBase(int[] codes, int n) {
+			int level = 31 - Integer.numberOfLeadingZeros(n);
+			boolean wide = n >= WIDE_NODE;
+			int pos = wide ? Math.max(codes[0], checkPos[level]) : codes[0];
+			outer:
+			while (true) {
+				pos = nextFree(pos + 1);
+				int begin = pos - codes[0];
+				ensureCapacity(begin + codes[n - 1] + 2);
+				for (int i = 1; i < n; i++) {
+					if (check[begin + codes[i]] != NONE) {
+						continue outer;
+					}
+				}
+				if (wide) {
+					checkPos[level] = pos;
+				}
+				return begin;
+			}
+		}
+
+		private void occupy(int t, int parent) {
+			ensureCapacity(t + 2);
+			check[t] = parent;
+			free[t] = t + 1;
+			if (t > maxState) {
+				maxState = t;
+			}
+		}
+
+		private int nextFree(int i) {
+			ensureCapacity(i + 1);
+			while (free[i] != i) {
+				int next = free[free[i]];
+				free[i] = next;
+				i = next;
+				ensureCapacity(i + 1);
+			}
+			return i;
+		}
+
+		private void ensureCapacity(int size) {
+			if (size <= check.length) {
+				return;
+			}
+			int capacity = Math.max(size, check.length + (check.length >> 1));
+			int old = check.length;
+			base = Arrays.copyOf(base, capacity);
+			check = Arrays.copyOf(check, capacity);
+			Arrays.fill(check, old, capacity, NONE);
+			words = Arrays.copyOf(words, (capacity >>> 6) + 1);
+			free = Arrays.copyOf(free, capacity);
+			for (int i = old; i < capacity; i++) {
+				free[i] = i;
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersIndexInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.IntsRefFSTEnum;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * 基于 Lucene FST 的词典
+ * 有限状态转换器同时共享词条的前缀与后缀，内存占用远小于双数组，代价是逐字转移稍慢；
+ * 适合内存紧张的节点。FST 也可以放在堆外（直接内存），进一步减少堆占用
+ */
+final class FstTrie implements DictionaryEngine {
+
+	private final FST<Object> fst;
+	//根节点，只读，可被多个线程共享
+	private final FST.Arc<Object> root;
+	//词条数目
+	private final int size;
+
+	private FstTrie(FST<Object> fst, int size) {
+		this.fst = fst;
+		this.root = fst != null ? fst.getFirstArc(new FST.Arc<Object>()) : null;
+		this.size = size;
+	}
+
+	/**
+	 * 由词条编译FST
+	 * @param keys 词条，可以无序、重复
+	 * @param offHeap 是否把编译结果放到堆外
+	 */
+	static FstTrie build(char[][] keys, boolean offHeap) {
+		char[][] sorted = DoubleArrayTrie.sortUnique(keys);
+		NoOutputs outputs = NoOutputs.getSingleton();
+		Builder<Object> builder = new Builder<Object>(FST.INPUT_TYPE.BYTE2, outputs);
+		IntsRefBuilder scratch = new IntsRefBuilder();
+		try {
+			for (char[] key : sorted) {
+				builder.add(Util.toUTF16(CharBuffer.wrap(key), scratch), outputs.getNoOutput());
+			}
+			FST<Object> fst = builder.finish();
+			if (fst != null && offHeap) {
+				fst = moveOffHeap(fst);
+			}
+			return new FstTrie(fst, sorted.length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 序列化后拷贝到直接内存，以堆外存储重新打开
+	 */
+	private static FST<Object> moveOffHeap(FST<Object> fst) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		fst.save(new OutputStreamDataOutput(bytes));
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.size());
+		direct.put(bytes.toByteArray());
+		direct.flip();
+		ByteBuffersDataInput in = new ByteBuffersDataInput(Collections.singletonList(direct.asReadOnlyBuffer()));
+		return new FST<Object>(new ByteBuffersIndexInput(in, "ik main dict fst"), NoOutputs.getSingleton(),
+				new OffHeapFSTStore());
+	}
+
+	@Override
+	public boolean contains(char[] charArray, int begin, int length) {
+		return (walk(charArray, begin, length) & WORD) != 0;
+	}
+
+	@Override
+	public int walk(char[] charArray, int begin, int length) {
+		if (fst == null) {
+			return 0;
+		}
+		try {
+			FST.BytesReader reader = fst.getBytesReader();
+			FST.Arc<Object> arc = new FST.Arc<Object>().copyFrom(root);
+			for (int i = begin, end = begin + length; i < end; i++) {
+				if (fst.findTargetArc(charArray[i], arc, arc, reader) == null) {
+					return 0;
+				}
+			}
+			if (length == 0) {
+				return PREFIX;
+			}
+			return (arc.isFinal() ? WORD : 0) | (FST.targetHasArcs(arc) ? PREFIX : 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public WordScanner newScanner() {
+		return new Scanner();
+	}
+
+	@Override
+	public void prepare() {
+	}
+
+	@Override
+	public void collectWords(List<char[]> words) {
+		if (fst == null) {
+			return;
+		}
+		try {
+			IntsRefFSTEnum<Object> fstEnum = new IntsRefFSTEnum<Object>(fst);
+			for (IntsRefFSTEnum.InputOutput<Object> io; (io = fstEnum.next()) != null; ) {
+				IntsRef input = io.input;
+				char[] word = new char[input.length];
+				for (int i = 0; i < input.length; i++) {
+					word[i] = (char) input.ints[input.offset + i];
+				}
+				words.add(word);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return fst != null ? fst.ramBytesUsed() : 0L;
+	}
+
+	/**
+	 * FST没有失败指针，扫描器为每个尚未结束的前缀保留一条弧，
+	 * 每读入一个字符把它们各向下转移一次，并从根开始一个新的前缀
+	 */
+	private final class Scanner implements WordScanner {
+
+		private final FST.BytesReader reader = fst != null ? fst.getBytesReader() : null;
+		//尚未结束的前缀，按起始位置排列，即由长到短
+		@SuppressWarnings("unchecked")
+		private FST.Arc<Object>[] arcs = new FST.Arc[8];
+		private int[] lengths = new int[8];
+		@SuppressWarnings("unchecked")
+		private FST.Arc<Object>[] nextArcs = new FST.Arc[8];
+		private int[] nextLengths = new int[8];
+		private int count;
+
+		//以当前字符结尾的词长，由长到短
+		private int[] words = new int[8];
+		private int wordCount;
+		private int wordIndex;
+
+		@Override
+		public void next(char c) {
+			wordCount = 0;
+			wordIndex = 0;
+			if (fst == null) {
+				return;
+			}
+			int n = 0;
+			try {
+				for (int i = 0; i < count; i++) {
+					n = step(arcs[i], lengths[i], c, n);
+				}
+				n = step(root, 0, c, n);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			FST.Arc<Object>[] a = arcs;
+			arcs = nextArcs;
+			nextArcs = a;
+			int[] l = lengths;
+			lengths = nextLengths;
+			nextLengths = l;
+			count = n;
+		}
+
+		/**
+		 * 由 from 沿字符 c 转移，成词时记录词长，仍有子节点时保留为第 n 个前缀
+		 * @return 保留的前缀数
+		 */
+		private int step(FST.Arc<Object> from, int length, char c, int n) throws IOException {
+			if (n == nextArcs.length) {
+				nextArcs = Arrays.copyOf(nextArcs, n * 2);
+				nextLengths = Arrays.copyOf(nextLengths, n * 2);
+				arcs = Arrays.copyOf(arcs, n * 2);
+				lengths = Arrays.copyOf(lengths, n * 2);
+			}
+			FST.Arc<Object> arc = nextArcs[n];
+			if (arc == null) {
+				arc = nextArcs[n] = new FST.Arc<Object>();
+			}
+			if (fst.findTargetArc(c, from, arc, reader) == null) {
+				return n;
+			}
+			if (arc.isFinal()) {
+				if (wordCount == words.length) {
+					words = Arrays.copyOf(words, wordCount * 2);
+				}
+				words[wordCount++] = length + 1;
+			}
+			if (FST.targetHasArcs(arc)) {
+				nextLengths[n] = length + 1;
+				return n + 1;
+			}
+			return n;
+		}
+
+		@Override
+		public int nextWord() {
+			return wordIndex < wordCount ? words[wordIndex++] : 0;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return count > 0;
+		}
+
+		@Override
+		public void reset() {
+			count = 0;
+			wordCount = 0;
+			wordIndex = 0;
+		}
+	}
+}
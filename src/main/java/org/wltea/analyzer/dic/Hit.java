@@ -42,6 +42,13 @@ public class Hit {
 	
 	//记录词典匹配过程中，当前匹配到的词典分支节点
 	private DictSegment matchedDictSegment; 
+	//记录双数组匹配过程中，当前匹配到的词典及基础层、扩展层的状态
+	private LayeredTrie matchedTrie;
+	private int matchedState;
+	private int matchedExtState;
+	//记录类别词典匹配过程中，当前匹配到的类别词典及所匹配的类别
+	private TagTrie matchedTags;
+	private int matchedFlag;
 	/*
 	 * 词段开始位置
 	 */
@@ -98,6 +105,43 @@ public class Hit {
 		this.matchedDictSegment = matchedDictSegment;
 	}
 	
+	LayeredTrie getMatchedTrie() {
+		return matchedTrie;
+	}
+
+	void setMatchedTrie(LayeredTrie matchedTrie) {
+		this.matchedTrie = matchedTrie;
+	}
+
+	int getMatchedState() {
+		return matchedState;
+	}
+
+	void setMatchedState(int matchedState) {
+		this.matchedState = matchedState;
+	}
+
+	int getMatchedExtState() {
+		return matchedExtState;
+	}
+
+	void setMatchedExtState(int matchedExtState) {
+		this.matchedExtState = matchedExtState;
+	}
+
+	TagTrie getMatchedTags() {
+		return matchedTags;
+	}
+
+	int getMatchedFlag() {
+		return matchedFlag;
+	}
+
+	void setMatchedTags(TagTrie matchedTags, int matchedFlag) {
+		this.matchedTags = matchedTags;
+		this.matchedFlag = matchedFlag;
+	}
+
 	public int getBegin() {
 		return begin;
 	}
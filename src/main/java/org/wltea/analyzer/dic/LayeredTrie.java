@@ -0,0 +1,190 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import static org.wltea.analyzer.dic.DoubleArrayTrie.NONE;
+import static org.wltea.analyzer.dic.DoubleArrayTrie.ROOT;
+
+/**
+ * 分层词典
+ * 只读的基础词典（可能映射自编译词典文件）之上叠加扩展词条，再减去被屏蔽的词条：
+ * 一个词成立，当且仅当它在扩展词条中，或者在基础词典中且没有被屏蔽
+ * 基础词典可以是任意 {@link DictionaryEngine}，双数组时逐字转移，其他引擎由词的起始位置重新匹配
+ */
+final class LayeredTrie {
+
+	//基础词典
+	private final DictionaryEngine base;
+	//基础词典为双数组时的同一对象，否则为null
+	private final DoubleArrayTrie datBase;
+	//扩展词条，可以为空
+	private final DoubleArrayTrie ext;
+	//被屏蔽的词条，可以为空
+	private final DoubleArrayTrie disabled;
+
+	LayeredTrie(DictionaryEngine base) {
+		this(base, null, null);
+	}
+
+	LayeredTrie(DictionaryEngine base, DoubleArrayTrie ext, DoubleArrayTrie disabled) {
+		this.base = base;
+		this.datBase = base instanceof DoubleArrayTrie ? (DoubleArrayTrie) base : null;
+		this.ext = ext != null && ext.size() > 0 ? ext : null;
+		this.disabled = disabled != null && disabled.size() > 0 ? disabled : null;
+	}
+
+	/**
+	 * 判断字符区间是否为词典中的词，不创建Hit对象
+	 */
+	boolean contains(char[] charArray, int begin, int length) {
+		if (ext != null && ext.contains(charArray, begin, length)) {
+			return true;
+		}
+		return base.contains(charArray, begin, length) && !isDisabled(charArray, begin, length);
+	}
+
+	/**
+	 * 匹配词段
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @return Hit
+	 */
+	Hit match(char[] charArray, int begin, int length) {
+		return this.match(charArray, begin, length, null);
+	}
+
+	/**
+	 * 匹配词段，searchHit不为空时从其记录的各层状态继续向下匹配
+	 * 基础词典不是双数组时，从 searchHit 的起始位置重新匹配，charArray 须为同一缓冲区
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @param searchHit
+	 * @return Hit
+	 */
+	Hit match(char[] charArray, int begin, int length, Hit searchHit) {
+		int baseState;
+		int extState;
+		if (searchHit == null) {
+			searchHit = new Hit();
+			searchHit.setBegin(begin);
+			baseState = ROOT;
+			extState = ext != null ? ROOT : NONE;
+		} else {
+			searchHit.setUnmatch();
+			baseState = searchHit.getMatchedState();
+			extState = searchHit.getMatchedExtState();
+		}
+		searchHit.setEnd(begin);
+
+		for (int i = begin, end = begin + length; i < end; i++) {
+			searchHit.setEnd(i);
+			if (baseState != NONE && datBase != null) {
+				baseState = datBase.transition(baseState, charArray[i]);
+			}
+			if (extState != NONE) {
+				extState = ext.transition(extState, charArray[i]);
+			}
+			if (baseState == NONE && extState == NONE) {
+				return searchHit;
+			}
+		}
+
+		int wordBegin = searchHit.getBegin();
+		int wordLength = searchHit.getEnd() - wordBegin + 1;
+		boolean baseWord = false;
+		if (baseState != NONE) {
+			if (datBase != null) {
+				baseWord = datBase.isWord(baseState);
+				if (!datBase.hasChildren(baseState)) {
+					baseState = NONE;
+				}
+			} else {
+				int flags = base.walk(charArray, wordBegin, wordLength);
+				baseWord = (flags & DictionaryEngine.WORD) != 0;
+				if ((flags & DictionaryEngine.PREFIX) == 0) {
+					baseState = NONE;
+				}
+			}
+		}
+
+		if (extState != NONE && ext.isWord(extState)) {
+			searchHit.setMatch();
+		} else if (baseWord && !isDisabled(charArray, wordBegin, wordLength)) {
+			searchHit.setMatch();
+		}
+
+		//只保留还能继续向下匹配的层
+		if (extState != NONE && !ext.hasChildren(extState)) {
+			extState = NONE;
+		}
+		if (baseState != NONE || extState != NONE) {
+			searchHit.setPrefix();
+			searchHit.setMatchedTrie(this);
+			searchHit.setMatchedState(baseState);
+			searchHit.setMatchedExtState(extState);
+		}
+		return searchHit;
+	}
+
+	private boolean isDisabled(char[] charArray, int begin, int length) {
+		return disabled != null && disabled.contains(charArray, begin, length);
+	}
+
+	/**
+	 * 预先构建各层的AC自动机，避免首次分词时等待
+	 */
+	void buildAutomata() {
+		base.prepare();
+		if (ext != null) {
+			ext.automaton();
+		}
+		if (disabled != null) {
+			disabled.automaton();
+		}
+	}
+
+	DictionaryEngine base() {
+		return base;
+	}
+
+	/**
+	 * 扩展词条，没有时为null
+	 */
+	DoubleArrayTrie ext() {
+		return ext;
+	}
+
+	/**
+	 * 被屏蔽的词条，没有时为null
+	 */
+	DoubleArrayTrie disabled() {
+		return disabled;
+	}
+
+	/**
+	 * 词条数目（基础词典与扩展词条之和，未扣除屏蔽词）
+	 */
+	int size() {
+		return base.size() + (ext != null ? ext.size() : 0);
+	}
+}
@@ -0,0 +1,303 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+import org.wltea.analyzer.help.ESPluginLoggerFactory;
+
+/**
+ * 词典维护任务（远程词典监控、数据库监控、合并编译、后台合并）的调度器
+ * 定时线程只负责计时，任务在有上限的工作线程上执行，一个来源请求阻塞时不影响其他来源；
+ * 每个周期任务在上次执行结束后按自己的间隔（加随机抖动）安排下一次，失败后按指数退避延长间隔；
+ * 间隔可以自适应：发现变化时减半直到最小间隔，没有变化时增加一半直到最大间隔；
+ * 插件关闭时停止全部任务
+ */
+final class MaintenanceScheduler {
+
+	private static final Logger logger = ESPluginLoggerFactory.getLogger(MaintenanceScheduler.class.getName());
+
+	// 关闭时等待进行中的任务结束的最长时间
+	private static final long CLOSE_TIMEOUT_MILLIS = 10 * 1000;
+
+	// 变化频率的统计窗口：按指数衰减计数，约等于最近一小时内发现变化的次数
+	private static final long CHANGE_RATE_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	/**
+	 * 周期执行的维护任务，抛出异常视为失败
+	 */
+	interface Task {
+
+		/**
+		 * @return 本次是否发现了变化，用于调整自适应间隔
+		 */
+		boolean execute() throws Exception;
+	}
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	private final ThreadPoolExecutor workers;
+
+	private final Map<String, Periodic> periodics = new ConcurrentHashMap<String, Periodic>();
+
+	private volatile boolean closed;
+
+	MaintenanceScheduler(int workerThreads) {
+		this.timer = new ScheduledThreadPoolExecutor(1, threadFactory("ik-dict-timer"));
+		this.timer.setRemoveOnCancelPolicy(true);
+		this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), threadFactory("ik-dict-maintenance"));
+		this.workers.allowCoreThreadTimeOut(true);
+	}
+
+	private static ThreadFactory threadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * 按固定间隔周期执行任务
+	 * @param name 任务名称，用于日志与统计
+	 * @param jitter 间隔的随机抖动比例（0 到 1），避免多个节点、多个来源同时请求
+	 * @param maxBackoffMillis 连续失败时间隔翻倍的上限
+	 */
+	void schedule(String name, Task task, long initialDelayMillis, long intervalMillis, double jitter,
+			long maxBackoffMillis) {
+		schedule(name, task, initialDelayMillis, intervalMillis, intervalMillis, intervalMillis, jitter, maxBackoffMillis);
+	}
+
+	/**
+	 * 按自适应间隔周期执行任务：从 intervalMillis 开始，发现变化时减半（不小于 minIntervalMillis），
+	 * 没有变化时增加一半（不大于 maxIntervalMillis）
+	 * @param name 任务名称，用于日志与统计
+	 * @param jitter 间隔的随机抖动比例（0 到 1），避免多个节点、多个来源同时请求
+	 * @param maxBackoffMillis 连续失败时间隔翻倍的上限
+	 */
+	void schedule(String name, Task task, long initialDelayMillis, long intervalMillis, long minIntervalMillis,
+			long maxIntervalMillis, double jitter, long maxBackoffMillis) {
+		// 最小间隔不大于 0 时不缩短
+		long min = minIntervalMillis > 0 ? Math.min(minIntervalMillis, intervalMillis) : intervalMillis;
+		long max = Math.max(intervalMillis, maxIntervalMillis);
+		Periodic periodic = new Periodic(name, task, intervalMillis, min, max, jitter, Math.max(max, maxBackoffMillis));
+		periodics.put(name, periodic);
+		dispatch(periodic, jittered(initialDelayMillis, jitter));
+	}
+
+	/**
+	 * 延迟后在工作线程上执行一次
+	 * @throws RejectedExecutionException 已经关闭
+	 */
+	void schedule(Runnable command, long delayMillis) {
+		dispatch(command, delayMillis);
+	}
+
+	/**
+	 * 在工作线程上执行一次
+	 * @throws RejectedExecutionException 已经关闭
+	 */
+	void execute(Runnable command) {
+		if (closed) {
+			throw new RejectedExecutionException("ik dict maintenance is closed");
+		}
+		workers.execute(command);
+	}
+
+	private void dispatch(Runnable command, long delayMillis) {
+		if (closed) {
+			throw new RejectedExecutionException("ik dict maintenance is closed");
+		}
+		timer.schedule(() -> {
+			try {
+				execute(command);
+			} catch (RejectedExecutionException e) {
+				logger.debug("[Dict Maintenance] closed, task dropped");
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static long jittered(long millis, double jitter) {
+		if (jitter <= 0 || millis <= 0) {
+			return millis;
+		}
+		long spread = (long) (millis * Math.min(jitter, 1.0));
+		return millis - spread + (spread > 0 ? ThreadLocalRandom.current().nextLong(spread * 2 + 1) : 0);
+	}
+
+	/**
+	 * 停止全部任务，等待进行中的任务结束
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		timer.shutdownNow();
+		workers.shutdown();
+		try {
+			if (!workers.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				logger.warn("[Dict Maintenance] tasks still running after {} ms, interrupting", CLOSE_TIMEOUT_MILLIS);
+				workers.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		logger.info("[Dict Maintenance] closed");
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 各周期任务的执行统计
+	 * @return 任务名称到统计的有序映射
+	 */
+	Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		for (Periodic periodic : periodics.values()) {
+			Map<String, Object> task = new LinkedHashMap<String, Object>();
+			task.put("runs", periodic.runs);
+			task.put("changes", periodic.changes);
+			task.put("change_rate_per_hour", periodic.changeRate());
+			task.put("interval_millis", periodic.intervalMillis);
+			task.put("min_interval_millis", periodic.minIntervalMillis);
+			task.put("max_interval_millis", periodic.maxIntervalMillis);
+			task.put("failures", periodic.failures);
+			task.put("consecutive_failures", periodic.consecutiveFailures);
+			task.put("last_run_millis", periodic.lastRunMillis);
+			task.put("next_delay_millis", periodic.nextDelayMillis);
+			stats.put(periodic.name, task);
+		}
+		return stats;
+	}
+
+	/**
+	 * 周期任务：执行结束后才安排下一次，同一任务不会并发执行
+	 */
+	private final class Periodic implements Runnable {
+
+		private final String name;
+		private final Task task;
+		private final long minIntervalMillis;
+		private final long maxIntervalMillis;
+		private final double jitter;
+		private final long maxBackoffMillis;
+
+		// 当前间隔，随是否发现变化调整
+		private volatile long intervalMillis;
+		private volatile long runs;
+		private volatile long changes;
+		// 按指数衰减的变化计数及其更新时间
+		private volatile double changeCount;
+		private volatile long changeCountTime;
+		private volatile long failures;
+		private volatile int consecutiveFailures;
+		private volatile long lastRunMillis;
+		private volatile long nextDelayMillis;
+
+		Periodic(String name, Task task, long intervalMillis, long minIntervalMillis, long maxIntervalMillis,
+				double jitter, long maxBackoffMillis) {
+			this.name = name;
+			this.task = task;
+			this.intervalMillis = intervalMillis;
+			this.minIntervalMillis = minIntervalMillis;
+			this.maxIntervalMillis = maxIntervalMillis;
+			this.jitter = jitter;
+			this.maxBackoffMillis = maxBackoffMillis;
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			try {
+				adapt(task.execute());
+				consecutiveFailures = 0;
+			} catch (Exception e) {
+				failures++;
+				consecutiveFailures++;
+				logger.warn("[Dict Maintenance] {} failed ({} in a row): {}", name, consecutiveFailures, e.toString());
+			} finally {
+				runs++;
+				lastRunMillis = System.currentTimeMillis() - start;
+				reschedule();
+			}
+		}
+
+		/**
+		 * 发现变化时间隔减半，没有变化时增加一半，失败不影响间隔（由退避处理）
+		 */
+		private void adapt(boolean changed) {
+			long now = System.currentTimeMillis();
+			changeCount = decayedChangeCount(now) + (changed ? 1 : 0);
+			changeCountTime = now;
+			if (changed) {
+				changes++;
+				intervalMillis = Math.max(minIntervalMillis, intervalMillis / 2);
+			} else {
+				intervalMillis = Math.min(maxIntervalMillis, intervalMillis + intervalMillis / 2);
+			}
+		}
+
+		private double decayedChangeCount(long now) {
+			long last = changeCountTime;
+			if (last == 0) {
+				return 0;
+			}
+			return changeCount * Math.exp(-(double) (now - last) / CHANGE_RATE_WINDOW_MILLIS);
+		}
+
+		/**
+		 * 最近约一小时内发现变化的次数
+		 */
+		double changeRate() {
+			return Math.round(decayedChangeCount(System.currentTimeMillis()) * 100) / 100.0;
+		}
+
+		private void reschedule() {
+			long delay = intervalMillis;
+			for (int i = 0; i < consecutiveFailures && delay < maxBackoffMillis; i++) {
+				delay *= 2;
+			}
+			nextDelayMillis = jittered(Math.min(delay, maxBackoffMillis), jitter);
+			try {
+				dispatch(this, nextDelayMillis);
+			} catch (RejectedExecutionException e) {
+				logger.debug("[Dict Maintenance] closed, {} stopped", name);
+			}
+		}
+	}
+}
@@ -1,111 +1,80 @@
 package org.wltea.analyzer.dic;
 
 import java.io.IOException;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpHead;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.logging.log4j.Logger;
-import org.elasticsearch.SpecialPermission;
-import org.wltea.analyzer.help.ESPluginLoggerFactory;
+public class Monitor implements DictSource {
 
-public class Monitor implements Runnable {
-
-	private static final Logger logger = ESPluginLoggerFactory.getLogger(Monitor.class.getName());
-
-	private static CloseableHttpClient httpclient = HttpClients.createDefault();
 	/*
-	 * 上次更改时间
+	 * 请求地址
 	 */
-	private String last_modified;
+	private String location;
+
 	/*
-	 * 资源属性
+	 * 发送条件请求，保存各词典的 Last-Modified、ETag
 	 */
-	private String eTags;
+	private final RemoteDictFetcher fetcher;
 
 	/*
-	 * 请求地址
+	 * 初始、最小、最大检查间隔，单位毫秒
 	 */
-	private String location;
+	private final long interval;
+	private final long minInterval;
+	private final long maxInterval;
 
-	public Monitor(String location) {
+	Monitor(String location, RemoteDictFetcher fetcher, long interval, long minInterval, long maxInterval) {
 		this.location = location;
-		this.last_modified = null;
-		this.eTags = null;
+		this.fetcher = fetcher;
+		this.interval = interval;
+		this.minInterval = minInterval;
+		this.maxInterval = maxInterval;
 	}
 
-	public void run() {
-		SpecialPermission.check();
-		AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
-			this.runUnprivileged();
-			return null;
-		});
+	@Override
+	public String name() {
+		return "remote " + location;
 	}
 
-	/**
-	 * 监控流程：
-	 *  ①向词库服务器发送Head请求
-	 *  ②从响应中获取Last-Modify、ETags字段值，判断是否变化
-	 *  ③如果未变化，休眠1min，返回第①步
-	 * 	④如果有变化，重新加载词典
-	 *  ⑤休眠1min，返回第①步
-	 */
-
-	public void runUnprivileged() {
+	@Override
+	public long interval() {
+		return interval;
+	}
 
-		//超时设置
-		RequestConfig rc = RequestConfig.custom().setConnectionRequestTimeout(10*1000)
-				.setConnectTimeout(10*1000).setSocketTimeout(15*1000).build();
+	@Override
+	public long minInterval() {
+		return minInterval;
+	}
 
-		HttpHead head = new HttpHead(location);
-		head.setConfig(rc);
+	@Override
+	public long maxInterval() {
+		return maxInterval;
+	}
 
-		//设置请求头
-		if (last_modified != null) {
-			head.setHeader("If-Modified-Since", last_modified);
+	/**
+	 * 监控流程（由 {@link MaintenanceScheduler} 按 remote_dict_monitor_interval 周期执行）：
+	 *  ①向词库服务器发送带 If-Modified-Since、If-None-Match 的GET请求
+	 *  ②返回304（未修改）时不做操作，等待下一周期，间隔逐渐延长
+	 *  ③返回200时边下载边解析新的内容（或增量），只更新该词典增删的词条，间隔逐渐缩短
+	 *  ④请求失败时抛出异常，调度器按指数退避推迟下一次请求
+	 */
+	@Override
+	public boolean execute() throws IOException {
+		RemoteDictFetcher.Download update = fetcher.poll(location);
+		if (update == null) {
+			return false;
 		}
-		if (eTags != null) {
-			head.setHeader("If-None-Match", eTags);
+		if (update.isDelta()) {
+			Dictionary.getSingleton().updateSource(location, update.added(), update.removed());
+		} else {
+			Dictionary.getSingleton().updateSource(location, update.words());
 		}
+		return true;
+	}
 
-		CloseableHttpResponse response = null;
-		try {
-
-			response = httpclient.execute(head);
-
-			//返回200 才做操作
-			if(response.getStatusLine().getStatusCode()==200){
-
-				if (((response.getLastHeader("Last-Modified")!=null) && !response.getLastHeader("Last-Modified").getValue().equalsIgnoreCase(last_modified))
-						||((response.getLastHeader("ETag")!=null) && !response.getLastHeader("ETag").getValue().equalsIgnoreCase(eTags))) {
-
-					// 远程词库有更新,需要重新加载词典，并修改last_modified,eTags
-					Dictionary.getSingleton().reLoadMainDict();
-					last_modified = response.getLastHeader("Last-Modified")==null?null:response.getLastHeader("Last-Modified").getValue();
-					eTags = response.getLastHeader("ETag")==null?null:response.getLastHeader("ETag").getValue();
-				}
-			}else if (response.getStatusLine().getStatusCode()==304) {
-				//没有修改，不做操作
-				//noop
-			}else{
-				logger.info("remote_ext_dict {} return bad code {}" , location , response.getStatusLine().getStatusCode() );
-			}
-
-		} catch (Exception e) {
-			logger.error("remote_ext_dict {} error!",e , location);
-		}finally{
-			try {
-				if (response != null) {
-					response.close();
-				}
-			} catch (IOException e) {
-				logger.error(e.getMessage(), e);
-			}
-		}
+	/**
+	 * 连接由共用的 {@link RemoteDictFetcher} 管理，关闭时统一释放
+	 */
+	@Override
+	public void close() {
 	}
 
 }
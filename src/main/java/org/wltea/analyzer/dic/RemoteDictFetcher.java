@@ -0,0 +1,700 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.SpecialPermission;
+import org.wltea.analyzer.help.ESPluginLoggerFactory;
+
+/**
+ * 远程词典下载
+ * 一次加载用到的全部远程词典同时下载，加载时最多等到统一的截止时间；
+ * 响应体边下载边解析为词条，不整体缓冲；
+ * 下载成功的词典连同 ETag、Last-Modified 保存到本地缓存目录，下次下载时据此发送条件请求。
+ * 截止时间内没有下载完成（或下载失败）的词典先使用缓存的副本，下载在后台继续，
+ * 完成后内容与所用副本不同时把新的词条交给调用方更新。
+ * 监控远程词典时逐个发送条件请求 {@link #poll(String)}，未修改时不读取也不解析任何内容。
+ * <p>
+ * 开启增量下载时，监控请求在地址后附加 since=上次的ETag，支持增量的服务器返回
+ * X-IK-Delta-Since 响应头（值为请求的 since）与只含变化的响应体，每行为 +词 或 -词；
+ * 没有该响应头时按完整的词典处理，服务器不支持增量时即自然退回完整下载
+ */
+final class RemoteDictFetcher {
+
+	private static final Logger logger = ESPluginLoggerFactory.getLogger(RemoteDictFetcher.class.getName());
+
+	// 同时下载的连接数上限，多个词典通常在同一台词库服务器上
+	private static final int MAX_CONNECTIONS = 16;
+
+	private static final CloseableHttpClient httpclient = HttpClients.custom().setMaxConnPerRoute(MAX_CONNECTIONS)
+			.setMaxConnTotal(MAX_CONNECTIONS).build();
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "ik-remote-dict-fetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * 停止后台下载并关闭连接，节点关闭时调用
+	 */
+	static void shutdown() {
+		executor.shutdownNow();
+		try {
+			httpclient.close();
+		} catch (IOException e) {
+			logger.warn("[Remote Dict] failed to close http client", e);
+		}
+	}
+
+	private static final String CACHE_WORDS = ".dic";
+	private static final String CACHE_META = ".properties";
+	private static final String META_LOCATION = "location";
+	private static final String META_ETAG = "etag";
+	private static final String META_LAST_MODIFIED = "last_modified";
+	private static final String META_DIGEST = "digest";
+
+	// 增量下载的请求参数与响应头
+	private static final String DELTA_PARAM = "since";
+	private static final String DELTA_HEADER = "X-IK-Delta-Since";
+
+	// 条件请求返回304
+	private static final Download NOT_MODIFIED = new Download(null, null, null, null);
+
+	// 增量响应体格式错误
+	private static final Download INVALID_DELTA = new Download(null, null, null, null);
+
+	/*
+	 * 缓存目录，为null时不缓存
+	 */
+	private final Path cacheDir;
+
+	private final long timeoutMillis;
+
+	/*
+	 * 监控时是否请求增量
+	 */
+	private final boolean delta;
+
+	private final long deadline;
+
+	/*
+	 * 超时的词典在后台下载完成且内容有变化时的回调，参数为词典地址与新的词条
+	 */
+	private final BiConsumer<String, List<char[]>> onLateChange;
+
+	private final Map<String, CompletableFuture<Download>> downloads = new LinkedHashMap<String, CompletableFuture<Download>>();
+
+	/*
+	 * 不缓存时保存在内存中的各词典描述，用于条件请求
+	 */
+	private final Map<String, Properties> metas = new ConcurrentHashMap<String, Properties>();
+
+	/**
+	 * 只用于监控远程词典，不预先下载
+	 * @param delta 是否请求增量
+	 */
+	RemoteDictFetcher(Path cacheDir, boolean delta) {
+		this(Collections.<String>emptyList(), cacheDir, 0, delta, (location, words) -> {
+		});
+	}
+
+	/**
+	 * 开始同时下载全部词典
+	 * @param timeoutMillis 从现在起等待下载的最长时间
+	 */
+	RemoteDictFetcher(Collection<String> locations, Path cacheDir, long timeoutMillis,
+			BiConsumer<String, List<char[]>> onLateChange) {
+		this(locations, cacheDir, timeoutMillis, false, onLateChange);
+	}
+
+	private RemoteDictFetcher(Collection<String> locations, Path cacheDir, long timeoutMillis, boolean delta,
+			BiConsumer<String, List<char[]>> onLateChange) {
+		this.cacheDir = cacheDir;
+		this.timeoutMillis = timeoutMillis;
+		this.delta = delta;
+		this.deadline = System.currentTimeMillis() + timeoutMillis;
+		this.onLateChange = onLateChange;
+		for (String location : locations) {
+			if (!downloads.containsKey(location)) {
+				downloads.put(location, CompletableFuture.supplyAsync(() -> fetch(location), executor));
+			}
+		}
+	}
+
+	/**
+	 * 取得词典词条，最多等到截止时间，超时或者下载失败时使用缓存的副本
+	 * @return 词条（已去掉首尾空白并转为小写）；没有下载成功也没有缓存时为空
+	 */
+	List<char[]> get(String location) {
+		CompletableFuture<Download> download = downloads.get(location);
+		if (download == null) {
+			throw new IllegalArgumentException("not fetching " + location);
+		}
+		try {
+			Download result = download.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			if (result != null) {
+				return result.words;
+			}
+		} catch (TimeoutException e) {
+			Download cached = readCache(location);
+			logger.warn("[Remote Dict] {} not fetched within {} ms, using {}, refreshing in background", location,
+					timeoutMillis, cached != null ? "cached copy" : "no words");
+			String digest = cached != null ? cached.digest : null;
+			download.thenAccept(late -> {
+				if (late != null && !late.digest.equals(digest)) {
+					logger.info("[Remote Dict] {} fetched in background, content changed", location);
+					onLateChange.accept(location, late.words);
+				}
+			});
+			return cached != null ? cached.words : new ArrayList<char[]>();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error("[Remote Dict] " + location + " fetch failed", e.getCause());
+		}
+		Download cached = readCache(location);
+		if (cached != null) {
+			logger.warn("[Remote Dict] {} fetch failed, using cached copy", location);
+			return cached.words;
+		}
+		return new ArrayList<char[]>();
+	}
+
+	/**
+	 * 发送一次条件请求检查词典是否有变化
+	 * 未修改（304）时不读取任何内容；有变化时下载新的内容（或增量）并更新缓存
+	 * @return 新的内容或增量；未修改或者内容相同时为null
+	 * @throws IOException 请求失败（原因已记录日志）
+	 */
+	Download poll(String location) throws IOException {
+		Properties meta = readMeta(location);
+		String since = delta && meta != null ? meta.getProperty(META_ETAG) : null;
+		Download download = fetch(location, meta, since);
+		if (download == null) {
+			throw new IOException("failed to fetch " + location);
+		}
+		if (download == NOT_MODIFIED) {
+			return null;
+		}
+		if (!download.isDelta() && meta != null && download.digest.equals(meta.getProperty(META_DIGEST))) {
+			logger.info("[Remote Dict] {} content unchanged", location);
+			return null;
+		}
+		return download;
+	}
+
+	/**
+	 * 加载时下载词典，未修改时读取缓存
+	 */
+	private Download fetch(String location) {
+		long start = System.currentTimeMillis();
+		Download download = fetch(location, readMeta(location), null);
+		if (download != NOT_MODIFIED) {
+			return download;
+		}
+		Download cached = readCache(location);
+		if (cached != null) {
+			logger.info("[Remote Dict] {} not modified, {} cached words, {} ms", location, cached.words.size(),
+					System.currentTimeMillis() - start);
+		}
+		return cached;
+	}
+
+	private Download fetch(String location, Properties meta, String since) {
+		SpecialPermission.check();
+		return AccessController.doPrivileged((PrivilegedAction<Download>) () -> {
+			Download download = fetchUnprivileged(location, meta, since);
+			if (download == INVALID_DELTA) {
+				logger.warn("[Remote Dict] {} returned an invalid delta, fetching in full", location);
+				download = fetchUnprivileged(location, meta, null);
+			}
+			return download;
+		});
+	}
+
+	/**
+	 * 下载词典，有缓存时发送条件请求
+	 * 响应体（可以是 gzip 压缩、分块传输）边读边解析为词条，同时写入缓存
+	 * @param meta 缓存的描述，为null时发送普通请求
+	 * @param since 请求自该ETag以来的增量，为null时请求完整的词典
+	 * @return 未修改时为 NOT_MODIFIED，增量格式错误时为 INVALID_DELTA，下载失败时为null
+	 */
+	private Download fetchUnprivileged(String location, Properties meta, String since) {
+		long start = System.currentTimeMillis();
+		RequestConfig rc = RequestConfig.custom().setConnectionRequestTimeout(10 * 1000).setConnectTimeout(10 * 1000)
+				.setSocketTimeout(60 * 1000).build();
+		HttpGet get = new HttpGet(since == null ? location : deltaLocation(location, since));
+		get.setConfig(rc);
+		get.setHeader("Accept-Encoding", "gzip");
+		if (meta != null) {
+			if (meta.getProperty(META_LAST_MODIFIED) != null) {
+				get.setHeader("If-Modified-Since", meta.getProperty(META_LAST_MODIFIED));
+			}
+			if (meta.getProperty(META_ETAG) != null) {
+				get.setHeader("If-None-Match", meta.getProperty(META_ETAG));
+			}
+		}
+		try (CloseableHttpResponse response = httpclient.execute(get)) {
+			int status = response.getStatusLine().getStatusCode();
+			if (status == 304 && meta != null) {
+				return NOT_MODIFIED;
+			}
+			if (status != 200) {
+				logger.error("[Remote Dict] {} return bad code {}", location, status);
+				return null;
+			}
+			Download download;
+			long bytes = 0;
+			HttpEntity entity = response.getEntity();
+			if (entity != null) {
+				CountingInputStream counting = new CountingInputStream(entity.getContent());
+				InputStream body = counting;
+				// 没有由客户端自动解压时自行解压
+				Header encoding = entity.getContentEncoding();
+				if (encoding != null && "gzip".equalsIgnoreCase(encoding.getValue())) {
+					body = new GZIPInputStream(body);
+				}
+				try (Reader in = new InputStreamReader(body, charset(entity))) {
+					if (since != null && since.equals(header(response, DELTA_HEADER))) {
+						download = readDelta(location, in, header(response, "ETag"), header(response, "Last-Modified"));
+						if (download == INVALID_DELTA) {
+							return download;
+						}
+					} else {
+						download = read(location, in, header(response, "ETag"), header(response, "Last-Modified"));
+					}
+				}
+				bytes = counting.count;
+			} else {
+				download = read(location, new StringReader(""), header(response, "ETag"),
+						header(response, "Last-Modified"));
+			}
+			if (download.isDelta()) {
+				logger.info("[Remote Dict] {} fetched delta: +{} -{}, {} bytes, {} ms", location, download.added.size(),
+						download.removed.size(), bytes, System.currentTimeMillis() - start);
+			} else {
+				logger.info("[Remote Dict] {} fetched: {} words, {} bytes, {} ms", location, download.words.size(),
+						bytes, System.currentTimeMillis() - start);
+			}
+			return download;
+		} catch (IllegalStateException | IOException e) {
+			logger.error("[Remote Dict] " + location + " fetch failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 逐行读取词条：去掉BOM、首尾空白和空行，转为小写，同时计算摘要并写入缓存
+	 */
+	private Download read(String location, Reader reader, String etag, String lastModified) throws IOException {
+		MessageDigest md = newDigest();
+		List<char[]> words = new ArrayList<char[]>();
+		Path tmp = null;
+		Writer cache = null;
+		if (cacheDir != null) {
+			try {
+				Files.createDirectories(cacheDir);
+				tmp = Files.createTempFile(cacheDir, "download", ".tmp");
+				cache = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8);
+			} catch (IOException | SecurityException e) {
+				logger.warn("[Remote Dict] failed to cache " + location + " in " + cacheDir, e);
+				tmp = null;
+			}
+		}
+		try {
+			BufferedReader in = new BufferedReader(reader, 64 * 1024);
+			String line = in.readLine();
+			if (line != null && line.startsWith("\uFEFF")) {
+				line = line.substring(1);
+			}
+			for (; line != null; line = in.readLine()) {
+				String word = line.trim().toLowerCase();
+				if (word.isEmpty()) {
+					continue;
+				}
+				words.add(word.toCharArray());
+				md.update(word.getBytes(StandardCharsets.UTF_8));
+				md.update((byte) '\n');
+				if (cache != null) {
+					cache.write(word);
+					cache.write('\n');
+				}
+			}
+			Download download = new Download(words, hex(md.digest()), etag, lastModified);
+			if (cacheDir == null) {
+				metas.put(location, meta(location, download));
+			}
+			if (cache != null) {
+				cache.close();
+				cache = null;
+				commitCache(location, tmp, download);
+				tmp = null;
+			}
+			return download;
+		} finally {
+			if (cache != null) {
+				cache.close();
+			}
+			if (tmp != null) {
+				Files.deleteIfExists(tmp);
+			}
+		}
+	}
+
+	private static String deltaLocation(String location, String since) {
+		try {
+			return location + (location.indexOf('?') >= 0 ? '&' : '?') + DELTA_PARAM + "="
+					+ URLEncoder.encode(since, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 读取增量：每行为 +词 或 -词，同一个词以最后一行为准；再把增量应用到缓存的副本上
+	 * @return 有不以 + 或 - 开头的行时为 INVALID_DELTA
+	 */
+	private Download readDelta(String location, Reader reader, String etag, String lastModified) throws IOException {
+		Map<String, Boolean> changes = new LinkedHashMap<String, Boolean>();
+		BufferedReader in = new BufferedReader(reader, 64 * 1024);
+		String line = in.readLine();
+		if (line != null && line.startsWith("\uFEFF")) {
+			line = line.substring(1);
+		}
+		for (; line != null; line = in.readLine()) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			char op = line.charAt(0);
+			if (op != '+' && op != '-') {
+				return INVALID_DELTA;
+			}
+			String word = line.substring(1).trim().toLowerCase();
+			if (!word.isEmpty()) {
+				changes.remove(word);
+				changes.put(word, op == '+');
+			}
+		}
+		List<char[]> added = new ArrayList<char[]>();
+		List<char[]> removed = new ArrayList<char[]>();
+		for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+			(change.getValue() ? added : removed).add(change.getKey().toCharArray());
+		}
+		String digest = updateCache(location, changes, etag, lastModified);
+		return new Download(added, removed, digest, etag, lastModified);
+	}
+
+	/**
+	 * 把增量应用到缓存的副本上：逐行复制原有的词条，跳过删除的词，再追加新增的词
+	 * 不缓存时只记录新的ETag
+	 * @return 新内容的摘要，没有缓存时为空
+	 */
+	private String updateCache(String location, Map<String, Boolean> changes, String etag, String lastModified)
+			throws IOException {
+		if (cacheDir == null) {
+			metas.put(location, meta(location, new Download(null, "", etag, lastModified)));
+			return "";
+		}
+		MessageDigest md = newDigest();
+		Map<String, Boolean> pending = new HashMap<String, Boolean>(changes);
+		Path tmp = Files.createTempFile(cacheDir, "download", ".tmp");
+		try {
+			try (BufferedReader in = Files.newBufferedReader(cacheFile(location, CACHE_WORDS), StandardCharsets.UTF_8);
+					Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				for (String word = in.readLine(); word != null; word = in.readLine()) {
+					Boolean change = pending.get(word);
+					if (Boolean.FALSE.equals(change)) {
+						continue;
+					}
+					if (change != null) {
+						// 已经有该词，不再追加
+						pending.remove(word);
+					}
+					writeWord(out, md, word);
+				}
+				for (Map.Entry<String, Boolean> change : pending.entrySet()) {
+					if (change.getValue()) {
+						writeWord(out, md, change.getKey());
+					}
+				}
+			}
+			String digest = hex(md.digest());
+			commitCache(location, tmp, new Download(null, digest, etag, lastModified));
+			tmp = null;
+			return digest;
+		} finally {
+			if (tmp != null) {
+				Files.deleteIfExists(tmp);
+			}
+		}
+	}
+
+	private static void writeWord(Writer out, MessageDigest md, String word) throws IOException {
+		md.update(word.getBytes(StandardCharsets.UTF_8));
+		md.update((byte) '\n');
+		out.write(word);
+		out.write('\n');
+	}
+
+	/**
+	 * 获取编码，默认为utf-8
+	 */
+	private static String charset(HttpEntity entity) {
+		Header contentType = entity.getContentType();
+		if (contentType != null && contentType.getValue() != null && contentType.getValue().contains("charset=")) {
+			String typeValue = contentType.getValue();
+			return typeValue.substring(typeValue.lastIndexOf("=") + 1);
+		}
+		return "UTF-8";
+	}
+
+	private static String header(CloseableHttpResponse response, String name) {
+		Header header = response.getLastHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 缓存文件名取自词典地址的摘要
+	 */
+	private Path cacheFile(String location, String suffix) {
+		return cacheDir.resolve(hex(newDigest().digest(location.getBytes(StandardCharsets.UTF_8))) + suffix);
+	}
+
+	/**
+	 * 读取缓存的描述（地址、ETag、Last-Modified、内容摘要）
+	 * @return 没有缓存时为null
+	 */
+	private Properties readMeta(String location) {
+		if (cacheDir == null) {
+			return metas.get(location);
+		}
+		Properties meta = new Properties();
+		try (InputStream in = Files.newInputStream(cacheFile(location, CACHE_META))) {
+			meta.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			logger.warn("[Remote Dict] failed to read cache of " + location, e);
+			return null;
+		}
+		if (!location.equals(meta.getProperty(META_LOCATION)) || !Files.exists(cacheFile(location, CACHE_WORDS))) {
+			return null;
+		}
+		return meta;
+	}
+
+	/**
+	 * 读取缓存的副本
+	 * @return 没有缓存时为null
+	 */
+	private Download readCache(String location) {
+		Properties meta = readMeta(location);
+		if (meta == null) {
+			return null;
+		}
+		try {
+			List<char[]> words = new ArrayList<char[]>();
+			DictCompiler.readWords(cacheFile(location, CACHE_WORDS), words::add);
+			return new Download(words, meta.getProperty(META_DIGEST, ""), meta.getProperty(META_ETAG),
+					meta.getProperty(META_LAST_MODIFIED));
+		} catch (IOException e) {
+			logger.warn("[Remote Dict] failed to read cache of " + location, e);
+			return null;
+		}
+	}
+
+	/**
+	 * 已写好的临时词条文件改名为缓存，再写描述文件；缓存失败不影响加载
+	 */
+	private void commitCache(String location, Path tmp, Download download) {
+		Path words = cacheFile(location, CACHE_WORDS);
+		Path meta = cacheFile(location, CACHE_META);
+		try {
+			Files.move(tmp, words, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			Properties properties = meta(location, download);
+			Path metaTmp = meta.resolveSibling(meta.getFileName() + ".tmp");
+			try (OutputStream out = Files.newOutputStream(metaTmp)) {
+				properties.store(out, null);
+			}
+			Files.move(metaTmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | SecurityException e) {
+			logger.warn("[Remote Dict] failed to cache " + location + " in " + cacheDir, e);
+		}
+	}
+
+	private static Properties meta(String location, Download download) {
+		Properties properties = new Properties();
+		properties.setProperty(META_LOCATION, location);
+		properties.setProperty(META_DIGEST, download.digest);
+		if (download.etag != null) {
+			properties.setProperty(META_ETAG, download.etag);
+		}
+		if (download.lastModified != null) {
+			properties.setProperty(META_LAST_MODIFIED, download.lastModified);
+		}
+		return properties;
+	}
+
+	/**
+	 * 统计读取的响应体字节数（客户端已自动解压时为解压后的字节数）
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * 一次下载（或缓存）的词典内容，或者一次增量
+	 */
+	static final class Download {
+
+		private final List<char[]> words;
+		private final List<char[]> added;
+		private final List<char[]> removed;
+		// 内容摘要，判断后台下载的内容是否有变化
+		private final String digest;
+		private final String etag;
+		private final String lastModified;
+
+		Download(List<char[]> words, String digest, String etag, String lastModified) {
+			this(words, null, null, digest, etag, lastModified);
+		}
+
+		Download(List<char[]> added, List<char[]> removed, String digest, String etag, String lastModified) {
+			this(null, added, removed, digest, etag, lastModified);
+		}
+
+		private Download(List<char[]> words, List<char[]> added, List<char[]> removed, String digest, String etag,
+				String lastModified) {
+			this.words = words;
+			this.added = added;
+			this.removed = removed;
+			this.digest = digest;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		boolean isDelta() {
+			return words == null;
+		}
+
+		/**
+		 * 完整的词条，增量时为null
+		 */
+		List<char[]> words() {
+			return words;
+		}
+
+		List<char[]> added() {
+			return added;
+		}
+
+		List<char[]> removed() {
+			return removed;
+		}
+	}
+}
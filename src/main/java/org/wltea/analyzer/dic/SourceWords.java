@@ -0,0 +1,204 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 一个词典来源（词典文件、远程词典）当前的词条
+ * 来源变化时与新的词条比较，只把增删的词条应用到词典；判断被删除的词是否仍由其他来源提供
+ * 全部字符连续存放在一个数组中，首次查找或比较时才排序去重；映射的编译词典直接引用双数组
+ */
+final class SourceWords {
+
+	static final SourceWords EMPTY = new SourceWords(null, new char[0], new int[1], true);
+
+	// 映射的编译词典，需要比较时才取出词条
+	private final DoubleArrayTrie trie;
+	private char[] chars;
+	// 第i个词为 chars[offsets[i], offsets[i + 1])
+	private int[] offsets;
+	private boolean sorted;
+
+	private SourceWords(DoubleArrayTrie trie, char[] chars, int[] offsets, boolean sorted) {
+		this.trie = trie;
+		this.chars = chars;
+		this.offsets = offsets;
+		this.sorted = sorted;
+	}
+
+	static SourceWords of(List<char[]> words) {
+		int length = 0;
+		for (char[] word : words) {
+			length += word.length;
+		}
+		char[] chars = new char[length];
+		int[] offsets = new int[words.size() + 1];
+		int i = 0;
+		for (char[] word : words) {
+			System.arraycopy(word, 0, chars, offsets[i], word.length);
+			offsets[i + 1] = offsets[i] + word.length;
+			i++;
+		}
+		return new SourceWords(null, chars, offsets, false);
+	}
+
+	static SourceWords of(DoubleArrayTrie trie) {
+		return new SourceWords(trie, null, null, true);
+	}
+
+	/**
+	 * 词条数目，未排序时可能含有重复的词
+	 */
+	synchronized int size() {
+		return trie != null && chars == null ? trie.size() : offsets.length - 1;
+	}
+
+	synchronized boolean contains(char[] word) {
+		if (trie != null) {
+			return trie.contains(word, 0, word.length);
+		}
+		sort();
+		int low = 0;
+		int high = offsets.length - 2;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(mid, word);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 应用一次增量后的词条，同一个词同时在两者中时以删除为准
+	 */
+	synchronized SourceWords apply(List<char[]> added, List<char[]> removed) {
+		Set<String> gone = new HashSet<String>();
+		for (char[] word : removed) {
+			gone.add(new String(word));
+		}
+		char[][] current = sortedWords();
+		List<char[]> words = new ArrayList<char[]>(current.length + added.size());
+		for (char[] word : current) {
+			if (!gone.contains(new String(word))) {
+				words.add(word);
+			}
+		}
+		for (char[] word : added) {
+			if (!gone.contains(new String(word))) {
+				words.add(word);
+			}
+		}
+		return of(words);
+	}
+
+	/**
+	 * 比较来源变化前后的词条
+	 * @param added 新增的词
+	 * @param removed 删除的词
+	 */
+	static void diff(SourceWords before, SourceWords after, Consumer<char[]> added, Consumer<char[]> removed) {
+		char[][] a = before.sortedWords();
+		char[][] b = after.sortedWords();
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			int cmp = i == a.length ? 1 : j == b.length ? -1 : DoubleArrayTrie.compareChars(a[i], b[j]);
+			if (cmp < 0) {
+				removed.accept(a[i++]);
+			} else if (cmp > 0) {
+				added.accept(b[j++]);
+			} else {
+				i++;
+				j++;
+			}
+		}
+	}
+
+	private synchronized char[][] sortedWords() {
+		sort();
+		char[][] words = new char[offsets.length - 1][];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = word(i);
+		}
+		return words;
+	}
+
+	/**
+	 * 排序去重后重新紧凑存放；双数组先取出全部词条
+	 */
+	private void sort() {
+		if (sorted && chars != null) {
+			return;
+		}
+		char[][] words;
+		if (chars == null) {
+			List<char[]> collected = new ArrayList<char[]>(trie.size());
+			trie.collectWords(collected);
+			words = collected.toArray(new char[collected.size()][]);
+		} else {
+			words = new char[offsets.length - 1][];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = word(i);
+			}
+		}
+		words = DoubleArrayTrie.sortUnique(words);
+		int length = 0;
+		for (char[] word : words) {
+			length += word.length;
+		}
+		chars = new char[length];
+		offsets = new int[words.length + 1];
+		for (int i = 0; i < words.length; i++) {
+			System.arraycopy(words[i], 0, chars, offsets[i], words[i].length);
+			offsets[i + 1] = offsets[i] + words[i].length;
+		}
+		sorted = true;
+	}
+
+	private char[] word(int i) {
+		char[] word = new char[offsets[i + 1] - offsets[i]];
+		System.arraycopy(chars, offsets[i], word, 0, word.length);
+		return word;
+	}
+
+	private int compare(int i, char[] word) {
+		int begin = offsets[i];
+		int length = offsets[i + 1] - begin;
+		int len = Math.min(length, word.length);
+		for (int k = 0; k < len; k++) {
+			if (chars[begin + k] != word[k]) {
+				return chars[begin + k] - word[k];
+			}
+		}
+		return length - word.length;
+	}
+}
@@ -0,0 +1,230 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import static org.wltea.analyzer.dic.DoubleArrayTrie.NONE;
+import static org.wltea.analyzer.dic.DoubleArrayTrie.ROOT;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 类别词典
+ * 量词、停用词等附属词典合并为一个双数组，每个成词状态带有类别标记位（见 {@link DictSnapshot#QUANTIFIER} 等），
+ * 一次匹配即可得到一个词属于哪些类别
+ */
+final class TagTrie {
+
+	private final DoubleArrayTrie trie;
+	//成词状态的类别标记
+	private final byte[] flags;
+	//状态全部后代的类别标记之并，即该前缀还能延伸为哪些类别的词
+	private final byte[] prefixFlags;
+	//各类别的词条数目，下标为标记位序号
+	private final int[] sizes;
+
+	private TagTrie(DoubleArrayTrie trie, byte[] flags, byte[] prefixFlags, int[] sizes) {
+		this.trie = trie;
+		this.flags = flags;
+		this.prefixFlags = prefixFlags;
+		this.sizes = sizes;
+	}
+
+	/**
+	 * 类别词典构造器，依次加入各类别的词条
+	 */
+	static final class Builder {
+
+		private final List<char[]> words = new ArrayList<char[]>();
+		private final List<Integer> wordFlags = new ArrayList<Integer>();
+
+		Builder add(DictSegment dict, int flag) {
+			List<char[]> list = new ArrayList<char[]>();
+			dict.collectWords(list);
+			for (char[] word : list) {
+				words.add(word);
+				wordFlags.add(flag);
+			}
+			return this;
+		}
+
+		TagTrie build() {
+			DoubleArrayTrie trie = DoubleArrayTrie.build(words.toArray(new char[words.size()][]));
+			byte[] flags = new byte[trie.capacity()];
+			byte[] prefixFlags = new byte[trie.capacity()];
+			for (int i = 0; i < words.size(); i++) {
+				char[] word = words.get(i);
+				int flag = wordFlags.get(i);
+				int state = ROOT;
+				for (char c : word) {
+					state = trie.transition(state, c);
+				}
+				flags[state] |= flag;
+				//沿父状态向上标记，祖先已带有该标记时更上层必然也有
+				for (int t = trie.parent(state); t != NONE && (prefixFlags[t] & flag) != flag; t = trie.parent(t)) {
+					prefixFlags[t] |= flag;
+				}
+			}
+			int[] sizes = new int[8];
+			for (int s = 0; s < flags.length; s++) {
+				for (int f = flags[s] & 0xFF, bit = 0; f != 0; f >>>= 1, bit++) {
+					sizes[bit] += f & 1;
+				}
+			}
+			trie.automaton();
+			return new TagTrie(trie, flags, prefixFlags, sizes);
+		}
+	}
+
+	/**
+	 * 字符区间作为一个词所带的类别标记，不是词时返回0
+	 */
+	int flags(char[] charArray, int begin, int length) {
+		int state = ROOT;
+		for (int i = begin, end = begin + length; i < end; i++) {
+			state = trie.transition(state, charArray[i]);
+			if (state == NONE) {
+				return 0;
+			}
+		}
+		return flags[state];
+	}
+
+	/**
+	 * 匹配某一类别的词段，searchHit不为空时从其记录的状态继续向下匹配
+	 * @param charArray
+	 * @param begin
+	 * @param length
+	 * @param flag 类别标记
+	 * @param searchHit
+	 * @return Hit
+	 */
+	Hit match(char[] charArray, int begin, int length, int flag, Hit searchHit) {
+		int state;
+		if (searchHit == null) {
+			searchHit = new Hit();
+			searchHit.setBegin(begin);
+			state = ROOT;
+		} else {
+			searchHit.setUnmatch();
+			state = searchHit.getMatchedState();
+		}
+		searchHit.setEnd(begin);
+
+		for (int i = begin, end = begin + length; i < end; i++) {
+			searchHit.setEnd(i);
+			state = trie.transition(state, charArray[i]);
+			if (state == NONE) {
+				return searchHit;
+			}
+		}
+		if ((flags[state] & flag) != 0) {
+			searchHit.setMatch();
+		}
+		if ((prefixFlags[state] & flag) != 0) {
+			searchHit.setPrefix();
+			searchHit.setMatchedTags(this, flag);
+			searchHit.setMatchedState(state);
+		}
+		return searchHit;
+	}
+
+	/**
+	 * 带有某一类别标记的词条数目
+	 */
+	int size(int flag) {
+		return sizes[Integer.numberOfTrailingZeros(flag)];
+	}
+
+	/**
+	 * 创建逐字扫描器
+	 */
+	Scanner newScanner() {
+		return new Scanner(trie.automaton());
+	}
+
+	/**
+	 * 逐字扫描器，取出以当前字符结尾的全部词条及其类别标记
+	 */
+	final class Scanner {
+
+		private final AhoCorasick ac;
+		private int state = ROOT;
+		//尚未取出的词条状态，以及最近取出的词条状态
+		private int word = NONE;
+		private int last = NONE;
+
+		Scanner(AhoCorasick ac) {
+			this.ac = ac;
+		}
+
+		void next(char c) {
+			state = ac.transition(state, c);
+			word = ac.firstWord(state);
+		}
+
+		/**
+		 * 取出下一个以当前字符结尾的词条，由长到短
+		 * @return 词长，没有更多词条时返回0
+		 */
+		int nextWord() {
+			if (word == NONE) {
+				return 0;
+			}
+			last = word;
+			word = ac.nextWord(word);
+			return ac.depth(last);
+		}
+
+		/**
+		 * 最近取出的词条的类别标记
+		 */
+		int wordFlags() {
+			return flags[last];
+		}
+
+		/**
+		 * 以当前字符结尾、长为 length 的字符串是否还能延伸为带 flag 标记的词
+		 */
+		boolean isPrefix(int length, int flag) {
+			//失败指针链上各状态的深度递减，依次对应以当前字符结尾、在词典树中的各个后缀
+			for (int s = state; s != ROOT; s = ac.fail(s)) {
+				int depth = ac.depth(s);
+				if (depth == length) {
+					return (prefixFlags[s] & flag) != 0;
+				}
+				if (depth < length) {
+					return false;
+				}
+			}
+			return false;
+		}
+
+		boolean isOpen() {
+			return ac.isOpen(state);
+		}
+
+		void reset() {
+			state = ROOT;
+			word = NONE;
+		}
+	}
+}
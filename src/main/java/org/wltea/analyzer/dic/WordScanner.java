@@ -0,0 +1,49 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+/**
+ * 逐字扫描器
+ * 每读入一个字符，由长到短取出以该字符结尾的全部词条
+ */
+public interface WordScanner {
+
+	/**
+	 * 读入下一个字符
+	 */
+	void next(char c);
+
+	/**
+	 * 取出下一个以当前字符结尾的词条，由长到短
+	 * @return 词长，没有更多词条时返回0
+	 */
+	int nextWord();
+
+	/**
+	 * 是否还有未结束的前缀，即后续字符可能组成更长的词
+	 */
+	boolean isOpen();
+
+	/**
+	 * 丢弃未结束的前缀，下一个字符从根开始匹配
+	 */
+	void reset();
+}
@@ -0,0 +1,352 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.elasticsearch.plugin.analysis.ik;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.plugins.PluginsService;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.elasticsearch.test.InternalTestCluster;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.wltea.analyzer.dic.Dictionary;
+import org.wltea.analyzer.dic.LocalDictServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * 三个节点的集群中同步词典：主节点写入并发布代数，其他节点只读取新的代数，
+ * 重新选出的主节点以高于索引中最大代数的代数继续，检查点之前的代数被删除，新节点从检查点开始读取，
+ * 远程词典的变化按来源分发，主节点切换后新的主节点以此比较远程词典的新内容
+ * 同一进程中的节点共用词典单例，以各节点 {@link ClusterDictSync} 的进度检查同步
+ */
+@ESIntegTestCase.ClusterScope(scope = ESIntegTestCase.Scope.SUITE, numDataNodes = 3, numClientNodes = 0,
+        supportsDedicatedMasters = false)
+public class ClusterDictSyncTests extends ESIntegTestCase {
+
+    private static final String REMOTE_DICT = "/cluster_sync.dic";
+
+    private static Path configDir;
+
+    private static LocalDictServer dictServer;
+
+    @Override
+    protected Collection<Class<? extends Plugin>> nodePlugins() {
+        return Collections.singletonList(AnalysisIkPlugin.class);
+    }
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+                .put(super.nodeSettings(nodeOrdinal))
+                .put(ClusterDictSync.ENABLED.getKey(), true)
+                .put(ClusterDictSync.FLUSH_INTERVAL.getKey(), "10ms")
+                .build();
+    }
+
+    @Override
+    protected Path nodeConfigPath(int nodeOrdinal) {
+        return configDir();
+    }
+
+    /**
+     * 各节点共用的配置目录，analysis-ik 为仓库 config 目录的副本（注释掉其中的 jdbc.url），
+     * 另配置一个本地服务器上的远程词典，每秒检查一次
+     */
+    private static synchronized Path configDir() {
+        if (configDir == null) {
+            try {
+                dictServer = new LocalDictServer();
+                dictServer.publish(REMOTE_DICT, "远程同步词甲");
+                Path dir = Files.createTempDirectory("ik-cluster-config");
+                Path pluginConfig = dir.resolve(AnalysisIkPlugin.PLUGIN_NAME);
+                Files.createDirectories(pluginConfig);
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("config"))) {
+                    for (Path file : files) {
+                        Files.copy(file, pluginConfig.resolve(file.getFileName().toString()));
+                    }
+                }
+                // 测试不连接部署配置中的数据库
+                Path jdbcFile = pluginConfig.resolve("jdbc.properties");
+                String jdbc = new String(Files.readAllBytes(jdbcFile), StandardCharsets.UTF_8);
+                Files.write(jdbcFile, jdbc.replaceAll("(?m)^jdbc\\.url=", "#jdbc.url=")
+                        .getBytes(StandardCharsets.UTF_8));
+                Path cfgFile = pluginConfig.resolve("IKAnalyzer.cfg.xml");
+                String cfg = new String(Files.readAllBytes(cfgFile), StandardCharsets.UTF_8);
+                Files.write(cfgFile, cfg.replace("</properties>",
+                        "\t<entry key=\"remote_ext_dict\">" + dictServer.url(REMOTE_DICT) + "</entry>\n"
+                                + "\t<entry key=\"dict_update_debounce\">0</entry>\n"
+                                + "\t<entry key=\"monitor_initial_delay\">1</entry>\n"
+                                + "\t<entry key=\"remote_dict_monitor_interval\">1</entry>\n"
+                                + "\t<entry key=\"remote_dict_monitor_min_interval\">1</entry>\n"
+                                + "\t<entry key=\"remote_dict_monitor_max_interval\">1</entry>\n"
+                                + "\t<entry key=\"monitor_jitter\">0</entry>\n"
+                                + "</properties>").getBytes(StandardCharsets.UTF_8));
+                configDir = dir;
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to prepare the ik config directory", e);
+            }
+        }
+        return configDir;
+    }
+
+    @AfterClass
+    public static void closeDictServer() {
+        if (dictServer != null) {
+            dictServer.close();
+            dictServer = null;
+        }
+    }
+
+    @After
+    public void resetSyncSettings() {
+        // 套件范围的集群在每个测试后检查没有遗留的持久化设置
+        client().admin().cluster().prepareUpdateSettings().setPersistentSettings(Settings.builder()
+                .putNull(ClusterDictSync.GENERATION.getKey())
+                .putNull(ClusterDictSync.CHECKPOINT.getKey())
+                .putNull(ClusterDictSync.CHECKPOINT_INTERVAL.getKey())).get();
+    }
+
+    public void testMasterPublishesGeneration() throws Exception {
+        String master = internalCluster().getMasterName();
+        long generation = publish("同步测试词甲");
+
+        assertTrue(sync(master).isLeader());
+        assertEquals(generation, ClusterDictSync.GENERATION.get(persistentSettings()).longValue());
+        // 发布前已写入索引
+        SearchHit[] hits = client().prepareSearch(ClusterDictSync.INDEX)
+                .setQuery(QueryBuilders.termQuery("generation", generation)).get().getHits().getHits();
+        assertEquals(1, hits.length);
+        assertEquals(Collections.singletonList("同步测试词甲"), hits[0].getSourceAsMap().get("main_added"));
+        for (String node : followers()) {
+            assertFalse(sync(node).isLeader());
+            assertEquals(master, sync(node).master().getName());
+        }
+    }
+
+    public void testFollowersPullOnlyNewGenerations() throws Exception {
+        long first = publish("增量测试词一");
+        Map<String, Long> pulled = new HashMap<>();
+        for (String node : followers()) {
+            pulled.put(node, stat(node, "pulled_docs"));
+        }
+
+        long second = publish("增量测试词二");
+        for (String node : followers()) {
+            assertEquals(first, stat(node, "last_pull_from"));
+            assertEquals(second, stat(node, "last_pull_to"));
+            // 只读取了新代数的一个文档
+            assertEquals(pulled.get(node) + 1, stat(node, "pulled_docs"));
+        }
+    }
+
+    public void testNewMasterNumbersAboveIndexedGenerations() throws Exception {
+        long current = publish("切换测试词一");
+        // 主节点写入了一个代数的文档，没有发布就停止
+        long orphan = current + 5;
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("generation", orphan);
+        doc.put("part", 0);
+        doc.put("main_added", Collections.singletonList("未发布的词"));
+        client().index(new IndexRequest(ClusterDictSync.INDEX).id(orphan + "_0").source(doc)
+                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)).actionGet();
+        Map<String, Long> pulled = new HashMap<>();
+        for (String node : followers()) {
+            pulled.put(node, stat(node, "pulled_docs"));
+        }
+
+        internalCluster().stopCurrentMasterNode();
+        ensureStableCluster(2);
+        long next = publish("切换测试词二");
+        assertEquals(orphan + 1, next);
+        // 未发布的文档在新的代数之前删除，不被其他节点读取
+        assertEquals(0, client().prepareSearch(ClusterDictSync.INDEX)
+                .setQuery(QueryBuilders.termQuery("generation", orphan)).get().getHits().getHits().length);
+        for (String node : followers()) {
+            assertEquals(current, stat(node, "last_pull_from"));
+            assertEquals(pulled.get(node) + 1, stat(node, "pulled_docs"));
+        }
+
+        internalCluster().startNode();
+        ensureStableCluster(3);
+    }
+
+    public void testCheckpointTrimsMergedGenerations() throws Exception {
+        client().admin().cluster().prepareUpdateSettings().setPersistentSettings(Settings.builder()
+                .put(ClusterDictSync.CHECKPOINT_INTERVAL.getKey(), 2)).get();
+        // 发布的代数与上一个检查点相差两个以上时生成检查点（此前的检查点为0）
+        List<String> words = Arrays.asList("检查点测试词一", "检查点测试词二", "检查点测试词三", "检查点测试词四");
+        List<String> merged = new ArrayList<>();
+        long checkpoint = 0;
+        int after = 0;
+        for (String word : words) {
+            long generation = publish(word);
+            after++;
+            if (generation - checkpoint >= 2) {
+                checkpoint = generation;
+                merged = words.subList(0, words.indexOf(word) + 1);
+                after = 0;
+            }
+        }
+        long expected = checkpoint;
+        assertThat(expected, greaterThan(0L));
+        assertBusy(() -> assertEquals(expected, ClusterDictSync.CHECKPOINT.get(persistentSettings()).longValue()));
+
+        // 检查点之前的代数与旧的检查点已删除，检查点包含之前的全部修改
+        assertEquals(after, client().prepareSearch(ClusterDictSync.INDEX)
+                .setQuery(QueryBuilders.existsQuery("generation")).get().getHits().getHits().length);
+        SearchHit[] hits = client().prepareSearch(ClusterDictSync.INDEX)
+                .setQuery(QueryBuilders.existsQuery("checkpoint")).get().getHits().getHits();
+        assertEquals(1, hits.length);
+        assertEquals(expected, ((Number) hits[0].getSourceAsMap().get("checkpoint")).longValue());
+        @SuppressWarnings("unchecked")
+        List<String> checkpointWords = (List<String>) hits[0].getSourceAsMap().get("main_added");
+        assertThat(checkpointWords, containsInAnyOrder(merged.toArray(new String[0])));
+
+        // 新加入的节点读取检查点与之后的代数
+        String node = internalCluster().startNode();
+        ensureStableCluster(4);
+        long published = ClusterDictSync.GENERATION.get(persistentSettings());
+        assertBusy(() -> assertEquals(published, stat(node, "applied_generation")), 30, TimeUnit.SECONDS);
+        assertEquals(expected, stat(node, "last_pull_from"));
+        assertEquals(1 + after, stat(node, "pulled_docs"));
+
+        internalCluster().stopRandomNode(InternalTestCluster.nameFilter(node));
+        ensureStableCluster(3);
+    }
+
+    public void testNewMasterComparesRemoteDictWithReplicatedWords() throws Exception {
+        long before = currentGeneration();
+        dictServer.publish(REMOTE_DICT, "远程同步词甲", "远程同步词乙");
+        long generation = awaitPublished(before);
+        assertTrue(isMainWord("远程同步词乙"));
+        // 远程词典新增的词作为该来源的变化写入，不是运行期修改
+        SearchHit[] hits = client().prepareSearch(ClusterDictSync.INDEX)
+                .setQuery(QueryBuilders.termQuery("generation", generation)).get().getHits().getHits();
+        assertEquals(1, hits.length);
+        assertEquals(Collections.emptyList(), hits[0].getSourceAsMap().get("main_added"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> sources = (List<Map<String, Object>>) hits[0].getSourceAsMap().get("sources");
+        assertEquals(1, sources.size());
+        assertEquals(dictServer.url(REMOTE_DICT), sources.get(0).get("source"));
+        assertEquals("main", sources.get(0).get("type"));
+        @SuppressWarnings("unchecked")
+        List<String> added = (List<String>) sources.get(0).get("added");
+        assertThat(added, contains("远程同步词乙"));
+
+        // 主节点切换后远程词典删除该词，新的主节点比较时发现删除，不因其他节点应用过新增而保留
+        internalCluster().stopCurrentMasterNode();
+        ensureStableCluster(2);
+        long switched = currentGeneration();
+        dictServer.publish(REMOTE_DICT, "远程同步词甲");
+        awaitPublished(switched);
+        assertFalse(isMainWord("远程同步词乙"));
+        assertTrue(isMainWord("远程同步词甲"));
+
+        internalCluster().startNode();
+        ensureStableCluster(3);
+    }
+
+    /**
+     * 在主节点上修改一个词，等待发布新的代数并被所有节点应用
+     * @return 新的代数
+     */
+    private long publish(String word) throws Exception {
+        long before = currentGeneration();
+        Dictionary.getSingleton().applyUpdates(Collections.singletonMap(word, true),
+                Collections.<String, Boolean>emptyMap());
+        return awaitPublished(before);
+    }
+
+    /**
+     * 等待词典加载完成与主节点选出
+     * @return 主节点已应用的代数
+     */
+    private long currentGeneration() throws Exception {
+        assertBusy(() -> assertTrue(Dictionary.isInitialized()), 60, TimeUnit.SECONDS);
+        String master = internalCluster().getMasterName();
+        assertBusy(() -> assertTrue(sync(master).isLeader()));
+        return stat(master, "applied_generation");
+    }
+
+    /**
+     * 等待主节点发布 before 之后的代数并被所有节点应用
+     * @return 新的代数
+     */
+    private long awaitPublished(long before) throws Exception {
+        AtomicLong generation = new AtomicLong();
+        assertBusy(() -> {
+            long published = ClusterDictSync.GENERATION.get(persistentSettings());
+            assertThat(published, greaterThan(before));
+            generation.set(published);
+        }, 30, TimeUnit.SECONDS);
+        for (String node : internalCluster().getNodeNames()) {
+            assertBusy(() -> assertEquals(generation.get(), stat(node, "applied_generation")), 30, TimeUnit.SECONDS);
+        }
+        return generation.get();
+    }
+
+    private static boolean isMainWord(String word) {
+        char[] chars = word.toCharArray();
+        return Dictionary.getSingleton().getSnapshot().matchInMainDict(chars, 0, chars.length).isMatch();
+    }
+
+    private List<String> followers() {
+        List<String> followers = new ArrayList<>(Arrays.asList(internalCluster().getNodeNames()));
+        followers.remove(internalCluster().getMasterName());
+        return followers;
+    }
+
+    private static ClusterDictSync sync(String node) {
+        return internalCluster().getInstance(PluginsService.class, node).filterPlugins(AnalysisIkPlugin.class).get(0)
+                .clusterDictSync();
+    }
+
+    private static long stat(String node, String name) {
+        return ((Number) sync(node).stats().get(name)).longValue();
+    }
+
+    private static Settings persistentSettings() {
+        return client().admin().cluster().prepareState().get().getState().metaData().persistentSettings();
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 双数组上的AC自动机扫描器与逐个区间查找、{@link DictSegment} 扫描器的结果相同
+ */
+public class AhoCorasickTests {
+
+	private static List<char[]> mainWords;
+	private static List<char[]> quantifiers;
+	private static char[] text;
+	private static DoubleArrayTrie trie;
+	private static DictSegment segment;
+
+	@BeforeClass
+	public static void loadDictionaries() throws IOException {
+		mainWords = EngineTestSupport.readWords(EngineTestSupport.MAIN_DIC);
+		quantifiers = EngineTestSupport.readWords(EngineTestSupport.QUANTIFIER_DIC);
+		text = EngineTestSupport.corpus(mainWords, 20000);
+		trie = DoubleArrayTrie.build(EngineTestSupport.toArray(mainWords));
+		segment = DictSegment.build(EngineTestSupport.toArray(mainWords));
+	}
+
+	@Test
+	public void testScannerFindsEveryWordEndingAtEachChar() {
+		int maxLength = 0;
+		for (char[] word : mainWords) {
+			maxLength = Math.max(maxLength, word.length);
+		}
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < text.length; i++) {
+			for (int length = Math.min(maxLength, i + 1); length > 0; length--) {
+				if (trie.contains(text, i - length + 1, length)) {
+					expected.add(i + "-" + length);
+				}
+			}
+		}
+		assertEquals(expected, EngineTestSupport.scan(trie, text));
+	}
+
+	@Test
+	public void testScannerMatchesDictSegment() {
+		assertEquals(EngineTestSupport.scan(segment, text), EngineTestSupport.scan(trie, text));
+		WordScanner expected = segment.newScanner();
+		WordScanner actual = trie.automaton().newScanner();
+		for (int i = 0; i < text.length; i++) {
+			expected.next(text[i]);
+			actual.next(text[i]);
+			assertEquals("open at " + i, expected.isOpen(), actual.isOpen());
+			// 每隔一段丢弃未结束的前缀，之后从根开始匹配
+			if (i % 97 == 0) {
+				expected.reset();
+				actual.reset();
+			}
+			for (int length = expected.nextWord(); length > 0; length = expected.nextWord()) {
+				assertEquals("word at " + i, length, actual.nextWord());
+			}
+			assertEquals("word at " + i, 0, actual.nextWord());
+		}
+	}
+
+	@Test
+	public void testLayeredScanMatchesDictSegment() {
+		for (boolean layered : new boolean[]{false, true}) {
+			assertEquals(EngineTestSupport.scan(EngineTestSupport.snapshot(segment, layered, quantifiers), text),
+					EngineTestSupport.scan(EngineTestSupport.snapshot(trie, layered, quantifiers), text));
+		}
+	}
+
+	@Test
+	public void testQuantifierScanMatchesDictSegment() {
+		char[] corpus = EngineTestSupport.corpus(quantifiers, 5000);
+		DoubleArrayTrie quantifierTrie = DoubleArrayTrie.build(EngineTestSupport.toArray(quantifiers));
+		DictSegment quantifierSegment = DictSegment.build(EngineTestSupport.toArray(quantifiers));
+		assertEquals(EngineTestSupport.scan(quantifierSegment, corpus), EngineTestSupport.scan(quantifierTrie, corpus));
+	}
+
+	@Test
+	public void testEmptyInput() {
+		EngineTestSupport.assertSameOnEmptyInput(DictionaryEngines.get(DictionaryEngines.DOUBLE_ARRAY), mainWords);
+		DoubleArrayTrie empty = DoubleArrayTrie.build(new char[0][]);
+		WordScanner scanner = empty.automaton().newScanner();
+		for (char c : "中华人民共和国".toCharArray()) {
+			scanner.next(c);
+			assertEquals(0, scanner.nextWord());
+			assertFalse(scanner.isOpen());
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 在内嵌数据库（H2）上轮询数据库词条：同一 update_time 的多行跨页、跨两次轮询时，最终的词条与表中每个词的最后一行一致
+ * 行数默认为 200000，可以用 -Dtests.db.rows 指定（如数百万行）
+ */
+public class DatabaseMonitorTests {
+
+	private static final String KEYSET_SQL = "SELECT id,word,deleted is_deleted,update_time FROM t_word_%s"
+			+ " WHERE type = 2 and (update_time > ? or (update_time = ? and id > ?)) order by update_time asc, id asc limit ?";
+
+	private static final String LEGACY_SQL = "SELECT id,word,deleted is_deleted,update_time FROM t_word_%s"
+			+ " WHERE type = 2 and update_time > ? order by update_time asc, id asc";
+
+	private static final int ROWS = Integer.getInteger("tests.db.rows", 200000);
+
+	// 不同的词数，每个词平均被修改 ROWS / WORDS 次
+	private static final int WORDS = 20000;
+
+	// 每页行数与同一时间的行数互质，同一时间的多行总会跨页
+	private static final int PAGE_SIZE = 1000;
+
+	private static final int ROWS_PER_TIME = 7;
+
+	private static final long BASE_TIME = Timestamp.valueOf("2021-01-01 00:00:00").getTime();
+
+	private static Connection conn;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		DictionaryTestSupport.initDictionary(Collections.<String, String>emptyMap());
+		conn = DriverManager.getConnection("jdbc:h2:mem:ik_words;DB_CLOSE_DELAY=-1");
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		conn.close();
+	}
+
+	@Test
+	public void testKeysetPollingIsExact() throws SQLException {
+		String table = "keyset";
+		createTable(table);
+		Map<String, Boolean> expected = new LinkedHashMap<String, Boolean>();
+		DatabaseMonitor.Cursor cursor = new DatabaseMonitor.Cursor();
+		String sql = String.format(KEYSET_SQL, table);
+
+		int half = ROWS / 2 + (ROWS / 2 % ROWS_PER_TIME == 0 ? 1 : 0);
+		seed(table, 0, half, 0, expected);
+		DatabaseMonitor.poll(conn, sql, cursor, PAGE_SIZE, false, null);
+		assertCursorAt(table, cursor, half - 1, 0);
+
+		// 第二批的前几行与上次读到的最后一行 update_time 相同、id 更大，也要读到
+		seed(table, half, ROWS, 0, expected);
+		DatabaseMonitor.poll(conn, sql, cursor, PAGE_SIZE, false, null);
+		assertCursorAt(table, cursor, ROWS - 1, 0);
+		assertWords(expected);
+
+		// 没有新的修改时不应用任何词条
+		int[] counts = DatabaseMonitor.poll(conn, sql, cursor, PAGE_SIZE, false, null);
+		assertEquals(0, counts[0] + counts[1]);
+	}
+
+	@Test
+	public void testLegacyPollingIsExact() throws SQLException {
+		String table = "legacy";
+		createTable(table);
+		Map<String, Boolean> expected = new LinkedHashMap<String, Boolean>();
+		DatabaseMonitor.Cursor cursor = new DatabaseMonitor.Cursor();
+		String sql = String.format(LEGACY_SQL, table);
+
+		int half = ROWS / 2;
+		seed(table, 0, half, 0, expected);
+		DatabaseMonitor.poll(conn, sql, cursor, PAGE_SIZE, false, null);
+		assertCursorAt(table, cursor, half - 1, 0);
+
+		// 旧的写法只查询更新的时间，第二批从新的时间开始
+		long offset = 3600 * 1000L;
+		seed(table, half, ROWS, offset, expected);
+		DatabaseMonitor.poll(conn, sql, cursor, PAGE_SIZE, false, null);
+		assertCursorAt(table, cursor, ROWS - 1, offset);
+		assertWords(expected);
+	}
+
+	private static void createTable(String table) throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			st.execute("CREATE TABLE t_word_" + table + " (id BIGINT PRIMARY KEY, word VARCHAR(64), type INT,"
+					+ " deleted BOOLEAN, update_time TIMESTAMP)");
+			st.execute("CREATE INDEX t_word_" + table + "_time ON t_word_" + table + " (update_time, id)");
+		}
+	}
+
+	/**
+	 * 写入第 from 到 to 行（不含），每行随机修改一个词；同一个词以最后一行为准记入 expected
+	 * @param offset 时间的偏移（毫秒）
+	 */
+	private static void seed(String table, int from, int to, long offset, Map<String, Boolean> expected)
+			throws SQLException {
+		Random random = new Random(from);
+		try (PreparedStatement ps = conn.prepareStatement(
+				"INSERT INTO t_word_" + table + " (id, word, type, deleted, update_time) VALUES (?, ?, ?, ?, ?)")) {
+			for (int row = from; row < to; row++) {
+				String word = table + "词" + random.nextInt(WORDS);
+				// 少量其他类型的行不应用到主词典
+				int type = random.nextInt(50) == 0 ? 0 : 2;
+				boolean deleted = random.nextInt(3) == 0;
+				ps.setLong(1, id(row));
+				ps.setString(2, word);
+				ps.setInt(3, type);
+				ps.setBoolean(4, deleted);
+				ps.setTimestamp(5, time(row, offset));
+				ps.addBatch();
+				if (type == 2) {
+					expected.remove(word);
+					expected.put(word, !deleted);
+				}
+				if ((row - from) % 10000 == 9999) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private static long id(int row) {
+		return row + 1;
+	}
+
+	private static Timestamp time(int row, long offset) {
+		return new Timestamp(BASE_TIME + offset + (row / ROWS_PER_TIME) * 1000L);
+	}
+
+	/**
+	 * 游标停在 lastRow 及之前最后一个类型为2的行上
+	 */
+	private static void assertCursorAt(String table, DatabaseMonitor.Cursor cursor, int lastRow, long offset)
+			throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(
+				"SELECT MAX(id) FROM t_word_" + table + " WHERE type = 2 and id <= ?")) {
+			ps.setLong(1, id(lastRow));
+			try (ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				long id = rs.getLong(1);
+				assertEquals(id, cursor.getId());
+				assertEquals(time((int) id - 1, offset), cursor.getUpdateTime());
+			}
+		}
+	}
+
+	private static void assertWords(Map<String, Boolean> expected) {
+		Dictionary dict = Dictionary.getSingleton();
+		dict.compileDicts();
+		DictSnapshot snapshot = dict.getSnapshot();
+		int mismatches = 0;
+		String first = null;
+		for (Map.Entry<String, Boolean> entry : expected.entrySet()) {
+			if (DictionaryTestSupport.isMainWord(snapshot, entry.getKey()) != entry.getValue()) {
+				mismatches++;
+				if (first == null) {
+					first = entry.getKey();
+				}
+			}
+		}
+		assertEquals("words differing from the table, first: " + first, 0, mismatches);
+	}
+}
@@ -0,0 +1,130 @@
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 词典引擎性能对比工具，比较各引擎的编译耗时、内存占用、逐字匹配（Hit）与扫描器的吞吐
+ * 同一进程内测试多个引擎时，扫描器的调用点不再是单态的，对比扫描吞吐时宜每次只测一个引擎
+ *
+ * 不随插件发布，在测试类路径上运行（编译后的测试类与插件的依赖）:
+ * java -cp target/test-classes:target/classes:... org.wltea.analyzer.dic.DictBenchmark [main.dic] [rounds] [engine,...]
+ */
+public final class DictBenchmark {
+
+	private DictBenchmark() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		String path = args.length > 0 ? args[0] : "config/main.dic";
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Collection<String> names = args.length > 2 ? Arrays.asList(args[2].split(",")) : DictionaryEngines.names();
+
+		List<char[]> words = new ArrayList<char[]>();
+		DictCompiler.readWords(Paths.get(path), words::add);
+		System.out.printf("words: %d%n", words.size());
+		char[][] keys = words.toArray(new char[words.size()][]);
+
+		List<DictionaryEngine> engines = new ArrayList<DictionaryEngine>();
+		for (String name : names) {
+			long start = System.nanoTime();
+			DictionaryEngine engine = DictionaryEngines.get(name).build(keys);
+			engine.prepare();
+			System.out.printf("%-16s build: %d ms, %d words, %d KB%n", name, (System.nanoTime() - start) / 1000000,
+					engine.size(), engine.ramBytesUsed() / 1024);
+			engines.add(engine);
+		}
+
+		Path compiled = Files.createTempFile("main", ".dic" + DictCompiler.EXTENSION);
+		try {
+			DictCompiler.compile(Paths.get(path), compiled);
+			long start = System.nanoTime();
+			DoubleArrayTrie mapped = DictCompiler.load(Paths.get(path), compiled);
+			System.out.printf("DoubleArrayTrie map: %d ms, %d states%n",
+					(System.nanoTime() - start) / 1000000, mapped.capacity());
+		} finally {
+			Files.deleteIfExists(compiled);
+		}
+
+		char[] text = buildText(words, 2000000);
+		List<DictScanner> scanners = new ArrayList<DictScanner>();
+		for (DictionaryEngine engine : engines) {
+			scanners.add(new DictScanner(new LayeredTrie(engine)));
+		}
+		for (int i = 0; i < rounds; i++) {
+			int e = 0;
+			for (String name : names) {
+				report(name + " hit", text, scan(engines.get(e), text));
+				report(name + " scan", text, scan(scanners.get(e), text));
+				e++;
+			}
+		}
+	}
+
+	private static void report(String name, char[] text, long[] result) {
+		System.out.printf("%-20s %,12d lookups/s %,12d chars/s (%d hits)%n", name, result[0] * 1000000000L / result[1],
+				text.length * 1000000000L / result[1], result[2]);
+	}
+
+	/**
+	 * 模拟原 CJKSegmenter 的匹配过程：每个位置做单字匹配，并沿着前缀继续匹配
+	 * @return {查找次数, 耗时纳秒, 命中次数}
+	 */
+	private static long[] scan(DictionaryEngine engine, char[] text) {
+		long lookups = 0;
+		long matches = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < text.length; i++) {
+			Hit hit = engine.match(text, i, 1);
+			lookups++;
+			for (int j = i + 1; hit.isPrefix() && j < text.length; j++) {
+				if (hit.isMatch()) {
+					matches++;
+				}
+				hit = engine.match(text, j, 1, hit);
+				lookups++;
+			}
+			if (hit.isMatch()) {
+				matches++;
+			}
+		}
+		return new long[]{lookups, System.nanoTime() - start, matches};
+	}
+
+	/**
+	 * 扫描器扫描：每个字符读入一次，直接取出以该字符结尾的全部词
+	 */
+	private static long[] scan(DictScanner scanner, char[] text) {
+		long matches = 0;
+		long start = System.nanoTime();
+		scanner.reset();
+		for (int i = 0; i < text.length; i++) {
+			scanner.next(text, i);
+			while (scanner.nextWord()) {
+				matches++;
+			}
+		}
+		return new long[]{text.length, System.nanoTime() - start, matches};
+	}
+
+	/**
+	 * 随机拼接词条生成测试文本
+	 */
+	private static char[] buildText(List<char[]> words, int length) {
+		List<char[]> shuffled = new ArrayList<char[]>(words);
+		Collections.shuffle(shuffled, new Random(42));
+		StringBuilder sb = new StringBuilder(length + 64);
+		for (int i = 0; sb.length() < length; i = (i + 1) % shuffled.size()) {
+			sb.append(shuffled.get(i));
+		}
+		return sb.toString().toCharArray();
+	}
+}
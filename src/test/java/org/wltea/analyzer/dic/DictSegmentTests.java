@@ -0,0 +1,93 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 屏蔽词条后 {@link DictSegment} 摘除无效分枝，有效、无效节点数与词条一致
+ */
+public class DictSegmentTests {
+
+	@Test
+	public void testDisablePrunesEmptyBranch() {
+		DictSegment segment = build("中国", "中国人", "中华");
+		assertArrayEquals(new int[]{4, 0}, nodes(segment));
+
+		segment.disableSegment("中国人".toCharArray());
+		assertArrayEquals(new int[]{3, 0}, nodes(segment));
+		assertTrue(contains(segment, "中国"));
+		assertFalse(contains(segment, "中国人"));
+
+		// 仍有后代成词的前缀保留节点
+		segment.disableSegment("中国".toCharArray());
+		assertArrayEquals(new int[]{2, 0}, nodes(segment));
+		assertTrue(contains(segment, "中华"));
+	}
+
+	@Test
+	public void testChurnLeavesNoDeadNodes() {
+		DictSegment segment = build("停用", "停止");
+		int[] before = nodes(segment);
+		for (int i = 0; i < 1000; i++) {
+			String word = "停" + (char) ('一' + i);
+			segment.fillSegment(word.toCharArray());
+			assertTrue(contains(segment, word));
+			segment.disableSegment(word.toCharArray());
+		}
+		assertArrayEquals(before, nodes(segment));
+		assertTrue(contains(segment, "停用"));
+		assertTrue(contains(segment, "停止"));
+	}
+
+	@Test
+	public void testWideNodeShrinksBackToArray() {
+		DictSegment segment = build("词甲", "词乙", "词丙", "词丁", "词戊");
+		for (String word : new String[]{"词甲", "词乙", "词丙", "词丁"}) {
+			segment.disableSegment(word.toCharArray());
+			assertFalse(contains(segment, word));
+		}
+		assertTrue(contains(segment, "词戊"));
+		assertArrayEquals(new int[]{2, 0}, nodes(segment));
+	}
+
+	private static DictSegment build(String... words) {
+		char[][] chars = new char[words.length][];
+		for (int i = 0; i < words.length; i++) {
+			chars[i] = words[i].toCharArray();
+		}
+		return DictSegment.build(chars);
+	}
+
+	private static boolean contains(DictSegment segment, String word) {
+		return segment.contains(word.toCharArray(), 0, word.length());
+	}
+
+	private static int[] nodes(DictSegment segment) {
+		int[] counts = new int[2];
+		segment.countNodes(counts);
+		return counts;
+	}
+}
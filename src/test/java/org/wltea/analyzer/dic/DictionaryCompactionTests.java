@@ -0,0 +1,194 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 运行期修改在后台并入基础部分后，只保留仍需要的记录；来源变化或重新加载后不再需要的记录被移除
+ */
+public class DictionaryCompactionTests {
+
+	private static final String EXT_DIC = "compaction_test.dic";
+
+	private static Path extFile;
+
+	@BeforeClass
+	public static void initDictionary() throws Exception {
+		Map<String, String> entries = new HashMap<String, String>();
+		entries.put("ext_dict", EXT_DIC);
+		// 运行期修改超过1个即在后台合并
+		entries.put("main_dict_delta_max_size", "1");
+		Path pluginConfig = DictionaryTestSupport.initDictionary(entries,
+				Collections.singletonMap(EXT_DIC, Arrays.asList("来源词甲", "来源词乙")));
+		extFile = pluginConfig.resolve(EXT_DIC);
+	}
+
+	@Test
+	public void testCompactedChangesStayBounded() throws Exception {
+		Dictionary dict = Dictionary.getSingleton();
+		DictionaryTestSupport.writeWords(extFile, Arrays.asList("来源词甲", "来源词乙"));
+		dict.reLoadMainDict();
+		assertTrue(isMainWord(dict, "来源词甲"));
+
+		// 运行期新增的词没有来源提供、删除的词仍由来源提供，合并后都需要保留
+		dict.updateMainWords(changes("运行词一", true, "来源词甲", false));
+		dict.compileDicts();
+		awaitCompacted(2);
+		assertTrue(isMainWord(dict, "运行词一"));
+		assertFalse(isMainWord(dict, "来源词甲"));
+
+		// 来源提供了运行期新增的词、不再提供运行期删除的词，两条记录都不再需要
+		dict.updateSource(extFile.toString(), words("来源词乙", "运行词一"));
+		dict.compileDicts();
+		assertEquals(0, compacted());
+		assertTrue(isMainWord(dict, "运行词一"));
+		assertFalse(isMainWord(dict, "来源词甲"));
+		assertTrue(isMainWord(dict, "来源词乙"));
+
+		// 同一个词的来源变化不再被已经并入的修改挡住
+		dict.updateSource(extFile.toString(), words("来源词甲", "来源词乙", "运行词一"));
+		dict.compileDicts();
+		assertTrue(isMainWord(dict, "来源词甲"));
+	}
+
+	@Test
+	public void testReloadPrunesCompactedChanges() throws Exception {
+		Dictionary dict = Dictionary.getSingleton();
+		DictionaryTestSupport.writeWords(extFile, Arrays.asList("重载词甲", "重载词乙"));
+		dict.reLoadMainDict();
+		assertTrue(isMainWord(dict, "重载词乙"));
+
+		dict.updateMainWords(changes("重载词乙", false, "运行词二", true));
+		dict.compileDicts();
+		awaitCompacted(2);
+		assertFalse(isMainWord(dict, "重载词乙"));
+
+		// 词典文件不再有被删除的词，并且提供了运行期新增的词
+		DictionaryTestSupport.writeWords(extFile, Arrays.asList("重载词甲", "运行词二", "重载词丙"));
+		dict.reLoadMainDict();
+		assertEquals(0, compacted());
+		assertFalse(isMainWord(dict, "重载词乙"));
+		assertTrue(isMainWord(dict, "运行词二"));
+		assertTrue(isMainWord(dict, "重载词丙"));
+	}
+
+	@Test
+	public void testRuntimeDisableOfSourceAddedWord() throws Exception {
+		Dictionary dict = Dictionary.getSingleton();
+		DictionaryTestSupport.writeWords(extFile, Arrays.asList("来源词甲", "来源词乙"));
+		dict.reLoadMainDict();
+		int before = compacted();
+
+		// 来源新增的词尚未并入，只在来源修改中
+		dict.updateSource(extFile.toString(), words("来源词甲", "来源词乙", "来源新词"));
+		dict.compileDicts();
+		assertTrue(isMainWord(dict, "来源新词"));
+
+		// 运行期删除需要留下墓碑，合并后仍然屏蔽
+		dict.updateMainWords(Collections.singletonMap("来源新词", false));
+		dict.compileDicts();
+		assertFalse(isMainWord(dict, "来源新词"));
+		awaitCompacted(before + 1);
+		assertFalse(isMainWord(dict, "来源新词"));
+
+		// 来源不再提供该词，墓碑不再需要
+		dict.updateSource(extFile.toString(), words("来源词甲", "来源词乙"));
+		dict.compileDicts();
+		assertEquals(before, compacted());
+	}
+
+	@Test
+	public void testLaterCompactionReplacesCompactedChange() throws Exception {
+		Dictionary dict = Dictionary.getSingleton();
+		DictionaryTestSupport.writeWords(extFile, Arrays.asList("来源词甲", "来源词乙"));
+		dict.reLoadMainDict();
+		int before = compacted();
+
+		dict.updateMainWords(changes("折叠词", true, "来源词甲", false));
+		dict.compileDicts();
+		awaitCompacted(before + 2);
+
+		// 撤销两个修改并再次合并，之前并入的记录不再需要
+		dict.updateMainWords(changes("折叠词", false, "来源词甲", true));
+		dict.compileDicts();
+		awaitCompacted(before);
+		assertFalse(isMainWord(dict, "折叠词"));
+		assertTrue(isMainWord(dict, "来源词甲"));
+
+		// 之后来源的增删不被旧的记录挡住
+		dict.updateSource(extFile.toString(), words("来源词乙", "折叠词"));
+		dict.compileDicts();
+		assertTrue(isMainWord(dict, "折叠词"));
+		assertFalse(isMainWord(dict, "来源词甲"));
+
+		dict.updateSource(extFile.toString(), words("来源词甲", "来源词乙"));
+		dict.compileDicts();
+	}
+
+	private static Map<String, Boolean> changes(String word1, boolean added1, String word2, boolean added2) {
+		Map<String, Boolean> changes = new LinkedHashMap<String, Boolean>();
+		changes.put(word1, added1);
+		changes.put(word2, added2);
+		return changes;
+	}
+
+	private static List<char[]> words(String... words) {
+		char[][] chars = new char[words.length][];
+		for (int i = 0; i < words.length; i++) {
+			chars[i] = words[i].toCharArray();
+		}
+		return Arrays.asList(chars);
+	}
+
+	private static boolean isMainWord(Dictionary dict, String word) {
+		return DictionaryTestSupport.isMainWord(dict.getSnapshot(), word);
+	}
+
+	private static int compacted() {
+		return (Integer) Dictionary.getLoadStats().get("main_compacted_changes");
+	}
+
+	private static void awaitCompacted(int expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (System.nanoTime() < deadline) {
+			if (compacted() == expected) {
+				return;
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError("compaction did not finish in time, " + compacted() + " compacted changes");
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分词器选用的其他引擎在后台编译，随快照一起发布，分词线程只读取已发布的快照
+ */
+public class DictionaryEngineViewTests {
+
+	@BeforeClass
+	public static void initDictionary() throws Exception {
+		DictionaryTestSupport.initDictionary(Collections.<String, String>emptyMap());
+	}
+
+	@Test
+	public void testEngineViewIsBuiltInBackgroundAndPublishedWithSnapshot() throws Exception {
+		Dictionary dict = Dictionary.getSingleton();
+		DictSnapshot current = dict.getSnapshot();
+		// 首次使用时不在调用线程上编译，先返回默认引擎的快照
+		assertSame(current, dict.getSnapshot(DictionaryEngines.FST));
+
+		DictSnapshot view = awaitView(dict, DictionaryEngines.FST);
+		assertEquals(dict.getSnapshot().getGeneration(), view.getGeneration());
+		assertTrue(view.getMainTrie().base() instanceof FstTrie);
+		assertTrue(DictionaryTestSupport.isMainWord(view, "中华人民共和国"));
+
+		// 基础部分不变时，修改后发布的快照立即带有该引擎的快照
+		Dictionary.addWord("引擎视图测试词");
+		dict.compileDicts();
+		DictSnapshot updated = dict.getSnapshot(DictionaryEngines.FST);
+		assertNotSame(dict.getSnapshot(), updated);
+		assertEquals(dict.getSnapshot().getGeneration(), updated.getGeneration());
+		assertSame(view.getMainTrie().base(), updated.getMainTrie().base());
+		assertTrue(DictionaryTestSupport.isMainWord(updated, "引擎视图测试词"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEngine() {
+		Dictionary.getSingleton().getSnapshot("no_such_engine");
+	}
+
+	private static DictSnapshot awaitView(Dictionary dict, String engine) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (System.nanoTime() < deadline) {
+			DictSnapshot view = dict.getSnapshot().getEngineView(engine);
+			if (view != null) {
+				return view;
+			}
+			Thread.sleep(50);
+		}
+		throw new AssertionError(engine + " was not built in time");
+	}
+}
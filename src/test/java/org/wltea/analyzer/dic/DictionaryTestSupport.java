@@ -0,0 +1,101 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.plugin.analysis.ik.AnalysisIkPlugin;
+import org.wltea.analyzer.cfg.Configuration;
+
+/**
+ * 以仓库 config 目录下的词典初始化 {@link Dictionary}
+ * 词典是进程内的单例，每个测试类只能初始化一次（surefire 为每个测试类启动单独的进程）
+ */
+final class DictionaryTestSupport {
+
+	private DictionaryTestSupport() {
+	}
+
+	/**
+	 * 把 config 目录复制到临时的 ES 配置目录（注释掉其中的 jdbc.url），在 IKAnalyzer.cfg.xml 中加入给定的配置项后加载词典
+	 * @return 插件配置目录（配置目录下的 analysis-ik）
+	 */
+	static Path initDictionary(Map<String, String> entries) throws IOException {
+		return initDictionary(entries, Collections.<String, List<String>>emptyMap());
+	}
+
+	/**
+	 * 同 {@link #initDictionary(Map)}，加载前先在插件配置目录下写入给定的词典文件
+	 * @param dictFiles 文件名到词条的映射
+	 */
+	static Path initDictionary(Map<String, String> entries, Map<String, List<String>> dictFiles) throws IOException {
+		Path home = Files.createTempDirectory("ik-home");
+		Path configDir = home.resolve("config");
+		Path pluginConfig = configDir.resolve(AnalysisIkPlugin.PLUGIN_NAME);
+		Files.createDirectories(pluginConfig);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("config"))) {
+			for (Path file : files) {
+				Files.copy(file, pluginConfig.resolve(file.getFileName().toString()));
+			}
+		}
+		for (Map.Entry<String, List<String>> dictFile : dictFiles.entrySet()) {
+			writeWords(pluginConfig.resolve(dictFile.getKey()), dictFile.getValue());
+		}
+		// 测试不连接部署配置中的数据库
+		Path jdbcFile = pluginConfig.resolve(DatabaseMonitor.PATH_JDBC_PROPERTIES);
+		if (Files.exists(jdbcFile)) {
+			String jdbc = new String(Files.readAllBytes(jdbcFile), StandardCharsets.UTF_8);
+			Files.write(jdbcFile, jdbc.replaceAll("(?m)^jdbc\\.url=", "#jdbc.url=").getBytes(StandardCharsets.UTF_8));
+		}
+		Path cfgFile = pluginConfig.resolve("IKAnalyzer.cfg.xml");
+		StringBuilder extra = new StringBuilder();
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			extra.append("\t<entry key=\"").append(entry.getKey()).append("\">").append(entry.getValue())
+					.append("</entry>\n");
+		}
+		String cfg = new String(Files.readAllBytes(cfgFile), StandardCharsets.UTF_8);
+		Files.write(cfgFile, cfg.replace("</properties>", extra + "</properties>").getBytes(StandardCharsets.UTF_8));
+
+		Settings settings = Settings.builder().put("path.home", home.toString()).put("enable_remote_dict", "false")
+				.build();
+		new Configuration(new Environment(settings, configDir), settings);
+		return pluginConfig;
+	}
+
+	static void writeWords(Path file, List<String> words) throws IOException {
+		Files.write(file, words, StandardCharsets.UTF_8);
+	}
+
+	static boolean isMainWord(DictSnapshot snapshot, String word) {
+		char[] chars = word.toCharArray();
+		return snapshot.matchInMainDict(chars, 0, chars.length).isMatch();
+	}
+}
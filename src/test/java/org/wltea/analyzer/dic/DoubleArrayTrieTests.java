@@ -0,0 +1,95 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DoubleArrayTrieTests {
+
+	private static List<char[]> mainWords;
+	private static List<char[]> quantifiers;
+	private static char[] text;
+
+	@BeforeClass
+	public static void loadDictionaries() throws IOException {
+		mainWords = EngineTestSupport.readWords(EngineTestSupport.MAIN_DIC);
+		quantifiers = EngineTestSupport.readWords(EngineTestSupport.QUANTIFIER_DIC);
+		text = EngineTestSupport.corpus(mainWords, 20000);
+	}
+
+	@Test
+	public void testMainDictMatchesDictSegment() {
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.DOUBLE_ARRAY), mainWords,
+				quantifiers, text);
+	}
+
+	@Test
+	public void testQuantifierDictMatchesDictSegment() {
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.DOUBLE_ARRAY), quantifiers,
+				null, EngineTestSupport.corpus(quantifiers, 5000));
+	}
+
+	@Test
+	public void testEmptyInput() {
+		EngineTestSupport.assertSameOnEmptyInput(DictionaryEngines.get(DictionaryEngines.DOUBLE_ARRAY), quantifiers);
+	}
+
+	@Test
+	public void testUnorderedDuplicateKeys() {
+		List<char[]> shuffled = new ArrayList<char[]>(quantifiers);
+		shuffled.addAll(quantifiers.subList(0, quantifiers.size() / 2));
+		Collections.shuffle(shuffled, new Random(3));
+		DoubleArrayTrie sorted = DoubleArrayTrie.build(EngineTestSupport.toArray(quantifiers));
+		DoubleArrayTrie unordered = DoubleArrayTrie.build(EngineTestSupport.toArray(shuffled));
+		assertEquals(sorted.size(), unordered.size());
+		for (char[] word : quantifiers) {
+			assertTrue(new String(word), unordered.contains(word, 0, word.length));
+		}
+	}
+
+	@Test
+	public void testCompiledFileMatchesSource() throws IOException {
+		Path compiled = Files.createTempFile("quantifier", ".dic" + DictCompiler.EXTENSION);
+		try {
+			DictCompiler.compile(EngineTestSupport.QUANTIFIER_DIC, compiled);
+			DoubleArrayTrie mapped = DictCompiler.load(EngineTestSupport.QUANTIFIER_DIC, compiled);
+			DoubleArrayTrie built = DoubleArrayTrie.build(EngineTestSupport.toArray(quantifiers));
+			char[] corpus = EngineTestSupport.corpus(quantifiers, 5000);
+			EngineTestSupport.assertSameLookups(built, mapped, quantifiers, corpus);
+			assertFalse(mapped.contains("不是量词的词".toCharArray(), 0, 6));
+		} finally {
+			Files.deleteIfExists(compiled);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 词典引擎测试共用的词典、测试文本与比较方法
+ * 以原有的 {@link DictSegment} 为基准，比较其他引擎的匹配与扫描结果
+ */
+final class EngineTestSupport {
+
+	static final Path MAIN_DIC = Paths.get("config", "main.dic");
+	static final Path QUANTIFIER_DIC = Paths.get("config", "quantifier.dic");
+
+	// 扩展词条：词典中没有的新词，以及延长已有词条的新词
+	static final String[] EXT_WORDS = {"魔法少女小圆", "中华人民共和国万岁", "测试扩展词", "一丈"};
+	// 被屏蔽的词条：既有完整的词，也有更长词条的前缀
+	static final String[] DISABLED_WORDS = {"中华人民", "共和国", "魔法", "一丈红"};
+
+	private EngineTestSupport() {
+	}
+
+	static List<char[]> readWords(Path file) throws IOException {
+		List<char[]> words = new ArrayList<char[]>();
+		DictCompiler.readWords(file, words::add);
+		return words;
+	}
+
+	static char[][] toArray(List<char[]> words) {
+		return words.toArray(new char[words.size()][]);
+	}
+
+	static char[][] toArray(String... words) {
+		char[][] array = new char[words.length][];
+		for (int i = 0; i < words.length; i++) {
+			array[i] = words[i].toCharArray();
+		}
+		return array;
+	}
+
+	/**
+	 * 固定的测试文本：几个句子，加上按固定种子拼接的词条、扩展词条、屏蔽词条与词典外的字符
+	 */
+	static char[] corpus(List<char[]> words, int length) {
+		StringBuilder sb = new StringBuilder(length + 64);
+		sb.append("我爱魔法少女小圆和中华人民共和国万岁，一丈红不是一丈。IK Analyzer 5.0 测试扩展词abc123！");
+		List<char[]> shuffled = new ArrayList<char[]>(words);
+		Collections.shuffle(shuffled, new Random(42));
+		Random random = new Random(7);
+		String[] extras = {"魔法少女小圆", "中华人民共和国", "共和国", "一丈红", "，", " ", "x", "。"};
+		for (int i = 0; sb.length() < length; i = (i + 1) % shuffled.size()) {
+			sb.append(shuffled.get(i));
+			if (random.nextInt(8) == 0) {
+				sb.append(extras[random.nextInt(extras.length)]);
+			}
+		}
+		return sb.toString().toCharArray();
+	}
+
+	/**
+	 * 以给定的基础词典构建快照，可叠加扩展词条、屏蔽词条与量词类别词典
+	 */
+	static DictSnapshot snapshot(DictionaryEngine base, boolean layered, List<char[]> quantifiers) {
+		DoubleArrayTrie ext = layered ? DoubleArrayTrie.build(toArray(EXT_WORDS)) : null;
+		DoubleArrayTrie disabled = layered ? DoubleArrayTrie.build(toArray(DISABLED_WORDS)) : null;
+		LayeredTrie trie = new LayeredTrie(base, ext, disabled);
+		trie.buildAutomata();
+		TagTrie.Builder tags = new TagTrie.Builder();
+		if (quantifiers != null) {
+			tags.add(DictSegment.build(toArray(quantifiers)), DictSnapshot.QUANTIFIER);
+		}
+		return new DictSnapshot(1, trie, tags.build());
+	}
+
+	/**
+	 * 模拟 CJKSegmenter 的逐字匹配：每个位置做单字匹配，沿前缀用 matchWithHit 继续匹配
+	 * @return 每次匹配的结果 "起点-终点:标记"
+	 */
+	static List<String> matches(DictSnapshot snapshot, char[] text) {
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < text.length; i++) {
+			Hit hit = snapshot.matchInMainDict(text, i, 1);
+			result.add(describe(i, hit));
+			for (int j = i + 1; hit.isPrefix() && j < text.length; j++) {
+				hit = snapshot.matchWithHit(text, j, hit);
+				result.add(describe(i, hit));
+			}
+		}
+		return result;
+	}
+
+	private static String describe(int begin, Hit hit) {
+		return begin + "-" + hit.getEnd() + ":" + (hit.isMatch() ? "M" : "") + (hit.isPrefix() ? "P" : "");
+	}
+
+	/**
+	 * 用快照的扫描器逐字扫描
+	 * @return 取出的词条 "起点+长度:类别"
+	 */
+	static List<String> scan(DictSnapshot snapshot, char[] text) {
+		List<String> result = new ArrayList<String>();
+		DictScanner scanner = snapshot.newMainDictScanner();
+		for (int i = 0; i < text.length; i++) {
+			scanner.next(text, i);
+			while (scanner.nextWord()) {
+				result.add(scanner.getWordBegin() + "+" + scanner.getWordLength() + ":" + scanner.getWordFlags());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 用引擎自己的逐字扫描器扫描
+	 * @return 取出的词条 "终点-长度"
+	 */
+	static List<String> scan(DictionaryEngine engine, char[] text) {
+		List<String> result = new ArrayList<String>();
+		WordScanner scanner = engine.newScanner();
+		for (int i = 0; i < text.length; i++) {
+			scanner.next(text[i]);
+			for (int length = scanner.nextWord(); length > 0; length = scanner.nextWord()) {
+				result.add(i + "-" + length);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 引擎与 {@link DictSegment} 对全部词条、词条的各个前缀以及测试文本中各个区间的 contains、walk 结果相同
+	 */
+	static void assertSameLookups(DictionaryEngine expected, DictionaryEngine actual, List<char[]> words, char[] text) {
+		assertEquals(expected.size(), actual.size());
+		for (char[] word : words) {
+			for (int length = 1; length <= word.length; length++) {
+				assertEquals(new String(word, 0, length), expected.walk(word, 0, length), actual.walk(word, 0, length));
+			}
+			assertEquals(new String(word), expected.contains(word, 0, word.length), actual.contains(word, 0, word.length));
+		}
+		for (int i = 0; i < text.length; i++) {
+			for (int length = 1; length <= 6 && i + length <= text.length; length++) {
+				String key = new String(text, i, length);
+				assertEquals(key, expected.walk(text, i, length), actual.walk(text, i, length));
+				assertEquals(key, expected.contains(text, i, length), actual.contains(text, i, length));
+			}
+		}
+	}
+
+	/**
+	 * 引擎按匹配、扫描两种方式分词的结果均与 {@link DictSegment} 相同，分别比较单独的基础词典与叠加扩展、屏蔽词条后的词典
+	 */
+	static void assertSameAsDictSegment(DictionaryEngine.Factory factory, List<char[]> words,
+			List<char[]> quantifiers, char[] text) {
+		DictionaryEngine expected = DictSegment.build(toArray(words));
+		DictionaryEngine actual = factory.build(toArray(words));
+		actual.prepare();
+		assertSameLookups(expected, actual, words, text);
+		assertEquals(scan(expected, text), scan(actual, text));
+		for (boolean layered : new boolean[]{false, true}) {
+			DictSnapshot expectedSnapshot = snapshot(expected, layered, quantifiers);
+			DictSnapshot actualSnapshot = snapshot(actual, layered, quantifiers);
+			assertEquals(matches(expectedSnapshot, text), matches(actualSnapshot, text));
+			assertEquals(scan(expectedSnapshot, text), scan(actualSnapshot, text));
+		}
+	}
+
+	/**
+	 * 空词典与空输入：引擎的结果与 {@link DictSegment} 相同
+	 */
+	static void assertSameOnEmptyInput(DictionaryEngine.Factory factory, List<char[]> words) {
+		char[] empty = new char[0];
+		char[] text = "中华人民共和国".toCharArray();
+		for (char[][] keys : Arrays.asList(new char[0][], toArray(words))) {
+			DictionaryEngine expected = DictSegment.build(keys);
+			DictionaryEngine actual = factory.build(keys);
+			actual.prepare();
+			assertEquals(expected.size(), actual.size());
+			assertEquals(expected.contains(empty, 0, 0), actual.contains(empty, 0, 0));
+			assertEquals(expected.contains(text, 3, 0), actual.contains(text, 3, 0));
+			assertEquals(scan(expected, empty), scan(actual, empty));
+			for (boolean layered : new boolean[]{false, true}) {
+				assertEquals(matches(snapshot(expected, layered, null), empty),
+						matches(snapshot(actual, layered, null), empty));
+				assertEquals(scan(snapshot(expected, layered, null), empty),
+						scan(snapshot(actual, layered, null), empty));
+			}
+			if (keys.length == 0) {
+				assertEquals(0, actual.size());
+				assertEquals(Collections.emptyList(), scan(actual, text));
+				assertEquals(matches(snapshot(expected, true, null), text),
+						matches(snapshot(actual, true, null), text));
+			}
+		}
+	}
+}
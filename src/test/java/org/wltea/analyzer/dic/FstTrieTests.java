@@ -0,0 +1,71 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * FST 引擎（堆内与堆外）的匹配与扫描结果与 {@link DictSegment} 相同
+ */
+public class FstTrieTests {
+
+	private static List<char[]> mainWords;
+	private static List<char[]> quantifiers;
+	private static char[] text;
+
+	@BeforeClass
+	public static void loadDictionaries() throws IOException {
+		mainWords = EngineTestSupport.readWords(EngineTestSupport.MAIN_DIC);
+		quantifiers = EngineTestSupport.readWords(EngineTestSupport.QUANTIFIER_DIC);
+		text = EngineTestSupport.corpus(mainWords, 20000);
+	}
+
+	@Test
+	public void testMainDictMatchesDictSegment() {
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.FST), mainWords, quantifiers,
+				text);
+	}
+
+	@Test
+	public void testOffHeapMainDictMatchesDictSegment() {
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.FST_OFF_HEAP), mainWords,
+				quantifiers, text);
+	}
+
+	@Test
+	public void testQuantifierDictMatchesDictSegment() {
+		char[] corpus = EngineTestSupport.corpus(quantifiers, 5000);
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.FST), quantifiers, null,
+				corpus);
+		EngineTestSupport.assertSameAsDictSegment(DictionaryEngines.get(DictionaryEngines.FST_OFF_HEAP), quantifiers,
+				null, corpus);
+	}
+
+	@Test
+	public void testEmptyInput() {
+		EngineTestSupport.assertSameOnEmptyInput(DictionaryEngines.get(DictionaryEngines.FST), quantifiers);
+		EngineTestSupport.assertSameOnEmptyInput(DictionaryEngines.get(DictionaryEngines.FST_OFF_HEAP), quantifiers);
+	}
+}
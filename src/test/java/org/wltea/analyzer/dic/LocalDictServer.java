@@ -0,0 +1,257 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 本地的词库服务器，代替远程词典服务器用于测试
+ * 每个路径是一个词典，保存发布过的全部版本；第 n 个版本的 ETag 为 "路径-n"，Last-Modified 为固定时间后 n 小时。
+ * 支持条件请求（304）、gzip 压缩，以及按 since=ETag 返回增量（每行为 +词 或 -词，带 X-IK-Delta-Since 响应头）
+ */
+public final class LocalDictServer implements Closeable {
+
+	/**
+	 * 服务器收到的一次请求
+	 */
+	static final class Request {
+		final String query;
+		final String ifNoneMatch;
+		final String ifModifiedSince;
+
+		Request(String query, String ifNoneMatch, String ifModifiedSince) {
+			this.query = query;
+			this.ifNoneMatch = ifNoneMatch;
+			this.ifModifiedSince = ifModifiedSince;
+		}
+	}
+
+	private static final class Dict {
+		final List<Set<String>> versions = new CopyOnWriteArrayList<Set<String>>();
+		final List<Request> requests = new CopyOnWriteArrayList<Request>();
+		volatile long delayMillis;
+		volatile boolean gzip;
+		volatile boolean delta;
+	}
+
+	private static final long BASE_TIME = 1500000000000L;
+
+	private final Map<String, Dict> dicts = new ConcurrentHashMap<String, Dict>();
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private final HttpServer server;
+
+	public LocalDictServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public String url(String path) {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+	}
+
+	/**
+	 * 发布词典的新版本
+	 */
+	public void publish(String path, String... words) {
+		dict(path).versions.add(new LinkedHashSet<String>(Arrays.asList(words)));
+	}
+
+	void setDelay(String path, long delayMillis) {
+		dict(path).delayMillis = delayMillis;
+	}
+
+	void setGzip(String path, boolean gzip) {
+		dict(path).gzip = gzip;
+	}
+
+	void setDelta(String path, boolean delta) {
+		dict(path).delta = delta;
+	}
+
+	List<Request> requests(String path) {
+		return new ArrayList<Request>(dict(path).requests);
+	}
+
+	static String etag(String path, int version) {
+		return "\"" + path + "-" + version + "\"";
+	}
+
+	static String lastModified(int version) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(BASE_TIME + version * 3600 * 1000L));
+	}
+
+	/**
+	 * 同时处理中的请求数的最大值
+	 */
+	int maxConcurrentRequests() {
+		return maxInFlight.get();
+	}
+
+	private Dict dict(String path) {
+		return dicts.computeIfAbsent(path, p -> new Dict());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int current = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(current, Math::max);
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String query = exchange.getRequestURI().getRawQuery();
+			String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			Dict dict = dicts.get(path);
+			if (dict == null || dict.versions.isEmpty()) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			dict.requests.add(new Request(query, ifNoneMatch, ifModifiedSince));
+			if (dict.delayMillis > 0) {
+				Thread.sleep(dict.delayMillis);
+			}
+			int version = dict.versions.size() - 1;
+			String etag = etag(path, version);
+			String lastModified = lastModified(version);
+			if (ifNoneMatch != null ? ifNoneMatch.equals(etag) : lastModified.equals(ifModifiedSince)) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.getResponseHeaders().set("Last-Modified", lastModified);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+			StringBuilder body = new StringBuilder();
+			int since = dict.delta ? sinceVersion(path, query) : -1;
+			if (since >= 0) {
+				exchange.getResponseHeaders().set("X-IK-Delta-Since", etag(path, since));
+				Set<String> before = dict.versions.get(since);
+				Set<String> after = dict.versions.get(version);
+				for (String word : before) {
+					if (!after.contains(word)) {
+						body.append('-').append(word).append('\n');
+					}
+				}
+				for (String word : after) {
+					if (!before.contains(word)) {
+						body.append('+').append(word).append('\n');
+					}
+				}
+			} else {
+				for (String word : dict.versions.get(version)) {
+					body.append(word).append('\n');
+				}
+			}
+			byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (dict.gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+					gzip.write(bytes);
+				}
+				bytes = compressed.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			inFlight.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	/**
+	 * 请求中 since 参数对应的版本
+	 * @return 没有该参数或者不是已发布的 ETag 时为-1
+	 */
+	private static int sinceVersion(String path, String query) throws UnsupportedEncodingException {
+		if (query == null) {
+			return -1;
+		}
+		for (String param : query.split("&")) {
+			if (param.startsWith("since=")) {
+				String since = URLDecoder.decode(param.substring("since=".length()), "UTF-8");
+				String prefix = "\"" + path + "-";
+				if (since.startsWith(prefix) && since.endsWith("\"")) {
+					try {
+						return Integer.parseInt(since.substring(prefix.length(), since.length() - 1));
+					} catch (NumberFormatException e) {
+						return -1;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 停止服务器，之后的请求都连接失败；可以重复调用
+	 */
+	@Override
+	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
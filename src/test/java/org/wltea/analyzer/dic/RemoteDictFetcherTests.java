@@ -0,0 +1,219 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.wltea.analyzer.dic;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用本地的词库服务器 {@link LocalDictServer} 检查远程词典的下载、截止时间与本地缓存
+ */
+public class RemoteDictFetcherTests {
+
+	private LocalDictServer server;
+	private Path cacheDir;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new LocalDictServer();
+		cacheDir = Files.createTempDirectory("ik-remote-cache");
+	}
+
+	@After
+	public void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void testFetchesAllLocationsConcurrently() {
+		List<String> locations = new ArrayList<String>();
+		for (int i = 0; i < 4; i++) {
+			String path = "/dict" + i + ".txt";
+			server.publish(path, "词" + i);
+			server.setDelay(path, 500);
+			locations.add(server.url(path));
+		}
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(locations, null, 10000, (location, words) -> {
+		});
+		for (int i = 0; i < locations.size(); i++) {
+			assertEquals(Collections.singletonList("词" + i), words(fetcher.get(locations.get(i))));
+		}
+		assertEquals(locations.size(), server.maxConcurrentRequests());
+	}
+
+	@Test
+	public void testTimeoutUsesCachedCopyAndReportsLateChange() throws Exception {
+		String location = server.url("/ext.txt");
+		server.publish("/ext.txt", "旧词", "共同");
+		RemoteDictFetcher first = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000,
+				(l, words) -> {
+				});
+		assertEquals(Arrays.asList("旧词", "共同"), words(first.get(location)));
+
+		server.publish("/ext.txt", "新词", "共同");
+		server.setDelay("/ext.txt", 1000);
+		CompletableFuture<List<String>> late = new CompletableFuture<List<String>>();
+		RemoteDictFetcher second = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 100,
+				(l, words) -> late.complete(words(words)));
+		assertEquals(Arrays.asList("旧词", "共同"), words(second.get(location)));
+		assertEquals(Arrays.asList("新词", "共同"), late.get(10, TimeUnit.SECONDS));
+		// 有缓存时发送条件请求
+		assertEquals(LocalDictServer.etag("/ext.txt", 0), server.requests("/ext.txt").get(1).ifNoneMatch);
+	}
+
+	@Test
+	public void testFailureUsesCachedCopy() {
+		String location = server.url("/ext.txt");
+		server.publish("/ext.txt", "缓存词");
+		new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000, (l, words) -> {
+		}).get(location);
+		server.close();
+
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000,
+				(l, words) -> {
+				});
+		assertEquals(Collections.singletonList("缓存词"), words(fetcher.get(location)));
+	}
+
+	@Test
+	public void testFailureWithoutCacheReturnsNoWords() {
+		String location = server.url("/missing.txt");
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000,
+				(l, words) -> {
+				});
+		assertTrue(fetcher.get(location).isEmpty());
+	}
+
+	@Test
+	public void testGzipBodyIsParsedAndCached() throws IOException {
+		String location = server.url("/ext.txt");
+		server.publish("/ext.txt", "\uFEFFFoo", "  中文词  ", "", "Bar");
+		server.setGzip("/ext.txt", true);
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000,
+				(l, words) -> {
+				});
+		// 去掉BOM、首尾空白和空行，转为小写
+		assertEquals(Arrays.asList("foo", "中文词", "bar"), words(fetcher.get(location)));
+
+		List<String> cached = new ArrayList<String>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*.dic")) {
+			for (Path file : files) {
+				cached.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+			}
+		}
+		assertEquals(Arrays.asList("foo", "中文词", "bar"), cached);
+	}
+
+	@Test
+	public void testPollSendsOneConditionalGet() throws IOException {
+		for (Path dir : Arrays.asList(cacheDir, null)) {
+			String path = "/poll-" + (dir != null ? "cached" : "memory") + ".txt";
+			String location = server.url(path);
+			server.publish(path, "第一");
+			RemoteDictFetcher fetcher = new RemoteDictFetcher(dir, false);
+			assertEquals(Collections.singletonList("第一"), words(fetcher.poll(location).words()));
+
+			// 未修改时返回304，不下载内容
+			assertNull(fetcher.poll(location));
+			assertEquals(LocalDictServer.etag(path, 0), server.requests(path).get(1).ifNoneMatch);
+			assertEquals(LocalDictServer.lastModified(0), server.requests(path).get(1).ifModifiedSince);
+
+			server.publish(path, "第一", "第二");
+			assertEquals(Arrays.asList("第一", "第二"), words(fetcher.poll(location).words()));
+
+			// ETag变了但内容相同
+			server.publish(path, "第一", "第二");
+			assertNull(fetcher.poll(location));
+			assertEquals(4, server.requests(path).size());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testPollFailureThrows() throws IOException {
+		new RemoteDictFetcher(cacheDir, false).poll(server.url("/missing.txt"));
+	}
+
+	@Test
+	public void testPollAppliesDeltaToCache() throws IOException {
+		String location = server.url("/delta.txt");
+		server.publish("/delta.txt", "甲", "乙");
+		server.setDelta("/delta.txt", true);
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(cacheDir, true);
+		// 第一次没有ETag，下载完整的词典
+		RemoteDictFetcher.Download full = fetcher.poll(location);
+		assertFalse(full.isDelta());
+		assertNull(server.requests("/delta.txt").get(0).query);
+
+		server.publish("/delta.txt", "甲", "丙");
+		RemoteDictFetcher.Download delta = fetcher.poll(location);
+		assertTrue(delta.isDelta());
+		assertEquals(Collections.singletonList("丙"), words(delta.added()));
+		assertEquals(Collections.singletonList("乙"), words(delta.removed()));
+		assertEquals("since=" + URLEncoder.encode(LocalDictServer.etag("/delta.txt", 0), "UTF-8"),
+				server.requests("/delta.txt").get(1).query);
+
+		// 缓存已应用增量，条件请求返回304后读取缓存
+		RemoteDictFetcher loader = new RemoteDictFetcher(Collections.singletonList(location), cacheDir, 10000,
+				(l, words) -> {
+				});
+		assertEquals(Arrays.asList("甲", "丙"), words(loader.get(location)));
+		assertNull(fetcher.poll(location));
+	}
+
+	@Test
+	public void testPollFallsBackToFullWithoutDeltaSupport() throws IOException {
+		String location = server.url("/full.txt");
+		server.publish("/full.txt", "甲", "乙");
+		RemoteDictFetcher fetcher = new RemoteDictFetcher(null, true);
+		fetcher.poll(location);
+		server.publish("/full.txt", "甲", "丙");
+		RemoteDictFetcher.Download download = fetcher.poll(location);
+		assertFalse(download.isDelta());
+		assertEquals(Arrays.asList("甲", "丙"), words(download.words()));
+	}
+
+	private static List<String> words(List<char[]> words) {
+		List<String> strings = new ArrayList<String>();
+		for (char[] word : words) {
+			strings.add(new String(word));
+		}
+		return strings;
+	}
+}